@@ -0,0 +1,65 @@
+#!/usr/bin/env bash
+#
+# Before/after concurrency benchmark for the virtual-thread mode.
+#
+# Drives the blocking read paths (JDBC in song-service, JDBC + S3 in resource-service)
+# at increasing concurrency and prints throughput and latency for each level.
+# Run it once per mode against the same data set, and compare the two result files:
+#
+#   export JAVA_VERSION=21 MAVEN_PROFILES=java21 SONG_CACHE_ENABLED=false MP3_CACHE_ENABLED=false
+#   VIRTUAL_THREADS_ENABLED=false docker compose up -d --build
+#   ./benchmarks/virtual-threads.sh platform
+#   VIRTUAL_THREADS_ENABLED=true docker compose up -d --build
+#   ./benchmarks/virtual-threads.sh virtual
+#
+# Both runs use the Java 21 images, so the JVM is not part of the comparison. The song cache
+# and the MP3 content cache are switched off, otherwise every read after the first is answered
+# from memory and neither JDBC nor S3 is exercised.
+# Requires "hey" (https://github.com/rakyll/hey). While the virtual run is going, check
+# the service logs for "Virtual thread pinned" warnings and jvm_threads_virtual_pinned_seconds
+# in Prometheus.
+#
+# Environment:
+#   SONG_URL       song read to hit        (default http://localhost:8072/songs/1)
+#   RESOURCE_URL   resource read to hit    (default http://localhost:8071/resources/1)
+#   LEVELS         concurrency levels      (default "50 200 800 2000")
+#   DURATION       duration of each level  (default 30s)
+
+set -euo pipefail
+
+MODE="${1:?usage: $0 <label, e.g. platform|virtual>}"
+SONG_URL="${SONG_URL:-http://localhost:8072/songs/1}"
+RESOURCE_URL="${RESOURCE_URL:-http://localhost:8071/resources/1}"
+LEVELS="${LEVELS:-50 200 800 2000}"
+DURATION="${DURATION:-30s}"
+OUT_DIR="$(dirname "$0")/results"
+OUT_FILE="${OUT_DIR}/virtual-threads-${MODE}-$(date +%Y%m%d-%H%M%S).txt"
+
+command -v hey >/dev/null || { echo "hey is required: go install github.com/rakyll/hey@latest" >&2; exit 1; }
+mkdir -p "${OUT_DIR}"
+
+for url in "${SONG_URL}" "${RESOURCE_URL}"; do
+  curl -fsS -o /dev/null "${url}" || { echo "${url} is not answering, seed data first" >&2; exit 1; }
+done
+
+run() {
+  local name="$1" url="$2" concurrency="$3"
+  local report
+  report="$(hey -z "${DURATION}" -c "${concurrency}" "${url}")"
+  local rps p50 p99 errors
+  rps="$(awk '/Requests\/sec/ {print $2}' <<<"${report}")"
+  p50="$(awk '/50% in/ {print $3}' <<<"${report}")"
+  p99="$(awk '/99% in/ {print $3}' <<<"${report}")"
+  errors="$(awk '/^  \[[^2]/ {sum += $2} END {print sum + 0}' <<<"${report}")"
+  printf '%-10s %-9s %6s %10s %10s %10s %8s\n' "${MODE}" "${name}" "${concurrency}" "${rps}" "${p50}" "${p99}" "${errors}"
+}
+
+{
+  printf '%-10s %-9s %6s %10s %10s %10s %8s\n' mode endpoint conc req/s p50[s] p99[s] non-2xx
+  for level in ${LEVELS}; do
+    run songs "${SONG_URL}" "${level}"
+    run resources "${RESOURCE_URL}" "${level}"
+  done
+} | tee "${OUT_FILE}"
+
+echo "Results written to ${OUT_FILE}"
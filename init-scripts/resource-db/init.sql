@@ -1,7 +1,28 @@
 -- Create the resource table
 CREATE TABLE resource
 (
-    id          SERIAL PRIMARY KEY,
-    s3_location VARCHAR(255) NOT NULL,
-    stage       VARCHAR(255) NOT NULL
-);
\ No newline at end of file
+    id           SERIAL PRIMARY KEY,
+    s3_location  VARCHAR(255) NOT NULL,
+    stage        VARCHAR(255) NOT NULL,
+    content_hash VARCHAR(64)
+);
+
+-- Deduplication looks resources up by content, reference counting by location
+CREATE INDEX idx_resource_content_hash ON resource (content_hash);
+CREATE INDEX idx_resource_s3_location ON resource (s3_location);
+
+-- Events waiting to be relayed to Kafka, written in the same transaction as the resource row
+CREATE TABLE resource_outbox
+(
+    id          BIGSERIAL PRIMARY KEY,
+    resource_id VARCHAR(255) NOT NULL,
+    event_type  VARCHAR(50)  NOT NULL,
+    payload     TEXT         NOT NULL,
+    trace_id    VARCHAR(255),
+    created_at  TIMESTAMP    NOT NULL DEFAULT now(),
+    attempts    INT          NOT NULL DEFAULT 0,
+    failed_at   TIMESTAMP
+);
+
+-- The relay reads pending rows in id order; dead-lettered rows stay for inspection
+CREATE INDEX idx_resource_outbox_pending ON resource_outbox (id) WHERE failed_at IS NULL;
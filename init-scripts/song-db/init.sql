@@ -7,4 +7,15 @@ CREATE TABLE song
     duration VARCHAR(255) NOT NULL,
     name     VARCHAR(255) NOT NULL,
     year     VARCHAR(255) NOT NULL
-);
\ No newline at end of file
+);
+
+-- Filters of GET /songs. Artist and album are matched as case-insensitive substrings and the
+-- name as a prefix, all with LIKE on the lower-cased value. Trigram indexes serve these also in
+-- generic plans of prepared statements, where a B-tree cannot turn a LIKE parameter into a range
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX idx_song_artist_trgm ON song USING gin (lower(artist) gin_trgm_ops);
+CREATE INDEX idx_song_album_trgm ON song USING gin (lower(album) gin_trgm_ops);
+CREATE INDEX idx_song_name_trgm ON song USING gin (lower(name) gin_trgm_ops);
+CREATE INDEX idx_song_year ON song (year);
+CREATE INDEX idx_song_duration ON song (duration);
@@ -0,0 +1,76 @@
+package com.learn.micro.resourceprocessor.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.apache.tika.Tika;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.mp3.Mp3Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares MP3 detection and metadata extraction as done before {@link Mp3Sniffer} and
+ * {@link Id3TagParser} (a new Tika facade, parser and content handler per call) with
+ * {@link MetadataService}. Run with
+ * {@code mvn -Pjmh test-compile exec:exec}; add {@code -Djmh.args="-prof gc"} to see the
+ * allocation rate per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Mp3DetectionBenchmark {
+
+    @Param("src/test/resources/test-data/test.mp3")
+    public String file;
+
+    private byte[] content;
+    private MetadataService metadataService;
+
+    @Setup
+    public void setUp() throws IOException {
+        content = Files.readAllBytes(Path.of(file));
+        metadataService = new MetadataService(new Mp3Sniffer(), new Id3TagParser(), new Mp3DurationCalculator());
+    }
+
+    @Benchmark
+    public boolean detectWithNewTika() {
+        String fileType = new Tika().detect(content);
+        return "audio/mpeg".equalsIgnoreCase(fileType) || "audio/mp3".equalsIgnoreCase(fileType);
+    }
+
+    @Benchmark
+    public boolean detectWithSniffer() {
+        return metadataService.isValidMp3(content);
+    }
+
+    @Benchmark
+    public Metadata extractWithNewParser() throws Exception {
+        Metadata metadata = new Metadata();
+        try (InputStream inputStream = new ByteArrayInputStream(content)) {
+            new Mp3Parser().parse(inputStream, new BodyContentHandler(), metadata, null);
+        }
+        return metadata;
+    }
+
+    @Benchmark
+    public Object extractWithMetadataService() {
+        return metadataService.extractMetadata(content);
+    }
+}
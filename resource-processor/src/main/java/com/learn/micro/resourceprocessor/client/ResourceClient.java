@@ -1,19 +1,29 @@
 package com.learn.micro.resourceprocessor.client;
 
 import com.learn.micro.resourceprocessor.exception.GeneralFailureException;
+import com.learn.micro.resourceprocessor.model.ResourceRange;
 import com.learn.micro.resourceprocessor.service.ServiceProvider;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Recover;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.retry.support.RetrySynchronizationManager;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
+/**
+ * Calls are retried once after a short delay ({@code app.client.retry}). Longer backoff is left to
+ * the retry topics of the listener, so a slow resource-service does not hold up a partition.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
@@ -25,8 +35,8 @@ public class ResourceClient {
 
     @Retryable(
         retryFor = {HttpServerErrorException.class, GeneralFailureException.class},
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 2000, multiplier = 2)
+        maxAttemptsExpression = "${app.client.retry.max-attempts:2}",
+        backoff = @Backoff(delayExpression = "${app.client.retry.delay:200}")
     )
     public byte[] fetchResource(String resourceId) {
         ServiceInstance resourceService = serviceProvider.getServiceInstance(RESOURCE_SERVICE);
@@ -44,6 +54,65 @@ public class ResourceClient {
             "Failed to fetch resource from Resource Service: " + resourceId);
     }
 
+    /**
+     * Fetches a single byte range, e.g. {@code bytes=0-16383} or {@code bytes=-128}.
+     */
+    @Retryable(
+        retryFor = {HttpServerErrorException.class, GeneralFailureException.class},
+        maxAttemptsExpression = "${app.client.retry.max-attempts:2}",
+        backoff = @Backoff(delayExpression = "${app.client.retry.delay:200}")
+    )
+    public ResourceRange fetchResourceRange(String resourceId, String range) {
+        ServiceInstance resourceService = serviceProvider.getServiceInstance(RESOURCE_SERVICE);
+        String url = resourceService.getUri() + "/resources/" + resourceId;
+        log.info("Inside ResourceClient: get range {} of resource by Id: {}", range, resourceId);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, range);
+        ResponseEntity<byte[]> response =
+            restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+        byte[] body = response.getBody() != null ? response.getBody() : new byte[0];
+        if (response.getStatusCode() == HttpStatus.PARTIAL_CONTENT) {
+            return new ResourceRange(body, fileLength(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)));
+        }
+        if (response.getStatusCode().is2xxSuccessful()) {
+            // The whole file came back, e.g. a range covering all of it
+            return new ResourceRange(body, body.length);
+        }
+        throw new IllegalStateException(
+            "Failed to fetch range " + range + " of resource from Resource Service: " + resourceId);
+    }
+
+    /**
+     * Tells whether resource-service still has the resource, reading a single byte of it. Not
+     * retried: a failure is rethrown and the record is retried as a whole.
+     */
+    public boolean resourceExists(String resourceId) {
+        ServiceInstance resourceService = serviceProvider.getServiceInstance(RESOURCE_SERVICE);
+        String url = resourceService.getUri() + "/resources/" + resourceId;
+        log.info("Inside ResourceClient: checking that resource exists by Id: {}", resourceId);
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=0-0");
+        try {
+            restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+            return true;
+        } catch (HttpClientErrorException.NotFound e) {
+            return false;
+        }
+    }
+
+    private static long fileLength(String contentRange) {
+        if (contentRange == null || contentRange.endsWith("/*")) {
+            throw new IllegalStateException("Missing file length in Content-Range: " + contentRange);
+        }
+        return Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1));
+    }
+
+    @Recover
+    public ResourceRange recoverRange(Exception e, String resourceId, String range) {
+        throw new GeneralFailureException(
+            "Failed to fetch range " + range + " of resource after retries: " + resourceId, e);
+    }
+
     @Recover
     public byte[] recover(Exception e, String resourceId) {
         throw new GeneralFailureException("Failed to fetch resource after retries: " + resourceId,
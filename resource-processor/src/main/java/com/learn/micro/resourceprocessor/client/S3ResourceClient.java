@@ -0,0 +1,74 @@
+package com.learn.micro.resourceprocessor.client;
+
+import com.learn.micro.resourceprocessor.model.ResourceRange;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+/**
+ * Reads resource files straight from the bucket, using the S3 location carried in the CREATE
+ * event, so the bytes do not pass through resource-service. Every failure (missing object,
+ * object already moved to permanent storage, bucket unreachable) returns empty and the caller
+ * falls back to {@link ResourceClient}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.s3.direct-read.enabled", havingValue = "true")
+public class S3ResourceClient {
+
+    private static final String PREFIX = "s3://";
+    private final S3Client s3Client;
+
+    public Optional<byte[]> fetchObject(String s3Location) {
+        return read(s3Location, null).map(ResourceRange::content);
+    }
+
+    /**
+     * Fetches a single byte range, e.g. {@code bytes=0-16383} or {@code bytes=-128}.
+     */
+    public Optional<ResourceRange> fetchRange(String s3Location, String range) {
+        return read(s3Location, range);
+    }
+
+    private Optional<ResourceRange> read(String s3Location, String range) {
+        int firstSlash = s3Location == null ? -1 : s3Location.indexOf('/', PREFIX.length());
+        if (firstSlash == -1 || !s3Location.startsWith(PREFIX)) {
+            log.warn("Cannot read invalid S3 location {} directly", s3Location);
+            return Optional.empty();
+        }
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+            .bucket(s3Location.substring(PREFIX.length(), firstSlash))
+            .key(s3Location.substring(firstSlash))
+            .range(range);
+        try {
+            ResponseBytes<GetObjectResponse> object = s3Client.getObjectAsBytes(request.build());
+            // The SDK buffer is handed over as is rather than copied once more
+            byte[] content = object.asByteArrayUnsafe();
+            return Optional.of(new ResourceRange(content, fileLength(object.response(), content.length)));
+        } catch (SdkException e) {
+            log.warn("Direct read of {} failed, falling back to resource-service: {}", s3Location,
+                e.getMessage());
+            return Optional.empty();
+        } catch (NumberFormatException e) {
+            log.warn("Direct read of {} returned an unreadable Content-Range, falling back to resource-service: {}",
+                s3Location, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static long fileLength(GetObjectResponse response, int contentLength) {
+        String contentRange = response.contentRange();
+        if (contentRange == null || contentRange.endsWith("/*")) {
+            return contentLength;
+        }
+        return Long.parseLong(contentRange.substring(contentRange.lastIndexOf('/') + 1));
+    }
+}
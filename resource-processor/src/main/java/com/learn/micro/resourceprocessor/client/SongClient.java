@@ -2,32 +2,86 @@ package com.learn.micro.resourceprocessor.client;
 
 import com.learn.micro.resourceprocessor.exception.GeneralFailureException;
 import com.learn.micro.resourceprocessor.model.MetadataDto;
+import com.learn.micro.resourceprocessor.model.SaveSongsResponse;
+import com.learn.micro.resourceprocessor.model.SongSaveResult;
 import com.learn.micro.resourceprocessor.service.ServiceProvider;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Recover;
 import org.springframework.retry.annotation.Retryable;
 import org.springframework.retry.support.RetrySynchronizationManager;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+/**
+ * With {@code app.song-client.batch.enabled} saves are buffered and sent to
+ * {@code POST /songs/batch} once {@code max-size} songs are waiting or {@code linger} has passed
+ * since the first one. Callers still block until their own song is stored, so concurrent
+ * consumers share one HTTP round trip and one insert statement. A caller waits at most
+ * {@code timeout} and then fails with a retryable {@link GeneralFailureException}.
+ *
+ * <p>Calls are retried once after a short delay ({@code app.client.retry}), which only covers a
+ * blip. These calls run on the listener path, so longer backoff is left to the retry topics.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class SongClient {
 
     private static final String SONG_SERVICE = "song-service";
     private final RestTemplate restTemplate;
     private final ServiceProvider serviceProvider;
+    private final boolean batchEnabled;
+    private final int batchMaxSize;
+    private final Duration batchLinger;
+    private final Duration batchTimeout;
+    private final ScheduledExecutorService flushScheduler;
+    private final Object bufferLock = new Object();
+    private List<PendingSong> buffer = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    public SongClient(RestTemplate restTemplate, ServiceProvider serviceProvider,
+        @Value("${app.song-client.batch.enabled:false}") boolean batchEnabled,
+        @Value("${app.song-client.batch.max-size:50}") int batchMaxSize,
+        @Value("${app.song-client.batch.linger:100ms}") Duration batchLinger,
+        @Value("${app.song-client.batch.timeout:30s}") Duration batchTimeout) {
+        this.restTemplate = restTemplate;
+        this.serviceProvider = serviceProvider;
+        this.batchEnabled = batchEnabled;
+        this.batchMaxSize = batchMaxSize;
+        this.batchLinger = batchLinger;
+        this.batchTimeout = batchTimeout;
+        this.flushScheduler = batchEnabled
+            ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "song-batch-flush");
+                thread.setDaemon(true);
+                return thread;
+            })
+            : null;
+    }
 
     @Retryable(
         retryFor = {HttpServerErrorException.class, GeneralFailureException.class},
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 2000, multiplier = 2)
+        maxAttemptsExpression = "${app.client.retry.max-attempts:2}",
+        backoff = @Backoff(delayExpression = "${app.client.retry.delay:200}")
     )
     public void saveSongMetadata(MetadataDto metadata) {
         ServiceInstance songService = serviceProvider.getServiceInstance(SONG_SERVICE);
@@ -37,13 +91,112 @@ public class SongClient {
             : 1;
         log.info("Inside SongClient: Attempt {} to save metadata for song: {}", attempt,
             metadata.getName());
+        if (batchEnabled) {
+            awaitBuffered(metadata);
+            return;
+        }
         restTemplate.postForEntity(url, metadata, Void.class);
     }
 
+    private void awaitBuffered(MetadataDto metadata) {
+        CompletableFuture<Void> saved = new CompletableFuture<>();
+        List<PendingSong> fullBatch = null;
+        synchronized (bufferLock) {
+            buffer.add(new PendingSong(metadata, saved));
+            if (buffer.size() >= batchMaxSize) {
+                fullBatch = drainBuffer();
+            } else if (scheduledFlush == null) {
+                scheduledFlush = flushScheduler.schedule(this::flushBuffer, batchLinger.toMillis(),
+                    TimeUnit.MILLISECONDS);
+            }
+        }
+        if (fullBatch != null) {
+            sendBatch(fullBatch);
+        }
+        try {
+            saved.orTimeout(batchTimeout.toMillis(), TimeUnit.MILLISECONDS).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                throw new GeneralFailureException("Timed out waiting for batch save of song: "
+                    + metadata.getName(), e.getCause());
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void flushBuffer() {
+        List<PendingSong> batch;
+        synchronized (bufferLock) {
+            batch = drainBuffer();
+        }
+        sendBatch(batch);
+    }
+
+    private List<PendingSong> drainBuffer() {
+        List<PendingSong> batch = buffer;
+        buffer = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    /**
+     * Sends one batch and completes every caller's future with its own result. A failed request
+     * fails the whole batch; each caller's retry then buffers its song again.
+     */
+    private void sendBatch(List<PendingSong> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            ServiceInstance songService = serviceProvider.getServiceInstance(SONG_SERVICE);
+            List<MetadataDto> songs = batch.stream().map(PendingSong::metadata).toList();
+            SaveSongsResponse response = restTemplate.postForObject(
+                songService.getUri() + "/songs/batch", songs, SaveSongsResponse.class);
+            if (response == null || response.results().size() != batch.size()) {
+                throw new GeneralFailureException("Unexpected batch save response from Song Service");
+            }
+            log.info("Inside SongClient: Saved batch of {} songs", batch.size());
+            for (int index = 0; index < batch.size(); index++) {
+                complete(batch.get(index).saved(), response.results().get(index));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to save batch of {} songs: {}", batch.size(), e.getMessage());
+            batch.forEach(pending -> pending.saved().completeExceptionally(e));
+        }
+    }
+
+    private static void complete(CompletableFuture<Void> saved, SongSaveResult result) {
+        if (result.isCreated()) {
+            saved.complete(null);
+            return;
+        }
+        // Same outcome the single POST reports for this song
+        HttpStatus status = "ALREADY_EXISTS".equals(result.status())
+            ? HttpStatus.CONFLICT
+            : HttpStatus.BAD_REQUEST;
+        saved.completeExceptionally(
+            HttpClientErrorException.create(result.message(), status, status.getReasonPhrase(),
+                null, null, null));
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        if (flushScheduler != null) {
+            flushBuffer();
+            flushScheduler.shutdown();
+        }
+    }
+
     @Retryable(
         retryFor = {HttpServerErrorException.class, GeneralFailureException.class},
-        maxAttempts = 3,
-        backoff = @Backoff(delay = 2000, multiplier = 2)
+        maxAttemptsExpression = "${app.client.retry.max-attempts:2}",
+        backoff = @Backoff(delayExpression = "${app.client.retry.delay:200}")
     )
     public void deleteSongMetadata(Integer songId) {
         ServiceInstance songService = serviceProvider.getServiceInstance(SONG_SERVICE);
@@ -55,6 +208,44 @@ public class SongClient {
         restTemplate.exchange(url, HttpMethod.DELETE, null, Void.class, songId);
     }
 
+    /**
+     * Looks up stored metadata. Not retried: callers fall back to extracting it themselves.
+     */
+    public Optional<MetadataDto> findSongMetadata(Integer songId) {
+        ServiceInstance songService = serviceProvider.getServiceInstance(SONG_SERVICE);
+        String url = songService.getUri() + "/songs/{id}";
+        log.info("Inside SongClient: Looking up metadata for songId: {}", songId);
+        try {
+            return Optional.ofNullable(restTemplate.getForObject(url, MetadataDto.class, songId));
+        } catch (HttpClientErrorException.NotFound e) {
+            return Optional.empty();
+        } catch (RestClientException e) {
+            log.warn("Failed to look up metadata for songId: {}: {}", songId, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Tells whether a song is stored. Unlike {@link #findSongMetadata} a failure is not taken for
+     * a missing song: it is rethrown and the record is retried as a whole.
+     */
+    public boolean songExists(Integer songId) {
+        ServiceInstance songService = serviceProvider.getServiceInstance(SONG_SERVICE);
+        String url = songService.getUri() + "/songs/{id}";
+        log.info("Inside SongClient: checking that song exists for songId: {}", songId);
+        try {
+            restTemplate.getForEntity(url, MetadataDto.class, songId);
+            return true;
+        } catch (HttpClientErrorException.NotFound e) {
+            return false;
+        } catch (RestClientException e) {
+            throw new GeneralFailureException("Failed to look up song: " + songId, e);
+        }
+    }
+
+    private record PendingSong(MetadataDto metadata, CompletableFuture<Void> saved) {
+    }
+
     @Recover
     public void recover(Exception e, MetadataDto metadata) {
         throw new GeneralFailureException("Failed to save song metadata: " + metadata.getName(), e);
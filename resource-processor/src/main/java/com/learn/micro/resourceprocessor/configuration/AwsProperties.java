@@ -0,0 +1,24 @@
+package com.learn.micro.resourceprocessor.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix="aws")
+public class AwsProperties {
+
+    private String region;
+    private String endpoint;
+    private Credentials credentials;
+
+    @Getter
+    @Setter
+    public static class Credentials {
+        private String accessKey;
+        private String secretKey;
+    }
+}
@@ -0,0 +1,34 @@
+package com.learn.micro.resourceprocessor.configuration;
+
+import java.net.URI;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+
+/**
+ * S3 client for {@code app.s3.direct-read.enabled}, pointed at the same bucket store as
+ * resource-service.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.s3.direct-read.enabled", havingValue = "true")
+public class AwsS3Config {
+
+    @Bean
+    public S3Client s3Client(AwsProperties awsProperties) {
+        return S3Client.builder()
+                .region(Region.of(awsProperties.getRegion()))
+                .endpointOverride(URI.create(awsProperties.getEndpoint()))
+                .credentialsProvider(StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(
+                        awsProperties.getCredentials().getAccessKey(),
+                        awsProperties.getCredentials().getSecretKey())))
+                .serviceConfiguration(
+                        S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .build();
+    }
+}
@@ -1,29 +1,44 @@
 package com.learn.micro.resourceprocessor.configuration;
 
+import com.learn.micro.resourceprocessor.kafka.ResourceBatchConsumer;
 import com.learn.micro.resourceprocessor.kafka.event.ResourceEvent;
+import com.learn.micro.resourceprocessor.service.ProcessedEventStore;
+import java.time.Duration;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Properties;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.util.backoff.FixedBackOff;
 
 @Slf4j
@@ -35,6 +50,8 @@ public class KafkaConfig {
     private static final long RETRY_INTERVAL_MS = 3000L;
 
     private final KafkaProperties kafkaProperties;
+    private final Environment environment;
+    private final ProcessedEventStore processedEventStore;
 
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
@@ -42,6 +59,13 @@ public class KafkaConfig {
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
 
+    /**
+     * Consumers of each listener, retry and dead letter containers included. With autoscaling on,
+     * the single-record and batch listeners start from it and are scaled by backlog.
+     */
+    @Value("${app.kafka.consumer.concurrency:1}")
+    private int concurrency;
+
     @Bean
     public ConsumerFactory<String, ResourceEvent> consumerFactory() {
         Map<String, Object> configProps = new HashMap<>();
@@ -73,11 +97,94 @@ public class KafkaConfig {
         return new KafkaTemplate<>(producerFactory());
     }
 
+    /**
+     * Failures of the single-record listener are handled by its retry topics, whose error handler
+     * forwards the record at once, so no blocking error handler is set here.
+     */
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, ResourceEvent> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, ResourceEvent> factory =
             new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.getContainerProperties().setConsumerRebalanceListener(
+            startingRecovery(new ConsumerAwareRebalanceListener() { }));
+        factory.setConcurrency(concurrency);
+        applyListenerExecutor(factory);
+        return factory;
+    }
+
+    /**
+     * The listener commits the offsets itself as records complete, see ResourceBatchConsumer;
+     * idle events give it the chance to do so while no records arrive.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.kafka.consumer.batch.enabled", havingValue = "true")
+    public ConcurrentKafkaListenerContainerFactory<String, ResourceEvent> batchKafkaListenerContainerFactory(
+        @Value("${app.kafka.consumer.batch.max-poll-records:100}") int maxPollRecords,
+        @Value("${app.kafka.consumer.batch.commit-interval:1s}") Duration commitInterval,
+        ResourceBatchConsumer resourceBatchConsumer) {
+        ConcurrentKafkaListenerContainerFactory<String, ResourceEvent> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setBatchListener(true);
+        Properties consumerProperties = new Properties();
+        consumerProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxPollRecords));
+        factory.getContainerProperties().setKafkaConsumerProperties(consumerProperties);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setIdleEventInterval(commitInterval.toMillis());
+        factory.getContainerProperties().setConsumerRebalanceListener(startingRecovery(resourceBatchConsumer));
+        factory.setCommonErrorHandler(errorHandler());
+        factory.setConcurrency(concurrency);
+        applyListenerExecutor(factory);
+        return factory;
+    }
+
+    /**
+     * Records are acknowledged when the pipeline is done with them, in any order; the container
+     * commits each partition up to the first record not yet acknowledged. It does not poll again
+     * while acknowledgements are outstanding, so capping a poll at max-in-flight records bounds
+     * what the pipeline holds, and a pause stops delivery before the rest of the poll.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.pipeline.enabled", havingValue = "true")
+    public ConcurrentKafkaListenerContainerFactory<String, ResourceEvent> pipelineKafkaListenerContainerFactory(
+        @Value("${app.pipeline.max-in-flight:64}") int maxInFlight) {
+        ConcurrentKafkaListenerContainerFactory<String, ResourceEvent> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        Properties consumerProperties = new Properties();
+        consumerProperties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, String.valueOf(maxInFlight));
+        factory.getContainerProperties().setKafkaConsumerProperties(consumerProperties);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        factory.getContainerProperties().setPauseImmediate(true);
+        factory.getContainerProperties().setConsumerRebalanceListener(
+            startingRecovery(new ConsumerAwareRebalanceListener() { }));
+        factory.setCommonErrorHandler(errorHandler());
+        factory.setConcurrency(concurrency);
+        applyListenerExecutor(factory);
+        return factory;
+    }
+
+    /**
+     * Bounded pool the batch listener fans its lanes out to. Handing a record over never blocks
+     * the consumer thread: records wait in the queue for a worker.
+     */
+    @Bean(name = "resourceEventWorkers")
+    @ConditionalOnProperty(name = "app.kafka.consumer.batch.enabled", havingValue = "true")
+    public AsyncTaskExecutor resourceEventWorkers(
+        @Value("${app.kafka.consumer.batch.workers:8}") int workers) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setVirtualThreads(Threading.VIRTUAL.isActive(environment));
+        executor.setThreadNamePrefix("resource-worker-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    private DefaultErrorHandler errorHandler() {
         DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate());
         DefaultErrorHandler errorHandler =
             new DefaultErrorHandler(recoverer, new FixedBackOff(RETRY_INTERVAL_MS, RETRY_ATTEMPTS));
@@ -89,8 +196,50 @@ public class KafkaConfig {
                     deliveryAttempt, consumerRecord.value());
             }
         });
-        factory.setCommonErrorHandler(errorHandler);
-        return factory;
+        return errorHandler;
+    }
+
+    /**
+     * Records of a newly assigned partition may have been processed by its previous owner, so
+     * every assignment has ProcessedEventStore confirm events it has not seen for a while.
+     */
+    private ConsumerAwareRebalanceListener startingRecovery(ConsumerAwareRebalanceListener delegate) {
+        return new ConsumerAwareRebalanceListener() {
+
+            @Override
+            public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer,
+                Collection<TopicPartition> partitions) {
+                delegate.onPartitionsRevokedBeforeCommit(consumer, partitions);
+            }
+
+            @Override
+            public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer,
+                Collection<TopicPartition> partitions) {
+                delegate.onPartitionsRevokedAfterCommit(consumer, partitions);
+            }
+
+            @Override
+            public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                delegate.onPartitionsLost(consumer, partitions);
+            }
+
+            @Override
+            public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+                delegate.onPartitionsAssigned(consumer, partitions);
+                if (!partitions.isEmpty()) {
+                    processedEventStore.startRecovery();
+                }
+            }
+        };
+    }
+
+    private void applyListenerExecutor(ConcurrentKafkaListenerContainerFactory<String, ResourceEvent> factory) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            // Boot only applies virtual threads to the factory it configures itself
+            SimpleAsyncTaskExecutor listenerExecutor = new SimpleAsyncTaskExecutor("kafka-listener-");
+            listenerExecutor.setVirtualThreads(true);
+            factory.getContainerProperties().setListenerTaskExecutor(listenerExecutor);
+        }
     }
 
     @Bean(name = "kafkaBootstrapConfigBean")
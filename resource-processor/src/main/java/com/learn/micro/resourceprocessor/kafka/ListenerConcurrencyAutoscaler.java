@@ -0,0 +1,302 @@
+package com.learn.micro.resourceprocessor.kafka;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.ListOffsetsResult.ListOffsetsResultInfo;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Adjusts the concurrency of the listener containers named in {@code listeners} to their
+ * backlog; the retry and dead letter containers of a listener are not scaled. The batch and
+ * pipeline listeners must not be listed: their throughput is set by the worker pool and the
+ * stages rather than by the consumers, and the restart of a scaling step would drop the progress
+ * of the records still on their workers, which are then dispatched again. On every check the lag
+ * of the container's group is read through the admin client and combined with the mean time per
+ * record, from the {@code spring.kafka.listener} timers of the container's consumers, into the
+ * time the current consumers need to drain the backlog.
+ * <p>
+ * Above {@code target-drain-time} the container gets one more consumer, up to
+ * {@code max-concurrency} and the partition count; after {@code scale-down-after} checks in a
+ * row where a quarter of that time would do, one less, down to {@code min-concurrency}.
+ * <p>
+ * A container only picks up a new concurrency when it starts, so every change restarts it and
+ * rebalances the group; {@code cooldown} spaces the changes out. Paused containers are left
+ * alone. Decisions are exported as {@code kafka.listener.concurrency},
+ * {@code kafka.listener.lag} and {@code kafka.listener.scaling}, and listed by the
+ * {@code listenerconcurrency} actuator endpoint.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.kafka.autoscaling.enabled", havingValue = "true")
+public class ListenerConcurrencyAutoscaler {
+
+    private static final String LISTENER_TIMER = "spring.kafka.listener";
+    private static final long ADMIN_TIMEOUT_SECONDS = 10;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final MeterRegistry meterRegistry;
+    private final List<String> listenerIds;
+    private final Admin admin;
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final Duration targetDrainTime;
+    private final Duration cooldown;
+    private final int scaleDownAfter;
+    private final Map<String, ListenerState> states = new ConcurrentHashMap<>();
+
+    public ListenerConcurrencyAutoscaler(KafkaListenerEndpointRegistry listenerRegistry,
+        KafkaAdmin kafkaAdmin, MeterRegistry meterRegistry,
+        @Value("${app.kafka.autoscaling.listeners:resourceEventListener}")
+        List<String> listenerIds,
+        @Value("${app.kafka.autoscaling.min-concurrency:1}") int minConcurrency,
+        @Value("${app.kafka.autoscaling.max-concurrency:8}") int maxConcurrency,
+        @Value("${app.kafka.autoscaling.target-drain-time:30s}") Duration targetDrainTime,
+        @Value("${app.kafka.autoscaling.cooldown:60s}") Duration cooldown,
+        @Value("${app.kafka.autoscaling.scale-down-after:4}") int scaleDownAfter) {
+        this(listenerRegistry, Admin.create(kafkaAdmin.getConfigurationProperties()), meterRegistry, listenerIds,
+            minConcurrency, maxConcurrency, targetDrainTime, cooldown, scaleDownAfter);
+    }
+
+    ListenerConcurrencyAutoscaler(KafkaListenerEndpointRegistry listenerRegistry, Admin admin,
+        MeterRegistry meterRegistry, List<String> listenerIds, int minConcurrency, int maxConcurrency,
+        Duration targetDrainTime, Duration cooldown, int scaleDownAfter) {
+        this.listenerRegistry = listenerRegistry;
+        this.meterRegistry = meterRegistry;
+        this.listenerIds = listenerIds;
+        this.admin = admin;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.targetDrainTime = targetDrainTime;
+        this.cooldown = cooldown;
+        this.scaleDownAfter = scaleDownAfter;
+    }
+
+    @Scheduled(initialDelayString = "${app.kafka.autoscaling.interval:15s}",
+        fixedDelayString = "${app.kafka.autoscaling.interval:15s}")
+    public void evaluate() {
+        for (String listenerId : listenerIds) {
+            MessageListenerContainer container = listenerRegistry.getListenerContainer(listenerId);
+            if (container instanceof ConcurrentMessageListenerContainer<?, ?> concurrent
+                && container.isRunning() && !container.isPauseRequested()) {
+                try {
+                    evaluate(concurrent);
+                } catch (Exception e) {
+                    log.warn("Failed to evaluate concurrency of listener {}: {}", container.getListenerId(),
+                        e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Latest decision per listener id.
+     */
+    public Map<String, Decision> decisions() {
+        return states.entrySet().stream()
+            .filter(entry -> entry.getValue().decision != null)
+            .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().decision,
+                (first, second) -> first, TreeMap::new));
+    }
+
+    private void evaluate(ConcurrentMessageListenerContainer<?, ?> container) throws Exception {
+        String[] topics = container.getContainerProperties().getTopics();
+        if (topics == null || container.getGroupId() == null) {
+            return;
+        }
+        String listenerId = container.getListenerId();
+        ListenerState state = states.computeIfAbsent(listenerId, id -> register(id, container));
+        List<TopicPartition> partitions = admin.describeTopics(Arrays.asList(topics)).allTopicNames()
+            .get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS).values().stream()
+            .flatMap(topic -> topic.partitions().stream()
+                .map(partition -> new TopicPartition(topic.name(), partition.partition())))
+            .toList();
+        long lag = lag(container.getGroupId(), partitions);
+        double secondsPerRecord = state.secondsPerRecord(processingTimers(listenerId));
+        int concurrency = container.getConcurrency();
+        int upper = Math.max(minConcurrency, Math.min(maxConcurrency, partitions.size()));
+        Instant now = Instant.now();
+        Scaling scaling = decide(state, concurrency, upper, lag, secondsPerRecord, now);
+        int wanted = scaling.concurrency();
+        if (wanted != concurrency) {
+            log.info("Scaling listener {} from {} to {} consumers: lag={}, {}", listenerId, concurrency,
+                wanted, lag, scaling.reason());
+            container.stop();
+            container.setConcurrency(wanted);
+            container.start();
+            meterRegistry.counter("kafka.listener.scaling", "listener", listenerId,
+                "direction", wanted > concurrency ? "up" : "down").increment();
+        }
+        state.lag = lag;
+        state.decision = new Decision(wanted, minConcurrency, upper, partitions.size(), lag,
+            Double.isNaN(secondsPerRecord) ? null : secondsPerRecord * 1000,
+            wanted > concurrency ? "up" : wanted < concurrency ? "down" : "hold", scaling.reason(), now);
+    }
+
+    /**
+     * Picks the concurrency for a listener from the time its current consumers need to drain the
+     * backlog, and records a change in {@code state}.
+     *
+     * @param upper            the upper bound in effect, capped by the partition count
+     * @param secondsPerRecord mean time per record since the previous check, NaN when none finished
+     */
+    Scaling decide(ListenerState state, int concurrency, int upper, long lag, double secondsPerRecord,
+        Instant now) {
+        // No record finished since the last check while there is a backlog: consumers are stuck on slow records
+        double drainSeconds = lag == 0 ? 0
+            : Double.isNaN(secondsPerRecord) ? Double.POSITIVE_INFINITY
+            : lag * secondsPerRecord / concurrency;
+        double target = targetDrainTime.toMillis() / 1000.0;
+
+        int wanted = concurrency;
+        String reason;
+        if (concurrency > upper || concurrency < minConcurrency) {
+            wanted = Math.max(minConcurrency, Math.min(upper, concurrency));
+            reason = "outside of " + minConcurrency + ".." + upper;
+        } else if (drainSeconds > target) {
+            state.quietChecks = 0;
+            wanted = Math.min(upper, concurrency + 1);
+            reason = wanted > concurrency ? "backlog drains in " + format(drainSeconds) : "at maximum";
+        } else if (drainSeconds < target / 4) {
+            state.quietChecks++;
+            wanted = state.quietChecks >= scaleDownAfter ? Math.max(minConcurrency, concurrency - 1) : concurrency;
+            reason = wanted < concurrency ? "backlog drains in " + format(drainSeconds) : "low backlog";
+        } else {
+            state.quietChecks = 0;
+            reason = "within target";
+        }
+        if (wanted != concurrency && state.lastChange != null
+            && state.lastChange.plus(cooldown).isAfter(now)) {
+            reason = "cooling down, " + reason;
+            wanted = concurrency;
+        }
+        if (wanted != concurrency) {
+            state.lastChange = now;
+            state.quietChecks = 0;
+        }
+        return new Scaling(wanted, reason);
+    }
+
+    /**
+     * Records between the group's position and the end of each partition. A partition the group
+     * has not committed yet counts from its beginning offset, as retention may have deleted the
+     * records from offset 0 on long ago.
+     */
+    private long lag(String groupId, List<TopicPartition> partitions) throws Exception {
+        Map<TopicPartition, ListOffsetsResultInfo> endOffsets = offsets(partitions, OffsetSpec.latest());
+        Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(groupId)
+            .partitionsToOffsetAndMetadata().get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        List<TopicPartition> uncommitted = partitions.stream()
+            .filter(partition -> committed.get(partition) == null)
+            .toList();
+        Map<TopicPartition, ListOffsetsResultInfo> beginningOffsets =
+            uncommitted.isEmpty() ? Map.of() : offsets(uncommitted, OffsetSpec.earliest());
+        long lag = 0;
+        for (TopicPartition partition : partitions) {
+            OffsetAndMetadata offset = committed.get(partition);
+            long position = offset != null ? offset.offset() : beginningOffsets.get(partition).offset();
+            lag += Math.max(0, endOffsets.get(partition).offset() - position);
+        }
+        return lag;
+    }
+
+    private Map<TopicPartition, ListOffsetsResultInfo> offsets(List<TopicPartition> partitions, OffsetSpec spec)
+        throws Exception {
+        return admin.listOffsets(partitions.stream()
+                .collect(Collectors.toMap(Function.identity(), partition -> spec)))
+            .all().get(ADMIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Timers with one sample per record processed by the listener. The consumers of a container
+     * are named {@code <listenerId>-<n>}, which its retry and dead letter containers are not.
+     */
+    List<Timer> processingTimers(String listenerId) {
+        Pattern consumerName = Pattern.compile(Pattern.quote(listenerId) + "-\\d+");
+        return meterRegistry.find(LISTENER_TIMER).timers().stream()
+            .filter(timer -> {
+                String name = timer.getId().getTag("name");
+                return name != null && consumerName.matcher(name).matches();
+            })
+            .toList();
+    }
+
+    private ListenerState register(String listenerId, ConcurrentMessageListenerContainer<?, ?> container) {
+        ListenerState state = new ListenerState();
+        Gauge.builder("kafka.listener.concurrency", container, ConcurrentMessageListenerContainer::getConcurrency)
+            .tag("listener", listenerId)
+            .register(meterRegistry);
+        Gauge.builder("kafka.listener.lag", state, current -> current.lag)
+            .tag("listener", listenerId)
+            .register(meterRegistry);
+        return state;
+    }
+
+    private static String format(double seconds) {
+        return Double.isInfinite(seconds) ? "never (no records finished)" : Math.round(seconds) + "s";
+    }
+
+    @PreDestroy
+    public void close() {
+        admin.close(Duration.ofSeconds(ADMIN_TIMEOUT_SECONDS));
+    }
+
+    /**
+     * @param maxConcurrency   the upper bound in effect, capped by the partition count
+     * @param latencyMs        mean processing time per record since the previous check, null
+     *                         when none finished
+     * @param action           up, down or hold
+     */
+    public record Decision(int concurrency, int minConcurrency, int maxConcurrency, int partitions,
+                           long lag, Double latencyMs, String action, String reason, Instant at) {
+    }
+
+    record Scaling(int concurrency, String reason) {
+    }
+
+    static final class ListenerState {
+
+        private volatile long lag;
+        private volatile Decision decision;
+        private Instant lastChange;
+        private int quietChecks;
+        private long lastCount;
+        private double lastTotalSeconds;
+
+        /**
+         * Mean time per record finished since the previous call, NaN when none finished.
+         */
+        double secondsPerRecord(List<Timer> timers) {
+            long count = timers.stream().mapToLong(Timer::count).sum();
+            double totalSeconds = timers.stream().mapToDouble(timer -> timer.totalTime(TimeUnit.SECONDS)).sum();
+            long finished = count - lastCount;
+            double spent = totalSeconds - lastTotalSeconds;
+            lastCount = count;
+            lastTotalSeconds = totalSeconds;
+            return finished > 0 ? spent / finished : Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.learn.micro.resourceprocessor.kafka;
+
+import com.learn.micro.resourceprocessor.kafka.event.ResourceEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.backoff.BackOff;
+import org.springframework.util.backoff.BackOffExecution;
+import org.springframework.util.backoff.FixedBackOff;
+
+/**
+ * Batch mode of {@link ResourceConsumer}, enabled with {@code app.kafka.consumer.batch.enabled}.
+ * The records of each poll are split into lanes by key (the resourceId) and handed to a bounded
+ * worker pool without waiting for them, so one slow file does not hold back the other resources
+ * of the partition or the polling, while events of the same resource keep their order.
+ * <p>
+ * Completion is tracked per record and each partition is committed up to its first record not
+ * yet done, on the consumer thread after every poll and on every idle event. A partition with
+ * more than {@code app.kafka.consumer.batch.max-pending} records not yet done is paused until
+ * half of them are. A record that still fails after the retries is sent to the dead letter
+ * topic; if that fails too, the partition is paused, and once its lanes have settled it is
+ * rewound to the record and fetched again.
+ * <p>
+ * The listener returns as soon as a poll is dispatched, so the time each record takes on its
+ * worker is recorded as {@code resource.events.processing}. Its throughput is set by the worker
+ * pool, so ListenerConcurrencyAutoscaler does not scale it.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.kafka.consumer.batch.enabled", havingValue = "true")
+public class ResourceBatchConsumer implements ConsumerAwareRebalanceListener {
+
+    private static final String LISTENER_ID = "resourceEventBatchListener";
+    private static final String TRACE_ID_HEADER = "X-Trace-Id";
+    private static final int RETRY_ATTEMPTS = 3;
+    private static final long RETRY_INTERVAL_MS = 3000L;
+
+    private final ResourceConsumer resourceConsumer;
+    private final Executor workers;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final ConsumerRecordRecoverer recoverer;
+    private final BackOff backOff;
+    private final int maxPending;
+    private final Timer processingTimer;
+    private final Map<TopicPartition, PartitionProgress> progress = new ConcurrentHashMap<>();
+
+    public ResourceBatchConsumer(ResourceConsumer resourceConsumer,
+        @Qualifier("resourceEventWorkers") Executor workers,
+        KafkaListenerEndpointRegistry listenerRegistry,
+        KafkaTemplate<String, ResourceEvent> kafkaTemplate, MeterRegistry meterRegistry,
+        @Value("${app.kafka.consumer.batch.max-pending:500}") int maxPending) {
+        this(resourceConsumer, workers, listenerRegistry, new DeadLetterPublishingRecoverer(kafkaTemplate),
+            new FixedBackOff(RETRY_INTERVAL_MS, RETRY_ATTEMPTS), meterRegistry, maxPending);
+    }
+
+    ResourceBatchConsumer(ResourceConsumer resourceConsumer, Executor workers,
+        KafkaListenerEndpointRegistry listenerRegistry, ConsumerRecordRecoverer recoverer,
+        BackOff backOff, MeterRegistry meterRegistry, int maxPending) {
+        this.resourceConsumer = resourceConsumer;
+        this.workers = workers;
+        this.listenerRegistry = listenerRegistry;
+        this.recoverer = recoverer;
+        this.backOff = backOff;
+        this.maxPending = maxPending;
+        this.processingTimer = Timer.builder("resource.events.processing")
+            .description("Time a record takes on its worker, retries included")
+            .tag("listener", LISTENER_ID)
+            .register(meterRegistry);
+    }
+
+    @KafkaListener(
+        id = LISTENER_ID,
+        topics = "${spring.kafka.topic}",
+        groupId = "${spring.kafka.consumer.group-id}",
+        containerFactory = "batchKafkaListenerContainerFactory",
+        autoStartup = "#{!${app.pipeline.enabled:false}}")
+    public void consume(List<ConsumerRecord<String, ResourceEvent>> records, Consumer<?, ?> consumer) {
+        int dispatched = 0;
+        for (ConsumerRecord<String, ResourceEvent> consumerRecord : records) {
+            TopicPartition partition = new TopicPartition(consumerRecord.topic(), consumerRecord.partition());
+            PartitionProgress partitionProgress = progress.computeIfAbsent(partition, key -> new PartitionProgress());
+            // Records behind a failure are fetched again once the partition is rewound
+            if (partitionProgress.dispatch(consumerRecord.offset())) {
+                runInLane(partitionProgress, consumerRecord);
+                dispatched++;
+            }
+        }
+        log.info("Dispatched {} of {} records", dispatched, records.size());
+        commitCompleted(consumer);
+    }
+
+    /**
+     * Idle events are published on the consumer thread, so records finished while nothing new
+     * arrives are committed as well.
+     */
+    @EventListener(condition = "event.listenerId.startsWith('" + LISTENER_ID + "-')")
+    public void onIdle(ListenerContainerIdleEvent event) {
+        commitCompleted(event.getConsumer());
+    }
+
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        commit(consumer, partitions);
+        forget(partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        forget(partitions);
+    }
+
+    /**
+     * Commits each assigned partition up to its first record not yet done, then pauses or
+     * resumes it by the records still pending. Must run on the consumer thread.
+     */
+    void commitCompleted(Consumer<?, ?> consumer) {
+        commit(consumer, consumer.assignment());
+        for (TopicPartition partition : consumer.assignment()) {
+            PartitionProgress partitionProgress = progress.get(partition);
+            if (partitionProgress == null) {
+                continue;
+            }
+            if (partitionProgress.isFailed()) {
+                pause(partition, partitionProgress);
+                if (partitionProgress.isSettled()) {
+                    long offset = partitionProgress.commitPoint();
+                    log.warn("Rewinding {} to failed offset {}", partition, offset);
+                    consumer.seek(partition, offset);
+                    progress.remove(partition, partitionProgress);
+                    container().resumePartition(partition);
+                }
+            } else if (partitionProgress.pending() >= maxPending) {
+                pause(partition, partitionProgress);
+            } else if (partitionProgress.pending() <= maxPending / 2 && partitionProgress.resume()) {
+                log.info("Resuming {} with {} records pending", partition, partitionProgress.pending());
+                container().resumePartition(partition);
+            }
+        }
+    }
+
+    private void commit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            PartitionProgress partitionProgress = progress.get(partition);
+            if (partitionProgress != null) {
+                long offset = partitionProgress.advanceCommitted();
+                if (offset >= 0) {
+                    offsets.put(partition, new OffsetAndMetadata(offset));
+                }
+            }
+        }
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+    }
+
+    private void pause(TopicPartition partition, PartitionProgress partitionProgress) {
+        if (partitionProgress.pause()) {
+            log.info("Pausing {} with {} records pending", partition, partitionProgress.pending());
+            container().pausePartition(partition);
+        }
+    }
+
+    private void forget(Collection<TopicPartition> partitions) {
+        for (TopicPartition partition : partitions) {
+            PartitionProgress partitionProgress = progress.remove(partition);
+            if (partitionProgress != null && partitionProgress.isPaused()) {
+                container().resumePartition(partition);
+            }
+        }
+    }
+
+    /**
+     * Runs the record after the previous record of its lane. When that one failed, the record is
+     * left pending, as it is fetched again after the rewind.
+     */
+    private void runInLane(PartitionProgress partitionProgress,
+        ConsumerRecord<String, ResourceEvent> consumerRecord) {
+        String key = laneKey(consumerRecord);
+        CompletableFuture<Void> current = new CompletableFuture<>();
+        partitionProgress.chain(key, current)
+            .thenRunAsync(() -> processingTimer.record(() -> process(consumerRecord)), workers)
+            .whenComplete((ignored, failure) -> {
+                partitionProgress.settle(key, current, consumerRecord.offset(), failure == null);
+                if (failure != null) {
+                    current.completeExceptionally(failure);
+                } else {
+                    current.complete(null);
+                }
+            });
+    }
+
+    private void process(ConsumerRecord<String, ResourceEvent> consumerRecord) {
+        ResourceEvent resourceEvent = consumerRecord.value();
+        if (resourceEvent == null) {
+            log.warn("Skipping record without value at offset {}", consumerRecord.offset());
+            return;
+        }
+        BackOffExecution backOffExecution = backOff.start();
+        while (true) {
+            try {
+                resourceConsumer.handle(resourceEvent, traceId(consumerRecord));
+                return;
+            } catch (RuntimeException e) {
+                long interval = backOffExecution.nextBackOff();
+                if (interval == BackOffExecution.STOP) {
+                    log.error("Retries exhausted for event={} with resourceId={}: sending record to DLT",
+                        resourceEvent.eventType(), resourceEvent.resourceId(), e);
+                    recoverer.accept(consumerRecord, e);
+                    return;
+                }
+                log.info("Retrying event={} with resourceId={} in {} ms: {}",
+                    resourceEvent.eventType(), resourceEvent.resourceId(), interval, e.getMessage());
+                sleep(interval, e);
+            }
+        }
+    }
+
+    private static void sleep(long interval, RuntimeException failure) {
+        try {
+            Thread.sleep(interval);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failure;
+        }
+    }
+
+    private MessageListenerContainer container() {
+        return listenerRegistry.getListenerContainer(LISTENER_ID);
+    }
+
+    private static String laneKey(ConsumerRecord<String, ResourceEvent> consumerRecord) {
+        if (consumerRecord.key() != null) {
+            return consumerRecord.key();
+        }
+        return consumerRecord.value() != null
+            ? consumerRecord.value().resourceId()
+            : consumerRecord.partition() + "@" + consumerRecord.offset();
+    }
+
+    private static String traceId(ConsumerRecord<String, ResourceEvent> consumerRecord) {
+        Header header = consumerRecord.headers().lastHeader(TRACE_ID_HEADER);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Offsets of one partition dispatched and not yet done, and the tail of each of its lanes.
+     */
+    private static final class PartitionProgress {
+
+        private final TreeSet<Long> pending = new TreeSet<>();
+        private final Map<String, CompletableFuture<Void>> lanes = new HashMap<>();
+        private long next = -1;
+        private long committed = -1;
+        private int running;
+        private boolean failed;
+        private boolean paused;
+
+        synchronized boolean dispatch(long offset) {
+            if (failed) {
+                return false;
+            }
+            if (next < 0) {
+                // The group's position: nothing to commit until the first record is done
+                committed = offset;
+            }
+            pending.add(offset);
+            next = Math.max(next, offset + 1);
+            running++;
+            return true;
+        }
+
+        /**
+         * Makes {@code current} the tail of the lane and returns the previous tail.
+         */
+        synchronized CompletableFuture<Void> chain(String key, CompletableFuture<Void> current) {
+            CompletableFuture<Void> previous = lanes.put(key, current);
+            return previous != null ? previous : CompletableFuture.completedFuture(null);
+        }
+
+        synchronized void settle(String key, CompletableFuture<Void> lane, long offset, boolean done) {
+            running--;
+            lanes.remove(key, lane);
+            if (done) {
+                pending.remove(offset);
+            } else {
+                failed = true;
+            }
+        }
+
+        synchronized long commitPoint() {
+            return pending.isEmpty() ? next : pending.first();
+        }
+
+        /**
+         * Returns the offset to commit, or -1 when it has not moved since the last commit.
+         */
+        synchronized long advanceCommitted() {
+            long offset = commitPoint();
+            if (offset <= committed) {
+                return -1;
+            }
+            committed = offset;
+            return offset;
+        }
+
+        synchronized int pending() {
+            return pending.size();
+        }
+
+        synchronized boolean isFailed() {
+            return failed;
+        }
+
+        synchronized boolean isSettled() {
+            return running == 0;
+        }
+
+        synchronized boolean isPaused() {
+            return paused;
+        }
+
+        synchronized boolean pause() {
+            boolean changed = !paused;
+            paused = true;
+            return changed;
+        }
+
+        synchronized boolean resume() {
+            boolean changed = paused;
+            paused = false;
+            return changed;
+        }
+    }
+}
@@ -1,17 +1,26 @@
 package com.learn.micro.resourceprocessor.kafka;
 
-import com.learn.micro.resourceprocessor.client.ResourceClient;
 import com.learn.micro.resourceprocessor.client.SongClient;
 import com.learn.micro.resourceprocessor.kafka.event.ResourceEvent;
 import com.learn.micro.resourceprocessor.logging.TraceContext;
 import com.learn.micro.resourceprocessor.model.MetadataDto;
+import com.learn.micro.resourceprocessor.model.Mp3Header;
 import com.learn.micro.resourceprocessor.service.MetadataService;
+import com.learn.micro.resourceprocessor.service.Mp3HeaderReader;
+import com.learn.micro.resourceprocessor.service.ProcessedEventStore;
+import com.learn.micro.resourceprocessor.service.ProcessedEventStore.Status;
+import com.learn.micro.resourceprocessor.service.ResourceContentReader;
+import java.util.Optional;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
+import org.springframework.kafka.annotation.DltHandler;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.RetryableTopic;
+import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Component;
 
 @Slf4j
@@ -20,16 +29,53 @@ import org.springframework.stereotype.Component;
 public class ResourceConsumer {
 
     private final MetadataService metadataService;
-    private final ResourceClient resourceClient;
+    private final ResourceContentReader resourceContentReader;
     private final SongClient songClient;
     private final ResourceProducer resourceProducer;
+    private final Mp3HeaderReader mp3HeaderReader;
+    private final ProcessedEventStore processedEventStore;
 
+    /**
+     * Failed records are not retried on this partition: they are forwarded to delay topics
+     * ({@code resource-events-retry-<delay>}) with exponential backoff, 5s, 30s, 3m and 5m by
+     * default, and end up in {@code resource-events-dlt}, so the records behind them keep flowing.
+     */
+    @RetryableTopic(
+        attempts = "${app.kafka.retry.attempts:5}",
+        backoff = @Backoff(
+            delayExpression = "${app.kafka.retry.initial-delay:5000}",
+            multiplierExpression = "${app.kafka.retry.multiplier:6}",
+            maxDelayExpression = "${app.kafka.retry.max-delay:300000}"),
+        kafkaTemplate = "kafkaTemplate",
+        listenerContainerFactory = "kafkaListenerContainerFactory")
     @KafkaListener(
         id = "resourceEventListener",
         topics = "${spring.kafka.topic}",
         groupId = "${spring.kafka.consumer.group-id}",
-        containerFactory = "kafkaListenerContainerFactory")
+        containerFactory = "kafkaListenerContainerFactory",
+        autoStartup = "#{!${app.kafka.consumer.batch.enabled:false} && !${app.pipeline.enabled:false}}")
     public void consume(ResourceEvent resourceEvent, @Header("X-Trace-Id") String traceId) {
+        try {
+            handle(resourceEvent, traceId);
+        } catch (RuntimeException e) {
+            log.error("Failed to process event={} with resourceId={}: {}",
+                resourceEvent.eventType(), resourceEvent.resourceId(), e.getMessage(), e);
+            throw e;
+        }
+    }
+
+    @DltHandler
+    public void consumeDeadLetter(ResourceEvent resourceEvent,
+        @Header(name = KafkaHeaders.DLT_EXCEPTION_MESSAGE, required = false) String failure) {
+        log.error("Giving up on event={} with resourceId={} after retries: {}",
+            resourceEvent.eventType(), resourceEvent.resourceId(), failure);
+    }
+
+    /**
+     * Processes one event under its trace id, rethrowing a failure so the caller can have the
+     * record redelivered.
+     */
+    public void handle(ResourceEvent resourceEvent, String traceId) {
         if (traceId == null || traceId.isEmpty()) {
             traceId = UUID.randomUUID().toString();
             log.info("Generated new traceId for Kafka message: {}", traceId);
@@ -47,9 +93,6 @@ public class ResourceConsumer {
                 default ->
                     log.warn("Received event with unknown type {}", resourceEvent.eventType());
             }
-        } catch (Exception e) {
-            log.error("Failed to process event={} with resourceId={}: {}",
-                resourceEvent.eventType(), resourceEvent.resourceId(), e.getMessage(), e);
         } finally {
             MDC.remove("traceId");
             TraceContext.clear();
@@ -57,27 +100,137 @@ public class ResourceConsumer {
     }
 
     public void processCreateResource(ResourceEvent resourceEvent) {
+        if (skipProcessed(resourceEvent) || copyFromSource(resourceEvent)) {
+            return;
+        }
+        Extraction extraction = parse(fetch(resourceEvent, mp3HeaderReader.isEnabled()));
+        if (extraction.needsWholeFile()) {
+            extraction = parse(fetch(resourceEvent, false));
+        }
+        if (extraction.metadata() != null) {
+            persist(resourceEvent, extraction.metadata());
+        }
+    }
+
+    /**
+     * Skips a CREATE that was already processed, e.g. redelivered after a rebalance. Processing
+     * complete is published again in case it was the step that failed; resource-service ignores
+     * it for a resource that has already been moved. A CREATE whose resource was deleted since is
+     * just dropped.
+     */
+    public boolean skipProcessed(ResourceEvent resourceEvent) {
+        Status status = processedEventStore.check(resourceEvent);
+        if (status == Status.DONE) {
+            resourceProducer.publishProcessingComplete(resourceEvent.resourceId());
+        }
+        return status != Status.NEW;
+    }
+
+    /**
+     * Copies the metadata of the source resource of a deduplicated upload and reports the
+     * resource as processed. Returns false when the file has to be processed instead.
+     */
+    public boolean copyFromSource(ResourceEvent resourceEvent) {
+        if (resourceEvent.sourceResourceId() == null || !copyMetadata(resourceEvent)) {
+            return false;
+        }
+        resourceProducer.publishProcessingComplete(resourceEvent.resourceId());
+        processedEventStore.markProcessed(resourceEvent);
+        log.info("Published processing complete event for resourceId={}", resourceEvent.resourceId());
+        return true;
+    }
+
+    /**
+     * Reads what extraction needs: the head and tail of the file through ranged reads, or the
+     * whole file. Both come from the S3 location in the event when there is one.
+     */
+    public FetchedResource fetch(ResourceEvent resourceEvent, boolean headerOnly) {
+        String resourceId = resourceEvent.resourceId();
+        if (headerOnly) {
+            return new FetchedResource(resourceId,
+                mp3HeaderReader.read(resourceId, resourceEvent.s3Location()), null);
+        }
         log.info("Inside ResourceConsumer: perform sync call to resource client");
-        byte[] fileContent = resourceClient.fetchResource(resourceEvent.resourceId());
-        log.info("Fetched resourceId={} with payload size={} bytes", resourceEvent.resourceId(),
+        byte[] fileContent = resourceContentReader.fetchResource(resourceId, resourceEvent.s3Location());
+        log.info("Fetched resourceId={} with payload size={} bytes", resourceId,
             fileContent != null ? fileContent.length : 0);
-        if (!metadataService.isValidMp3(fileContent)) {
-            log.warn("Invalid MP3 received for resource {}", resourceEvent.resourceId());
-            return;
+        return new FetchedResource(resourceId, null, fileContent);
+    }
+
+    /**
+     * Validates and parses fetched content. A header whose first frame does not tell the
+     * duration asks for the whole file instead.
+     */
+    public Extraction parse(FetchedResource fetched) {
+        byte[] start = fetched.header() != null ? fetched.header().head() : fetched.file();
+        if (!metadataService.isValidMp3(start)) {
+            log.warn("Invalid MP3 received for resource {}", fetched.resourceId());
+            return new Extraction(null, false);
         }
-        MetadataDto metadata = metadataService.extractMetadata(fileContent);
+        if (fetched.header() == null) {
+            return new Extraction(metadataService.extractMetadata(fetched.file()), false);
+        }
+        MetadataDto metadata = metadataService.extractMetadata(fetched.header());
+        if (metadata.getDuration() == null) {
+            log.info("No duration in the header of resourceId={}, reading the whole file",
+                fetched.resourceId());
+            return new Extraction(null, true);
+        }
+        return new Extraction(metadata, false);
+    }
+
+    public void persist(ResourceEvent resourceEvent, MetadataDto metadata) {
         metadata.setId(Integer.valueOf(resourceEvent.resourceId()));
         log.info("Extracted metadata for resourceId={}: {}", resourceEvent.resourceId(), metadata);
         log.info("Inside ResourceConsumer: perform sync call to song client");
         songClient.saveSongMetadata(metadata);
         log.info("Saved metadata for resourceId={} to SongService", resourceEvent.resourceId());
         resourceProducer.publishProcessingComplete(resourceEvent.resourceId());
+        processedEventStore.markProcessed(resourceEvent);
         log.info("Published processing complete event for resourceId={}", resourceEvent.resourceId());
     }
 
+    /**
+     * A deduplicated upload shares its content with the source resource, so that resource's
+     * metadata is reused. Returns false when the source has no metadata (yet); the file is then
+     * processed as usual.
+     */
+    private boolean copyMetadata(ResourceEvent resourceEvent) {
+        Optional<MetadataDto> sourceMetadata =
+            songClient.findSongMetadata(Integer.valueOf(resourceEvent.sourceResourceId()));
+        if (sourceMetadata.isEmpty()) {
+            log.info("No metadata stored for source resourceId={}, extracting for resourceId={}",
+                resourceEvent.sourceResourceId(), resourceEvent.resourceId());
+            return false;
+        }
+        MetadataDto metadata = sourceMetadata.get();
+        metadata.setId(Integer.valueOf(resourceEvent.resourceId()));
+        songClient.saveSongMetadata(metadata);
+        log.info("Copied metadata of resourceId={} to duplicate resourceId={}",
+            resourceEvent.sourceResourceId(), resourceEvent.resourceId());
+        return true;
+    }
+
     public void processDeleteResource(ResourceEvent resourceEvent) {
+        if (processedEventStore.check(resourceEvent) != Status.NEW) {
+            return;
+        }
         log.info("Inside ResourceConsumer: perform sync call to song client");
         songClient.deleteSongMetadata(Integer.valueOf(resourceEvent.resourceId()));
+        processedEventStore.markProcessed(resourceEvent);
         log.info("Saved metadata for resourceId={} to SongService", resourceEvent.resourceId());
     }
-}
\ No newline at end of file
+
+    /**
+     * Content read for one resource: the head and tail of the file, or the whole file.
+     */
+    public record FetchedResource(String resourceId, Mp3Header header, byte[] file) {
+    }
+
+    /**
+     * @param metadata       null for a file that is not a valid MP3
+     * @param needsWholeFile the header was not enough and the whole file has to be parsed
+     */
+    public record Extraction(MetadataDto metadata, boolean needsWholeFile) {
+    }
+}
@@ -0,0 +1,165 @@
+package com.learn.micro.resourceprocessor.kafka;
+
+import com.learn.micro.resourceprocessor.kafka.ResourceConsumer.Extraction;
+import com.learn.micro.resourceprocessor.kafka.ResourceConsumer.FetchedResource;
+import com.learn.micro.resourceprocessor.kafka.event.ResourceEvent;
+import com.learn.micro.resourceprocessor.logging.TraceContext;
+import com.learn.micro.resourceprocessor.service.Mp3HeaderReader;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the steps of {@link ResourceConsumer} as stages, each on an executor sized for its kind
+ * of work: fetching from resource-service (I/O), parsing (CPU, one thread per core) and
+ * persisting to song-service and Kafka (I/O). Parsing of one file overlaps with the network
+ * calls of others, and events of the same resource still run one after the other.
+ * <p>
+ * The stage queues are bounded by {@code app.pipeline.max-in-flight}, which
+ * {@link ResourcePipelineConsumer} never exceeds, so a hand-off between stages never blocks.
+ * Queue depth, time spent waiting in the queue and time spent in the stage are exported per
+ * stage.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.pipeline.enabled", havingValue = "true")
+public class ResourcePipeline {
+
+    private final ResourceConsumer resourceConsumer;
+    private final boolean headerOnly;
+    private final Stage fetchStage;
+    private final Stage parseStage;
+    private final Stage persistStage;
+    private final Map<String, CompletableFuture<Void>> lastByResource = new ConcurrentHashMap<>();
+
+    public ResourcePipeline(ResourceConsumer resourceConsumer, Mp3HeaderReader mp3HeaderReader,
+        MeterRegistry meterRegistry,
+        @Value("${app.pipeline.max-in-flight:64}") int maxInFlight,
+        @Value("${app.pipeline.fetch-threads:16}") int fetchThreads,
+        @Value("${app.pipeline.parse-threads:0}") int parseThreads,
+        @Value("${app.pipeline.persist-threads:8}") int persistThreads) {
+        this.resourceConsumer = resourceConsumer;
+        this.headerOnly = mp3HeaderReader.isEnabled();
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.fetchStage = new Stage("fetch", fetchThreads, maxInFlight, meterRegistry);
+        this.parseStage = new Stage("parse", parseThreads > 0 ? parseThreads : cores, maxInFlight, meterRegistry);
+        this.persistStage = new Stage("persist", persistThreads, maxInFlight, meterRegistry);
+    }
+
+    /**
+     * Runs the event through the stages once any earlier event of the same resource is done.
+     */
+    public CompletableFuture<Void> submit(ResourceEvent resourceEvent, String traceId) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void> previous = lastByResource.put(resourceEvent.resourceId(), done);
+        CompletableFuture<Void> ready = previous == null
+            ? CompletableFuture.completedFuture(null)
+            : previous.handle((ignored, failure) -> null);
+        ready.thenCompose(ignored -> process(resourceEvent, traceId))
+            .whenComplete((ignored, failure) -> {
+                lastByResource.remove(resourceEvent.resourceId(), done);
+                if (failure != null) {
+                    done.completeExceptionally(failure);
+                } else {
+                    done.complete(null);
+                }
+            });
+        return done;
+    }
+
+    private CompletableFuture<Void> process(ResourceEvent resourceEvent, String traceId) {
+        return switch (resourceEvent.eventType()) {
+            case CREATE -> processCreateResource(resourceEvent, traceId);
+            case DELETE -> persistStage.submit(traceId, () -> {
+                resourceConsumer.processDeleteResource(resourceEvent);
+                return null;
+            });
+        };
+    }
+
+    private CompletableFuture<Void> processCreateResource(ResourceEvent resourceEvent, String traceId) {
+        return fetchStage.submit(traceId, () -> resourceConsumer.skipProcessed(resourceEvent)
+                || resourceConsumer.copyFromSource(resourceEvent)
+                ? null
+                : resourceConsumer.fetch(resourceEvent, headerOnly))
+            .thenCompose(fetched -> fetched == null
+                ? CompletableFuture.<Extraction>completedFuture(null)
+                : parse(fetched, traceId))
+            .thenCompose(extraction -> extraction != null && extraction.needsWholeFile()
+                ? fetchStage.submit(traceId, () -> resourceConsumer.fetch(resourceEvent, false))
+                    .thenCompose(fetched -> parse(fetched, traceId))
+                : CompletableFuture.completedFuture(extraction))
+            .thenCompose(extraction -> extraction == null || extraction.metadata() == null
+                ? CompletableFuture.<Void>completedFuture(null)
+                : persistStage.submit(traceId, () -> {
+                    resourceConsumer.persist(resourceEvent, extraction.metadata());
+                    return null;
+                }));
+    }
+
+    private CompletableFuture<Extraction> parse(FetchedResource fetched, String traceId) {
+        return parseStage.submit(traceId, () -> resourceConsumer.parse(fetched));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchStage.shutdown();
+        parseStage.shutdown();
+        persistStage.shutdown();
+    }
+
+    private static final class Stage {
+
+        private final ThreadPoolExecutor executor;
+        private final Timer waitTimer;
+        private final Timer workTimer;
+
+        private Stage(String name, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+            this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("pipeline-" + name + "-"));
+            Gauge.builder("resource.pipeline.queue", executor, pool -> pool.getQueue().size())
+                .tag("stage", name)
+                .description("Tasks waiting for a worker of the stage")
+                .register(meterRegistry);
+            this.waitTimer = Timer.builder("resource.pipeline.wait").tag("stage", name).register(meterRegistry);
+            this.workTimer = Timer.builder("resource.pipeline.stage").tag("stage", name).register(meterRegistry);
+        }
+
+        private <T> CompletableFuture<T> submit(String traceId, Supplier<T> work) {
+            long queuedAt = System.nanoTime();
+            return CompletableFuture.supplyAsync(() -> {
+                waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return workTimer.record(() -> traced(traceId, work));
+            }, executor);
+        }
+
+        private static <T> T traced(String traceId, Supplier<T> work) {
+            TraceContext.setTraceId(traceId);
+            MDC.put("traceId", traceId);
+            try {
+                return work.get();
+            } finally {
+                MDC.remove("traceId");
+                TraceContext.clear();
+            }
+        }
+
+        private void shutdown() {
+            executor.shutdown();
+        }
+    }
+}
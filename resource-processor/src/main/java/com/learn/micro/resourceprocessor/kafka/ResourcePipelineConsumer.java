@@ -0,0 +1,132 @@
+package com.learn.micro.resourceprocessor.kafka;
+
+import com.learn.micro.resourceprocessor.kafka.event.ResourceEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pipeline mode of {@link ResourceConsumer}, enabled with {@code app.pipeline.enabled}. Records
+ * are handed to {@link ResourcePipeline} and acknowledged once processed; the container commits
+ * acknowledged offsets in order, even though records finish out of order.
+ * <p>
+ * At most {@code app.pipeline.max-in-flight} records are in the pipeline: a poll returns no
+ * more than that, and the container does not poll again before all of them are acknowledged.
+ * The listener never waits for a slot, so the poll loop is not held up. When the limit is
+ * reached the container is paused right away, keeping its group membership without fetching
+ * more, and it is resumed once half of the records have drained.
+ * <p>
+ * A record that fails in the pipeline is sent to the dead letter topic before it is acknowledged,
+ * as in batch mode. If that fails too, it is left unacknowledged: the partition is not committed
+ * past it, so it is delivered again after a restart or rebalance.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.pipeline.enabled", havingValue = "true")
+public class ResourcePipelineConsumer {
+
+    private static final String LISTENER_ID = "resourceEventPipelineListener";
+    private static final String TRACE_ID_HEADER = "X-Trace-Id";
+
+    private final ResourcePipeline resourcePipeline;
+    private final KafkaListenerEndpointRegistry listenerRegistry;
+    private final ConsumerRecordRecoverer recoverer;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public ResourcePipelineConsumer(ResourcePipeline resourcePipeline,
+        KafkaListenerEndpointRegistry listenerRegistry, KafkaTemplate<String, ResourceEvent> kafkaTemplate,
+        MeterRegistry meterRegistry, @Value("${app.pipeline.max-in-flight:64}") int maxInFlight) {
+        this(resourcePipeline, listenerRegistry, new DeadLetterPublishingRecoverer(kafkaTemplate), meterRegistry,
+            maxInFlight);
+    }
+
+    ResourcePipelineConsumer(ResourcePipeline resourcePipeline, KafkaListenerEndpointRegistry listenerRegistry,
+        ConsumerRecordRecoverer recoverer, MeterRegistry meterRegistry, int maxInFlight) {
+        this.resourcePipeline = resourcePipeline;
+        this.listenerRegistry = listenerRegistry;
+        this.recoverer = recoverer;
+        this.maxInFlight = maxInFlight;
+        Gauge.builder("resource.pipeline.in.flight", inFlight, AtomicInteger::get)
+            .description("Records handed to the pipeline and not yet acknowledged")
+            .register(meterRegistry);
+    }
+
+    @KafkaListener(
+        id = LISTENER_ID,
+        topics = "${spring.kafka.topic}",
+        groupId = "${spring.kafka.consumer.group-id}",
+        containerFactory = "pipelineKafkaListenerContainerFactory")
+    public void consume(ConsumerRecord<String, ResourceEvent> consumerRecord, Acknowledgment acknowledgment) {
+        ResourceEvent resourceEvent = consumerRecord.value();
+        if (resourceEvent == null) {
+            log.warn("Skipping record without value at offset {}", consumerRecord.offset());
+            acknowledgment.acknowledge();
+            return;
+        }
+        if (inFlight.incrementAndGet() >= maxInFlight) {
+            container().pause();
+            log.info("Pipeline full with {} records, pausing consumption", maxInFlight);
+        }
+        resourcePipeline.submit(resourceEvent, traceId(consumerRecord))
+            .whenComplete((ignored, failure) -> {
+                if (failure == null || recover(consumerRecord, failure)) {
+                    acknowledgment.acknowledge();
+                }
+                inFlight.decrementAndGet();
+                resumeWhenDrained();
+            });
+    }
+
+    private boolean recover(ConsumerRecord<String, ResourceEvent> consumerRecord, Throwable failure) {
+        ResourceEvent resourceEvent = consumerRecord.value();
+        Exception cause = failure instanceof CompletionException && failure.getCause() instanceof Exception e
+            ? e
+            : failure instanceof Exception e ? e : new IllegalStateException(failure);
+        log.error("Failed to process event={} with resourceId={}: sending record to DLT",
+            resourceEvent.eventType(), resourceEvent.resourceId(), cause);
+        try {
+            recoverer.accept(consumerRecord, cause);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to send record at offset {} to DLT, leaving it unacknowledged",
+                consumerRecord.offset(), e);
+            return false;
+        }
+    }
+
+    private void resumeWhenDrained() {
+        MessageListenerContainer container = container();
+        if (container.isPauseRequested() && inFlight.get() <= maxInFlight / 2) {
+            container.resume();
+            log.info("Pipeline drained, resuming consumption");
+        }
+    }
+
+    private MessageListenerContainer container() {
+        return listenerRegistry.getListenerContainer(LISTENER_ID);
+    }
+
+    private static String traceId(ConsumerRecord<String, ResourceEvent> consumerRecord) {
+        Header header = consumerRecord.headers().lastHeader(TRACE_ID_HEADER);
+        return header != null
+            ? new String(header.value(), StandardCharsets.UTF_8)
+            : UUID.randomUUID().toString();
+    }
+}
@@ -1,8 +1,10 @@
 package com.learn.micro.resourceprocessor.model;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
+@NoArgsConstructor
 public class MetadataDto {
 
     Integer id;
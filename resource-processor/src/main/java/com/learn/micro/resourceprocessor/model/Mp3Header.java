@@ -0,0 +1,11 @@
+package com.learn.micro.resourceprocessor.model;
+
+/**
+ * The parts of an MP3 file metadata extraction needs, read without downloading the audio.
+ *
+ * @param head       the start of the file: the ID3v2 tag, if any, and the first MPEG frame
+ * @param tail       the last bytes of the file, which hold an ID3v1 tag when there is one
+ * @param fileLength length of the whole file
+ */
+public record Mp3Header(byte[] head, byte[] tail, long fileLength) {
+}
@@ -0,0 +1,10 @@
+package com.learn.micro.resourceprocessor.model;
+
+/**
+ * Part of a resource returned for a Range request.
+ *
+ * @param content    the bytes of the range, clipped to the end of the file
+ * @param fileLength length of the whole file, taken from Content-Range
+ */
+public record ResourceRange(byte[] content, long fileLength) {
+}
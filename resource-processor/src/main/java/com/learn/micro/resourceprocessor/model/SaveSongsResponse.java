@@ -0,0 +1,7 @@
+package com.learn.micro.resourceprocessor.model;
+
+import java.util.List;
+
+public record SaveSongsResponse(List<SongSaveResult> results) {
+
+}
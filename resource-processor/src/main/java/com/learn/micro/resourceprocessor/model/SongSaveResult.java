@@ -0,0 +1,11 @@
+package com.learn.micro.resourceprocessor.model;
+
+/**
+ * Outcome for one song of a batch save: CREATED, ALREADY_EXISTS or INVALID.
+ */
+public record SongSaveResult(Integer id, String status, String message) {
+
+    public boolean isCreated() {
+        return "CREATED".equals(status);
+    }
+}
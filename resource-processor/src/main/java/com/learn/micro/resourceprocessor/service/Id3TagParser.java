@@ -0,0 +1,201 @@
+package com.learn.micro.resourceprocessor.service;
+
+import com.learn.micro.resourceprocessor.model.Mp3Header;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads title, artist, album and year straight from the ID3v2.2/2.3/2.4 text frames (TIT2, TPE1,
+ * TALB, TYER/TDRC and their v2.2 names), falling back per field to an ID3v1 tag at the end of
+ * the file. Only the tag is looked at, never the audio, so the cost does not grow with the
+ * file length.
+ * <p>
+ * Returns empty for tags it does not decode (unsynchronised, compressed or encrypted frames,
+ * a tag cut off by the end of the buffer); callers then use Tika.
+ */
+@Component
+public class Id3TagParser {
+
+    private static final int HEADER_SIZE = 10;
+    private static final int ID3V1_SIZE = Mp3DurationCalculator.ID3V1_SIZE;
+    private static final int FLAG_UNSYNCHRONISATION = 0x80;
+    private static final int FLAG_EXTENDED_HEADER = 0x40;
+
+    public record Id3Tags(String title, String artist, String album, String year) {
+
+        private Id3Tags orElse(Id3Tags other) {
+            return new Id3Tags(
+                title != null ? title : other.title,
+                artist != null ? artist : other.artist,
+                album != null ? album : other.album,
+                year != null ? year : other.year);
+        }
+    }
+
+    public Optional<Id3Tags> parse(Mp3Header header) {
+        Id3Tags v1 = parseId3v1(header.tail().length > 0 ? header.tail() : header.head());
+        if (Mp3DurationCalculator.id3v2Size(header.head()) == 0) {
+            return Optional.of(v1);
+        }
+        return parseId3v2(header.head()).map(v2 -> v2.orElse(v1));
+    }
+
+    private static Optional<Id3Tags> parseId3v2(byte[] data) {
+        int majorVersion = data[3];
+        int flags = data[5] & 0xFF;
+        int tagEnd = Mp3DurationCalculator.id3v2Size(data);
+        if (majorVersion < 2 || majorVersion > 4 || (flags & FLAG_UNSYNCHRONISATION) != 0
+            || tagEnd > data.length) {
+            return Optional.empty();
+        }
+        int offset = HEADER_SIZE;
+        if ((flags & FLAG_EXTENDED_HEADER) != 0) {
+            if (majorVersion == 2) {
+                // In v2.2 this bit means the whole tag is compressed
+                return Optional.empty();
+            }
+            offset += majorVersion == 3 ? 4 + readInt(data, offset) : synchsafe(data, offset);
+        }
+        if ((data[5] & 0x10) != 0) {
+            tagEnd -= HEADER_SIZE;
+        }
+        // An extended header size read from a corrupt tag may overflow or run past the tag
+        if (offset < HEADER_SIZE || offset > tagEnd) {
+            return Optional.empty();
+        }
+        int idLength = majorVersion == 2 ? 3 : 4;
+        int frameHeaderSize = majorVersion == 2 ? 6 : 10;
+        String title = null;
+        String artist = null;
+        String album = null;
+        String year = null;
+        while (offset + frameHeaderSize <= tagEnd && data[offset] != 0) {
+            String id = new String(data, offset, idLength, StandardCharsets.US_ASCII);
+            int size = switch (majorVersion) {
+                case 2 -> (data[offset + 3] & 0xFF) << 16 | (data[offset + 4] & 0xFF) << 8 | data[offset + 5] & 0xFF;
+                case 3 -> readInt(data, offset + 4);
+                default -> synchsafe(data, offset + 4);
+            };
+            int bodyStart = offset + frameHeaderSize;
+            if (size < 0 || bodyStart + size > tagEnd) {
+                return Optional.empty();
+            }
+            String field = field(id);
+            if (field != null) {
+                int formatFlags = majorVersion == 2 ? 0 : data[offset + 9] & 0xFF;
+                int bodyOffset = textBodyOffset(majorVersion, formatFlags);
+                if (bodyOffset < 0 || bodyOffset >= size) {
+                    return Optional.empty();
+                }
+                String text = decodeText(data, bodyStart + bodyOffset, size - bodyOffset);
+                switch (field) {
+                    case "title" -> title = text;
+                    case "artist" -> artist = text;
+                    case "album" -> album = text;
+                    default -> year = year != null ? year : text;
+                }
+            }
+            offset = bodyStart + size;
+        }
+        return Optional.of(new Id3Tags(title, artist, album, year));
+    }
+
+    private static String field(String frameId) {
+        return switch (frameId) {
+            case "TIT2", "TT2" -> "title";
+            case "TPE1", "TP1" -> "artist";
+            case "TALB", "TAL" -> "album";
+            case "TYER", "TYE", "TDRC" -> "year";
+            default -> null;
+        };
+    }
+
+    /**
+     * Bytes to skip before the text of a frame we read, or -1 for a frame that has to be
+     * decompressed, decrypted or resynchronised first.
+     */
+    private static int textBodyOffset(int majorVersion, int formatFlags) {
+        if (majorVersion == 3) {
+            if ((formatFlags & 0xC0) != 0) {
+                return -1;
+            }
+            return (formatFlags & 0x20) != 0 ? 1 : 0;
+        }
+        if (majorVersion == 4) {
+            if ((formatFlags & 0x0E) != 0) {
+                return -1;
+            }
+            return ((formatFlags & 0x40) != 0 ? 1 : 0) + ((formatFlags & 0x01) != 0 ? 4 : 0);
+        }
+        return 0;
+    }
+
+    /**
+     * Decodes a text frame body: an encoding byte followed by the text. Of several
+     * null-separated values (ID3v2.4) the first is kept.
+     */
+    private static String decodeText(byte[] data, int offset, int length) {
+        if (length < 1) {
+            return null;
+        }
+        int encoding = data[offset];
+        Charset charset = switch (encoding) {
+            case 1 -> StandardCharsets.UTF_16;
+            case 2 -> StandardCharsets.UTF_16BE;
+            case 3 -> StandardCharsets.UTF_8;
+            default -> StandardCharsets.ISO_8859_1;
+        };
+        boolean wide = encoding == 1 || encoding == 2;
+        int start = offset + 1;
+        int end = start;
+        int limit = offset + length;
+        while (end < limit) {
+            if (wide) {
+                if (end + 1 < limit && data[end] == 0 && data[end + 1] == 0) {
+                    break;
+                }
+                end += 2;
+            } else {
+                if (data[end] == 0) {
+                    break;
+                }
+                end++;
+            }
+        }
+        String text = new String(data, start, Math.min(end, limit) - start, charset).trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    private static Id3Tags parseId3v1(byte[] end) {
+        int tag = end.length - ID3V1_SIZE;
+        if (tag < 0 || end[tag] != 'T' || end[tag + 1] != 'A' || end[tag + 2] != 'G') {
+            return new Id3Tags(null, null, null, null);
+        }
+        return new Id3Tags(
+            latin1(end, tag + 3, 30),
+            latin1(end, tag + 33, 30),
+            latin1(end, tag + 63, 30),
+            latin1(end, tag + 93, 4));
+    }
+
+    private static String latin1(byte[] data, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && data[end] != 0) {
+            end++;
+        }
+        String text = new String(data, offset, end - offset, StandardCharsets.ISO_8859_1).trim();
+        return text.isEmpty() ? null : text;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+            | (data[offset + 2] & 0xFF) << 8 | data[offset + 3] & 0xFF;
+    }
+
+    private static int synchsafe(byte[] data, int offset) {
+        return (data[offset] & 0x7F) << 21 | (data[offset + 1] & 0x7F) << 14
+            | (data[offset + 2] & 0x7F) << 7 | data[offset + 3] & 0x7F;
+    }
+}
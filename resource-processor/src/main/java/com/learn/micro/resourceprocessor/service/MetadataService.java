@@ -3,41 +3,83 @@ package com.learn.micro.resourceprocessor.service;
 import com.learn.micro.resourceprocessor.exception.GeneralFailureException;
 import com.learn.micro.resourceprocessor.model.MetadataTag;
 import com.learn.micro.resourceprocessor.model.MetadataDto;
+import com.learn.micro.resourceprocessor.model.Mp3Header;
+import com.learn.micro.resourceprocessor.service.Id3TagParser.Id3Tags;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Optional;
+import java.util.OptionalDouble;
 
-import org.apache.tika.Tika;
 import org.apache.tika.exception.TikaException;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.mp3.Mp3Parser;
-import org.apache.tika.sax.BodyContentHandler;
 import org.springframework.stereotype.Component;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @Component
 @AllArgsConstructor
 public class MetadataService {
 
+    // Tika parsers are stateless and thread-safe; only the tags are read, so the text is dropped
+    private static final Mp3Parser MP3_PARSER = new Mp3Parser();
+    private static final ContentHandler IGNORED_CONTENT = new DefaultHandler();
+
+    private final Mp3Sniffer mp3Sniffer;
+    private final Id3TagParser id3TagParser;
+    private final Mp3DurationCalculator durationCalculator;
+
     public boolean isValidMp3(byte[] fileContent) {
-        if (fileContent == null || fileContent.length == 0) {
-            return false;
-        }
-        Tika tika = new Tika();
-        String fileType = tika.detect(fileContent);
-        return "audio/mpeg".equalsIgnoreCase(fileType) || "audio/mp3".equalsIgnoreCase(fileType);
+        return mp3Sniffer.isMp3(fileContent);
     }
 
+    /**
+     * Reads the tags with {@link Id3TagParser} and the duration from the first frame, so the
+     * cost does not depend on the file length. Tika, which walks every frame, is used only when
+     * either of them cannot handle the file.
+     */
     public MetadataDto extractMetadata(byte[] fileContent) {
-        Metadata metadata = new Metadata();
-        BodyContentHandler handler = new BodyContentHandler();
-        Mp3Parser parser = new Mp3Parser();
+        Mp3Header wholeFile = new Mp3Header(fileContent, new byte[0], fileContent.length);
+        return extractFast(wholeFile).orElseGet(() -> parseWithTika(fileContent));
+    }
 
+    /**
+     * Extracts tags from the head and tail of a file read by {@link Mp3HeaderReader}. Tika only
+     * sees a few frames there, so the duration is always worked out from the first frame and is
+     * null when it cannot be.
+     */
+    public MetadataDto extractMetadata(Mp3Header header) {
+        return extractFast(header).orElseGet(() -> {
+            MetadataDto metadata = parseWithTika(Mp3HeaderReader.concat(header.head(), header.tail()));
+            OptionalDouble duration = durationCalculator.durationSeconds(header);
+            metadata.setDuration(duration.isPresent() ? formatDuration(duration.getAsDouble()) : null);
+            return metadata;
+        });
+    }
+
+    private Optional<MetadataDto> extractFast(Mp3Header header) {
+        Optional<Id3Tags> tags = id3TagParser.parse(header);
+        OptionalDouble duration = durationCalculator.durationSeconds(header);
+        if (tags.isEmpty() || duration.isEmpty()) {
+            log.debug("Falling back to Tika: tags parsed={}, duration found={}",
+                tags.isPresent(), duration.isPresent());
+            return Optional.empty();
+        }
+        Id3Tags id3Tags = tags.get();
+        return Optional.of(new MetadataDto(id3Tags.title(), id3Tags.artist(), id3Tags.album(),
+            formatDuration(duration.getAsDouble()), id3Tags.year()));
+    }
+
+    private MetadataDto parseWithTika(byte[] fileContent) {
+        Metadata metadata = new Metadata();
         try (InputStream inputStream = new ByteArrayInputStream(fileContent)) {
-            parser.parse(inputStream, handler, metadata, null);
+            MP3_PARSER.parse(inputStream, IGNORED_CONTENT, metadata, null);
             return collectMetadata(metadata);
         } catch (IOException | TikaException | SAXException e) {
             throw new GeneralFailureException(e.getMessage());
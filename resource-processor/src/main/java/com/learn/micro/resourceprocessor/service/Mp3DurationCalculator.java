@@ -0,0 +1,110 @@
+package com.learn.micro.resourceprocessor.service;
+
+import com.learn.micro.resourceprocessor.model.Mp3Header;
+import java.nio.charset.StandardCharsets;
+import java.util.OptionalDouble;
+import org.springframework.stereotype.Component;
+
+/**
+ * Works out the play time of an MP3 from its first MPEG frame instead of walking every frame:
+ * from the frame count of a Xing/Info or VBRI header when the encoder wrote one, otherwise from
+ * the audio size and the bitrate of the first frame, which is exact for constant bitrate files.
+ */
+@Component
+public class Mp3DurationCalculator {
+
+    static final int ID3V1_SIZE = 128;
+    private static final int ID3V2_HEADER_SIZE = 10;
+    private static final int VBRI_OFFSET = 36;
+
+    public OptionalDouble durationSeconds(Mp3Header header) {
+        byte[] head = header.head();
+        int offset = findFirstFrame(head, id3v2Size(head));
+        if (offset < 0) {
+            return OptionalDouble.empty();
+        }
+        MpegFrameHeader frame = MpegFrameHeader.parse(head, offset);
+        long frames = xingFrames(head, offset, frame);
+        if (frames < 0) {
+            frames = vbriFrames(head, offset);
+        }
+        if (frames > 0) {
+            return OptionalDouble.of((double) frames * frame.samplesPerFrame() / frame.sampleRate());
+        }
+        long audioBytes = header.fileLength() - offset - (hasId3v1(header) ? ID3V1_SIZE : 0);
+        return audioBytes > 0
+            ? OptionalDouble.of(audioBytes * 8.0 / (frame.bitrateKbps() * 1000.0))
+            : OptionalDouble.empty();
+    }
+
+    /**
+     * Size of the ID3v2 tag at the start of the file, header and footer included; 0 without one.
+     */
+    public static int id3v2Size(byte[] head) {
+        if (head.length < ID3V2_HEADER_SIZE || head[0] != 'I' || head[1] != 'D' || head[2] != '3') {
+            return 0;
+        }
+        int size = (head[6] & 0x7F) << 21 | (head[7] & 0x7F) << 14 | (head[8] & 0x7F) << 7 | head[9] & 0x7F;
+        boolean footer = (head[5] & 0x10) != 0;
+        return ID3V2_HEADER_SIZE + size + (footer ? ID3V2_HEADER_SIZE : 0);
+    }
+
+    /**
+     * Offset of the first frame header that is followed by another valid one, so a stray sync
+     * word in padding is not taken for audio.
+     */
+    private static int findFirstFrame(byte[] head, int from) {
+        for (int offset = from; offset + 4 <= head.length; offset++) {
+            MpegFrameHeader frame = MpegFrameHeader.parse(head, offset);
+            if (frame == null) {
+                continue;
+            }
+            int next = offset + frame.length();
+            if (next + 4 > head.length || MpegFrameHeader.parse(head, next) != null) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private static long xingFrames(byte[] head, int offset, MpegFrameHeader frame) {
+        if (frame.layer() != 3) {
+            return -1;
+        }
+        int tag = offset + 4 + frame.sideInfoSize();
+        if (tag + 12 > head.length
+            || !(matches(head, tag, "Xing") || matches(head, tag, "Info"))) {
+            return -1;
+        }
+        boolean hasFrames = (readInt(head, tag + 4) & 0x1) != 0;
+        return hasFrames ? readInt(head, tag + 8) & 0xFFFFFFFFL : -1;
+    }
+
+    private static long vbriFrames(byte[] head, int offset) {
+        int tag = offset + VBRI_OFFSET;
+        if (tag + 18 > head.length || !matches(head, tag, "VBRI")) {
+            return -1;
+        }
+        return readInt(head, tag + 14) & 0xFFFFFFFFL;
+    }
+
+    private static boolean hasId3v1(Mp3Header header) {
+        byte[] end = header.tail().length >= 3 ? header.tail() : header.head();
+        return end.length >= ID3V1_SIZE && matches(end, end.length - ID3V1_SIZE, "TAG");
+    }
+
+    private static boolean matches(byte[] data, int offset, String marker) {
+        byte[] expected = marker.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < expected.length; i++) {
+            if (data[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16
+            | (data[offset + 2] & 0xFF) << 8 | data[offset + 3] & 0xFF;
+    }
+}
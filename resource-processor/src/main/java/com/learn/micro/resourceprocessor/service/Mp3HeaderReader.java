@@ -0,0 +1,65 @@
+package com.learn.micro.resourceprocessor.service;
+
+import com.learn.micro.resourceprocessor.model.Mp3Header;
+import com.learn.micro.resourceprocessor.model.ResourceRange;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Reads the parts of an MP3 that metadata extraction needs through Range requests, so the
+ * audio itself is never downloaded: a probe from the start of the file covering the ID3v2
+ * header, the rest of the tag if it is larger than the probe, a window after the tag for the
+ * first MPEG frame and its Xing/VBRI header, and the trailing bytes for ID3v1.
+ */
+@Slf4j
+@Component
+public class Mp3HeaderReader {
+
+    private final ResourceContentReader resourceContentReader;
+    private final boolean enabled;
+    private final int probeSize;
+    private final int frameWindow;
+
+    public Mp3HeaderReader(ResourceContentReader resourceContentReader,
+        @Value("${app.metadata.ranged-reads.enabled:true}") boolean enabled,
+        @Value("${app.metadata.ranged-reads.probe-size:16KB}") DataSize probeSize,
+        @Value("${app.metadata.ranged-reads.frame-window:4KB}") DataSize frameWindow) {
+        this.resourceContentReader = resourceContentReader;
+        this.enabled = enabled;
+        this.probeSize = (int) probeSize.toBytes();
+        this.frameWindow = (int) frameWindow.toBytes();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Mp3Header read(String resourceId, String s3Location) {
+        ResourceRange probe = resourceContentReader.fetchResourceRange(resourceId, s3Location, "bytes=0-" + (probeSize - 1));
+        byte[] head = probe.content();
+        long fileLength = probe.fileLength();
+        long headEnd = Math.min(fileLength, (long) Mp3DurationCalculator.id3v2Size(head) + frameWindow);
+        if (headEnd > head.length) {
+            byte[] rest = resourceContentReader.fetchResourceRange(resourceId, s3Location,
+                "bytes=" + head.length + "-" + (headEnd - 1)).content();
+            head = concat(head, rest);
+        }
+        long remaining = fileLength - head.length;
+        byte[] tail = remaining > 0
+            ? resourceContentReader.fetchResourceRange(resourceId, s3Location,
+                "bytes=-" + Math.min(Mp3DurationCalculator.ID3V1_SIZE, remaining)).content()
+            : new byte[0];
+        log.info("Read {} of {} bytes of resourceId={} for metadata extraction",
+            head.length + tail.length, fileLength, resourceId);
+        return new Mp3Header(head, tail, fileLength);
+    }
+
+    static byte[] concat(byte[] first, byte[] second) {
+        byte[] joined = new byte[first.length + second.length];
+        System.arraycopy(first, 0, joined, 0, first.length);
+        System.arraycopy(second, 0, joined, first.length, second.length);
+        return joined;
+    }
+}
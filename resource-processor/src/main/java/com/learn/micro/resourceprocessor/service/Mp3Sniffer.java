@@ -0,0 +1,55 @@
+package com.learn.micro.resourceprocessor.service;
+
+import org.apache.tika.Tika;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tells whether a buffer holds an MP3 by checking the ID3v2 magic or the MPEG frame sync,
+ * version, layer and bitrate bits of the first bytes, without allocating. A buffer that starts
+ * with "ID3" or a sync word but fails those checks is rejected, as Tika would take it for an
+ * MP3 by the marker alone. Only buffers that start with neither go to Tika, whose detector
+ * registry is loaded once and shared, as the facade is thread-safe.
+ */
+@Component
+public class Mp3Sniffer {
+
+    private final Tika tika = new Tika();
+
+    public boolean isMp3(byte[] content) {
+        if (content == null || content.length == 0) {
+            return false;
+        }
+        if (content.length >= 3 && content[0] == 'I' && content[1] == 'D' && content[2] == '3') {
+            return hasId3v2Header(content);
+        }
+        if (content.length >= 2 && (content[0] & 0xFF) == 0xFF && (content[1] & 0xE0) == 0xE0) {
+            return startsWithFrames(content);
+        }
+        String fileType = tika.detect(content);
+        return "audio/mpeg".equalsIgnoreCase(fileType) || "audio/mp3".equalsIgnoreCase(fileType);
+    }
+
+    /**
+     * "ID3", a major version from 2.2 to 2.4, and a tag size made of four 7-bit bytes.
+     */
+    private static boolean hasId3v2Header(byte[] content) {
+        return content.length >= 10
+            && content[0] == 'I' && content[1] == 'D' && content[2] == '3'
+            && content[3] >= 2 && content[3] <= 4 && (content[4] & 0xFF) != 0xFF
+            && (content[6] & 0x80) == 0 && (content[7] & 0x80) == 0
+            && (content[8] & 0x80) == 0 && (content[9] & 0x80) == 0;
+    }
+
+    /**
+     * A valid frame header at offset 0, followed by another one when the buffer reaches it, so
+     * a random 0xFFE sync word is not enough.
+     */
+    private static boolean startsWithFrames(byte[] content) {
+        MpegFrameHeader frame = MpegFrameHeader.parse(content, 0);
+        if (frame == null) {
+            return false;
+        }
+        int next = frame.length();
+        return next + 4 > content.length || MpegFrameHeader.parse(content, next) != null;
+    }
+}
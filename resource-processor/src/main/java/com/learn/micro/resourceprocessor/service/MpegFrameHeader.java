@@ -0,0 +1,72 @@
+package com.learn.micro.resourceprocessor.service;
+
+/**
+ * The fields of a 4-byte MPEG audio frame header that sniffing and duration calculation need.
+ *
+ * @param version 1 for MPEG-1, 2 for MPEG-2 and MPEG-2.5
+ * @param layer   1, 2 or 3
+ */
+record MpegFrameHeader(int version, int layer, int bitrateKbps, int sampleRate,
+                       int padding, boolean mono) {
+
+    private static final int[][] BITRATES_KBPS = {
+        // MPEG-1 Layer I, II, III
+        {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+        {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+        // MPEG-2 and 2.5 Layer I, II and III
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+        {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+    };
+    private static final int[] SAMPLE_RATES_MPEG1 = {44100, 48000, 32000};
+
+    /**
+     * Parses the header at {@code offset}; null when there is no valid header there.
+     */
+    static MpegFrameHeader parse(byte[] data, int offset) {
+        if (offset + 4 > data.length || (data[offset] & 0xFF) != 0xFF
+            || (data[offset + 1] & 0xE0) != 0xE0) {
+            return null;
+        }
+        int versionBits = (data[offset + 1] >> 3) & 0x3;
+        int layerBits = (data[offset + 1] >> 1) & 0x3;
+        int bitrateIndex = (data[offset + 2] >> 4) & 0xF;
+        int sampleRateIndex = (data[offset + 2] >> 2) & 0x3;
+        if (versionBits == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 15
+            || sampleRateIndex == 3) {
+            return null;
+        }
+        int version = versionBits == 3 ? 1 : 2;
+        int layer = 4 - layerBits;
+        int bitrate = version == 1
+            ? BITRATES_KBPS[layer - 1][bitrateIndex]
+            : BITRATES_KBPS[layer == 1 ? 3 : 4][bitrateIndex];
+        // MPEG-2 halves the MPEG-1 sample rates and MPEG-2.5 quarters them
+        int divisor = versionBits == 3 ? 1 : versionBits == 2 ? 2 : 4;
+        int sampleRate = SAMPLE_RATES_MPEG1[sampleRateIndex] / divisor;
+        int padding = (data[offset + 2] >> 1) & 0x1;
+        boolean mono = ((data[offset + 3] >> 6) & 0x3) == 3;
+        return new MpegFrameHeader(version, layer, bitrate, sampleRate, padding, mono);
+    }
+
+    int samplesPerFrame() {
+        if (layer == 1) {
+            return 384;
+        }
+        return layer == 3 && version == 2 ? 576 : 1152;
+    }
+
+    int length() {
+        if (layer == 1) {
+            return (12 * bitrateKbps * 1000 / sampleRate + padding) * 4;
+        }
+        return samplesPerFrame() / 8 * bitrateKbps * 1000 / sampleRate + padding;
+    }
+
+    int sideInfoSize() {
+        if (version == 1) {
+            return mono ? 17 : 32;
+        }
+        return mono ? 9 : 17;
+    }
+}
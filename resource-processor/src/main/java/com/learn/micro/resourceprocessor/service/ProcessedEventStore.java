@@ -0,0 +1,127 @@
+package com.learn.micro.resourceprocessor.service;
+
+import com.learn.micro.resourceprocessor.client.ResourceClient;
+import com.learn.micro.resourceprocessor.client.SongClient;
+import com.learn.micro.resourceprocessor.kafka.event.EventType;
+import com.learn.micro.resourceprocessor.kafka.event.ResourceEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Tells whether a redelivered event was already processed, keyed by resourceId, event type and
+ * content version (the S3 location, or the source resource of a deduplicated upload).
+ * <p>
+ * Completed keys go into a local Bloom filter. An event the filter has seen is confirmed against
+ * the authoritative stores, so a false positive only costs that lookup. An event it has not seen
+ * is new and is processed without any extra call, except while recovering: the filter only knows
+ * the work of this instance since it started, so for {@code app.idempotency.recovery-window}
+ * after startup and after every partition assignment a miss is confirmed as well, as the
+ * previous owner of the partition may have processed the record.
+ * <p>
+ * Confirmation checks the state this version of the resource leaves behind. A DELETE is done when
+ * the song is gone. A CREATE is done when the song exists, and superseded when the resource has
+ * been deleted since, e.g. a CREATE coming back from a retry topic after its DELETE: redoing it
+ * would store a song for a resource that no longer exists.
+ * <p>
+ * {@code resource.events.idempotency} counts the checks by result: {@code new},
+ * {@code duplicate} and {@code superseded} (both skipped) and {@code false-positive}.
+ */
+@Slf4j
+@Component
+public class ProcessedEventStore {
+
+    private static final String IDEMPOTENCY_METRIC = "resource.events.idempotency";
+    private final SongClient songClient;
+    private final ResourceClient resourceClient;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final BloomFilter completed;
+    private final long recoveryWindowNanos;
+    private volatile long recoveringUntil;
+
+    public ProcessedEventStore(SongClient songClient, ResourceClient resourceClient, MeterRegistry meterRegistry,
+        @Value("${app.idempotency.enabled:true}") boolean enabled,
+        @Value("${app.idempotency.expected-events:1000000}") long expectedEvents,
+        @Value("${app.idempotency.false-positive-rate:0.01}") double falsePositiveRate,
+        @Value("${app.idempotency.recovery-window:2m}") Duration recoveryWindow) {
+        this.songClient = songClient;
+        this.resourceClient = resourceClient;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.completed = enabled ? new BloomFilter(expectedEvents, falsePositiveRate) : null;
+        this.recoveryWindowNanos = recoveryWindow.toNanos();
+        startRecovery();
+    }
+
+    /**
+     * Outcome of a check: {@link #NEW} events are processed, the others are skipped.
+     */
+    public enum Status {
+        NEW, DONE, SUPERSEDED
+    }
+
+    public Status check(ResourceEvent resourceEvent) {
+        if (!enabled) {
+            return Status.NEW;
+        }
+        boolean seen = completed.mightContain(key(resourceEvent));
+        if (!seen && !isRecovering()) {
+            count("new");
+            return Status.NEW;
+        }
+        Status status = confirm(resourceEvent);
+        switch (status) {
+            case NEW -> count(seen ? "false-positive" : "new");
+            case DONE -> count("duplicate");
+            case SUPERSEDED -> count("superseded");
+        }
+        if (status != Status.NEW) {
+            log.info("Skipping {} event={} for resourceId={}", status == Status.DONE ? "already processed" : "superseded",
+                resourceEvent.eventType(), resourceEvent.resourceId());
+        }
+        return status;
+    }
+
+    public void markProcessed(ResourceEvent resourceEvent) {
+        if (enabled) {
+            completed.put(key(resourceEvent));
+        }
+    }
+
+    /**
+     * Confirms misses of the filter for the recovery window from now on. Called on every
+     * partition assignment.
+     */
+    public void startRecovery() {
+        recoveringUntil = System.nanoTime() + recoveryWindowNanos;
+    }
+
+    private boolean isRecovering() {
+        return System.nanoTime() - recoveringUntil < 0;
+    }
+
+    private Status confirm(ResourceEvent resourceEvent) {
+        boolean songExists = songClient.songExists(Integer.valueOf(resourceEvent.resourceId()));
+        if (resourceEvent.eventType() == EventType.DELETE) {
+            return songExists ? Status.NEW : Status.DONE;
+        }
+        if (songExists) {
+            return Status.DONE;
+        }
+        return resourceClient.resourceExists(resourceEvent.resourceId()) ? Status.NEW : Status.SUPERSEDED;
+    }
+
+    private void count(String result) {
+        meterRegistry.counter(IDEMPOTENCY_METRIC, "result", result).increment();
+    }
+
+    private static String key(ResourceEvent resourceEvent) {
+        String version = resourceEvent.s3Location() != null
+            ? resourceEvent.s3Location()
+            : resourceEvent.sourceResourceId() != null ? "source:" + resourceEvent.sourceResourceId() : "";
+        return resourceEvent.resourceId() + '|' + resourceEvent.eventType() + '|' + version;
+    }
+}
@@ -0,0 +1,56 @@
+package com.learn.micro.resourceprocessor.service;
+
+import com.learn.micro.resourceprocessor.client.ResourceClient;
+import com.learn.micro.resourceprocessor.client.S3ResourceClient;
+import com.learn.micro.resourceprocessor.model.ResourceRange;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads resource content from the bucket when the event says where the file is and direct
+ * reads are enabled, and through resource-service otherwise or when the direct read fails.
+ * {@code resource.fetch} counts the reads by the source that served them.
+ */
+@Slf4j
+@Component
+public class ResourceContentReader {
+
+    private static final String FETCH_METRIC = "resource.fetch";
+    private final ResourceClient resourceClient;
+    private final S3ResourceClient s3ResourceClient;
+    private final MeterRegistry meterRegistry;
+
+    public ResourceContentReader(ResourceClient resourceClient,
+        ObjectProvider<S3ResourceClient> s3ResourceClient, MeterRegistry meterRegistry) {
+        this.resourceClient = resourceClient;
+        this.s3ResourceClient = s3ResourceClient.getIfAvailable();
+        this.meterRegistry = meterRegistry;
+    }
+
+    public byte[] fetchResource(String resourceId, String s3Location) {
+        Optional<byte[]> direct = readsDirectly(s3Location)
+            ? s3ResourceClient.fetchObject(s3Location)
+            : Optional.empty();
+        count(direct.isPresent());
+        return direct.orElseGet(() -> resourceClient.fetchResource(resourceId));
+    }
+
+    public ResourceRange fetchResourceRange(String resourceId, String s3Location, String range) {
+        Optional<ResourceRange> direct = readsDirectly(s3Location)
+            ? s3ResourceClient.fetchRange(s3Location, range)
+            : Optional.empty();
+        count(direct.isPresent());
+        return direct.orElseGet(() -> resourceClient.fetchResourceRange(resourceId, range));
+    }
+
+    private boolean readsDirectly(String s3Location) {
+        return s3ResourceClient != null && s3Location != null;
+    }
+
+    private void count(boolean direct) {
+        meterRegistry.counter(FETCH_METRIC, "source", direct ? "s3" : "resource-service").increment();
+    }
+}
@@ -0,0 +1,132 @@
+package com.learn.micro.resourceprocessor.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceprocessor.model.ResourceRange;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+@ExtendWith(MockitoExtension.class)
+class S3ResourceClientTest {
+
+    private static final String LOCATION = "s3://staging-bucket/files/song.mp3";
+    private static final byte[] CONTENT = {1, 2, 3, 4};
+
+    @Mock
+    private S3Client s3Client;
+
+    private S3ResourceClient s3ResourceClient;
+
+    @BeforeEach
+    void setUp() {
+        s3ResourceClient = new S3ResourceClient(s3Client);
+    }
+
+    /**
+     * Test that the bucket and key are taken from the S3 location and the range is passed on.
+     */
+    @Test
+    void fetchRange_shouldReadBucketAndKeyFromLocation() {
+        // given
+        ArgumentCaptor<GetObjectRequest> request = ArgumentCaptor.forClass(GetObjectRequest.class);
+        when(s3Client.getObjectAsBytes(request.capture())).thenReturn(object("bytes 0-3/100"));
+        // when
+        s3ResourceClient.fetchRange(LOCATION, "bytes=0-3");
+        // then
+        assertThat(request.getValue().bucket()).isEqualTo("staging-bucket");
+        assertThat(request.getValue().key()).isEqualTo("/files/song.mp3");
+        assertThat(request.getValue().range()).isEqualTo("bytes=0-3");
+    }
+
+    /**
+     * Test that the file length is taken from the Content-Range of a ranged read.
+     */
+    @Test
+    void fetchRange_shouldTakeFileLengthFromContentRange() {
+        // given
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenReturn(object("bytes 0-3/100"));
+        // when
+        Optional<ResourceRange> range = s3ResourceClient.fetchRange(LOCATION, "bytes=0-3");
+        // then
+        assertThat(range).hasValueSatisfying(resourceRange -> {
+            assertThat(resourceRange.content()).isEqualTo(CONTENT);
+            assertThat(resourceRange.fileLength()).isEqualTo(100);
+        });
+    }
+
+    /**
+     * Test that the content length stands for the file length when the Content-Range is absent
+     * or does not give the complete length.
+     */
+    @Test
+    void fetchRange_shouldUseContentLength_whenCompleteLengthUnknown() {
+        // given
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class)))
+            .thenReturn(object(null))
+            .thenReturn(object("bytes 0-3/*"));
+        // when
+        Optional<ResourceRange> withoutContentRange = s3ResourceClient.fetchRange(LOCATION, null);
+        Optional<ResourceRange> withUnknownLength = s3ResourceClient.fetchRange(LOCATION, "bytes=0-3");
+        // then
+        assertThat(withoutContentRange).map(ResourceRange::fileLength).hasValue((long) CONTENT.length);
+        assertThat(withUnknownLength).map(ResourceRange::fileLength).hasValue((long) CONTENT.length);
+    }
+
+    /**
+     * Test that an unreadable Content-Range returns empty, so the caller falls back, instead of
+     * failing the read.
+     */
+    @Test
+    void fetchRange_shouldReturnEmpty_whenContentRangeUnreadable() {
+        // given
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class))).thenReturn(object("bytes 0-3/abc"));
+        // when
+        Optional<ResourceRange> range = s3ResourceClient.fetchRange(LOCATION, "bytes=0-3");
+        // then
+        assertThat(range).isEmpty();
+    }
+
+    /**
+     * Test that an SDK failure returns empty.
+     */
+    @Test
+    void fetchObject_shouldReturnEmpty_whenReadFails() {
+        // given
+        when(s3Client.getObjectAsBytes(any(GetObjectRequest.class)))
+            .thenThrow(SdkClientException.create("connection reset"));
+        // when
+        Optional<byte[]> content = s3ResourceClient.fetchObject(LOCATION);
+        // then
+        assertThat(content).isEmpty();
+    }
+
+    /**
+     * Test that a location that is not an S3 location returns empty without reading.
+     */
+    @Test
+    void fetchObject_shouldReturnEmpty_whenLocationInvalid() {
+        // when and then
+        assertThat(s3ResourceClient.fetchObject("http://staging-bucket/files/song.mp3")).isEmpty();
+        assertThat(s3ResourceClient.fetchObject("s3://staging-bucket")).isEmpty();
+        assertThat(s3ResourceClient.fetchObject(null)).isEmpty();
+        verify(s3Client, never()).getObjectAsBytes(any(GetObjectRequest.class));
+    }
+
+    private static ResponseBytes<GetObjectResponse> object(String contentRange) {
+        return ResponseBytes.fromByteArray(GetObjectResponse.builder().contentRange(contentRange).build(), CONTENT);
+    }
+}
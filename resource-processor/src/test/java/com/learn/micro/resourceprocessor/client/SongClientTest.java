@@ -0,0 +1,172 @@
+package com.learn.micro.resourceprocessor.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceprocessor.exception.GeneralFailureException;
+import com.learn.micro.resourceprocessor.model.MetadataDto;
+import com.learn.micro.resourceprocessor.model.SaveSongsResponse;
+import com.learn.micro.resourceprocessor.model.SongSaveResult;
+import com.learn.micro.resourceprocessor.service.ServiceProvider;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class SongClientTest {
+
+    private static final String BATCH_URL = "http://song-service:8072/songs/batch";
+
+    @Mock
+    private RestTemplate restTemplate;
+    @Mock
+    private ServiceProvider serviceProvider;
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(3);
+
+    @BeforeEach
+    void setUp() {
+        when(serviceProvider.getServiceInstance("song-service"))
+            .thenReturn(new DefaultServiceInstance("song-service-1", "song-service", "song-service", 8072, false));
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    /**
+     * Test that the batch is sent as soon as max-size songs are waiting, long before the
+     * linger, in one request that stores all of them.
+     */
+    @Test
+    void saveSongMetadata_shouldSendBatch_whenMaxSizeReached() throws Exception {
+        // given
+        when(restTemplate.postForObject(eq(BATCH_URL), any(), eq(SaveSongsResponse.class)))
+            .thenAnswer(invocation -> results(invocation.getArgument(1)));
+        SongClient songClient = songClient(2, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        // when
+        Future<?> first = callers.submit(() -> songClient.saveSongMetadata(song("first")));
+        Future<?> second = callers.submit(() -> songClient.saveSongMetadata(song("second")));
+        // then
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertThat(sentBatches()).singleElement().asList().hasSize(2);
+    }
+
+    /**
+     * Test that a song alone in the buffer is sent once the linger has passed.
+     */
+    @Test
+    void saveSongMetadata_shouldSendBatch_whenLingerPassed() {
+        // given
+        when(restTemplate.postForObject(eq(BATCH_URL), any(), eq(SaveSongsResponse.class)))
+            .thenAnswer(invocation -> results(invocation.getArgument(1)));
+        SongClient songClient = songClient(50, Duration.ofMillis(50), Duration.ofSeconds(5));
+        // when
+        long start = System.nanoTime();
+        songClient.saveSongMetadata(song("lonely"));
+        // then
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+        assertThat(sentBatches()).singleElement().asList().hasSize(1);
+    }
+
+    /**
+     * Test that each caller gets the outcome of its own song: CREATED returns, ALREADY_EXISTS
+     * fails with 409 and INVALID with 400, as the single POST would.
+     */
+    @Test
+    void saveSongMetadata_shouldMapItemStatuses() throws Exception {
+        // given
+        when(restTemplate.postForObject(eq(BATCH_URL), any(), eq(SaveSongsResponse.class)))
+            .thenAnswer(invocation -> results(invocation.getArgument(1)));
+        SongClient songClient = songClient(3, Duration.ofMinutes(1), Duration.ofSeconds(5));
+        // when
+        Future<?> created = callers.submit(() -> songClient.saveSongMetadata(song("CREATED")));
+        Future<?> duplicate = callers.submit(() -> songClient.saveSongMetadata(song("ALREADY_EXISTS")));
+        Future<?> invalid = callers.submit(() -> songClient.saveSongMetadata(song("INVALID")));
+        // then
+        created.get(5, TimeUnit.SECONDS);
+        assertThatThrownBy(() -> duplicate.get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class).cause()
+            .isInstanceOfSatisfying(HttpClientErrorException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.CONFLICT));
+        assertThatThrownBy(() -> invalid.get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class).cause()
+            .isInstanceOfSatisfying(HttpClientErrorException.class,
+                e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    /**
+     * Test that a caller whose batch does not come back in time fails with the retryable
+     * GeneralFailureException instead of waiting forever.
+     */
+    @Test
+    void saveSongMetadata_shouldFail_whenBatchTimesOut() {
+        // given
+        CountDownLatch release = new CountDownLatch(1);
+        when(restTemplate.postForObject(eq(BATCH_URL), any(), eq(SaveSongsResponse.class)))
+            .thenAnswer(invocation -> {
+                release.await(5, TimeUnit.SECONDS);
+                return results(invocation.getArgument(1));
+            });
+        SongClient songClient = songClient(50, Duration.ofMillis(10), Duration.ofMillis(100));
+        // when / then
+        try {
+            assertThatThrownBy(() -> songClient.saveSongMetadata(song("slow")))
+                .isInstanceOf(GeneralFailureException.class)
+                .hasMessageContaining("Timed out");
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private SongClient songClient(int maxSize, Duration linger, Duration timeout) {
+        return new SongClient(restTemplate, serviceProvider, true, maxSize, linger, timeout);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<MetadataDto>> sentBatches() {
+        ArgumentCaptor<List<MetadataDto>> batches = ArgumentCaptor.forClass(List.class);
+        verify(restTemplate, times(1)).postForObject(eq(BATCH_URL), batches.capture(), eq(SaveSongsResponse.class));
+        return batches.getAllValues();
+    }
+
+    /**
+     * Answers each song with the status named by its title, CREATED unless it names another.
+     */
+    private static SaveSongsResponse results(List<MetadataDto> songs) {
+        return new SaveSongsResponse(songs.stream()
+            .map(song -> switch (song.getName()) {
+                case "ALREADY_EXISTS" -> new SongSaveResult(song.getId(), "ALREADY_EXISTS", "Song already exists");
+                case "INVALID" -> new SongSaveResult(song.getId(), "INVALID", "Invalid song");
+                default -> new SongSaveResult(song.getId(), "CREATED", null);
+            })
+            .toList());
+    }
+
+    private static MetadataDto song(String name) {
+        return new MetadataDto(name, "Artist", "Album", "03:00", "2020");
+    }
+}
@@ -28,7 +28,7 @@ public class TestDatabaseUtils {
     public Optional<Map<String, Object>> getLatestSong() {
         try {
             ResponseEntity<Object> response = restTemplate.getForEntity(
-                songServiceBaseUrl + "/songs", 
+                songServiceBaseUrl + "/songs?stream=true", 
                 Object.class
             );
             if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
@@ -0,0 +1,253 @@
+package com.learn.micro.resourceprocessor.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceprocessor.kafka.ListenerConcurrencyAutoscaler.ListenerState;
+import com.learn.micro.resourceprocessor.kafka.ListenerConcurrencyAutoscaler.Scaling;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.DescribeTopicsResult;
+import org.apache.kafka.clients.admin.ListConsumerGroupOffsetsResult;
+import org.apache.kafka.clients.admin.ListOffsetsResult;
+import org.apache.kafka.clients.admin.ListOffsetsResult.ListOffsetsResultInfo;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+
+@ExtendWith(MockitoExtension.class)
+class ListenerConcurrencyAutoscalerTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Mock
+    private KafkaListenerEndpointRegistry listenerRegistry;
+    @Mock
+    private Admin admin;
+    @Mock
+    private ConcurrentMessageListenerContainer<String, Object> container;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ListenerConcurrencyAutoscaler autoscaler;
+
+    @BeforeEach
+    void setUp() {
+        autoscaler = new ListenerConcurrencyAutoscaler(listenerRegistry, admin, meterRegistry,
+            List.of("resourceEventListener", "otherListener"), 1, 8, Duration.ofSeconds(30),
+            Duration.ofSeconds(60), 2);
+    }
+
+    /**
+     * Test that a backlog taking longer than the target to drain adds one consumer.
+     */
+    @Test
+    void decide_shouldScaleUp_whenBacklogDrainsTooSlowly() {
+        // when
+        Scaling scaling = autoscaler.decide(new ListenerState(), 2, 4, 100, 1.0, NOW);
+        // then
+        assertThat(scaling.concurrency()).isEqualTo(3);
+        assertThat(scaling.reason()).isEqualTo("backlog drains in 50s");
+    }
+
+    /**
+     * Test that a backlog while no record finished counts as never draining.
+     */
+    @Test
+    void decide_shouldScaleUp_whenNoRecordFinished() {
+        // when
+        Scaling scaling = autoscaler.decide(new ListenerState(), 1, 4, 10, Double.NaN, NOW);
+        // then
+        assertThat(scaling.concurrency()).isEqualTo(2);
+        assertThat(scaling.reason()).isEqualTo("backlog drains in never (no records finished)");
+    }
+
+    /**
+     * Test that the concurrency does not grow beyond the partition count.
+     */
+    @Test
+    void decide_shouldHold_whenAtUpperBound() {
+        // when
+        Scaling scaling = autoscaler.decide(new ListenerState(), 4, 4, 1_000, 1.0, NOW);
+        // then
+        assertThat(scaling.concurrency()).isEqualTo(4);
+        assertThat(scaling.reason()).isEqualTo("at maximum");
+    }
+
+    /**
+     * Test that a concurrency outside of the bounds, e.g. after partitions were removed, is brought
+     * back within them.
+     */
+    @Test
+    void decide_shouldClamp_whenOutsideOfBounds() {
+        // when
+        Scaling scaling = autoscaler.decide(new ListenerState(), 6, 3, 0, Double.NaN, NOW);
+        // then
+        assertThat(scaling.concurrency()).isEqualTo(3);
+    }
+
+    /**
+     * Test that one consumer is removed only after enough quiet checks in a row.
+     */
+    @Test
+    void decide_shouldScaleDown_afterQuietChecks() {
+        // given
+        ListenerState state = new ListenerState();
+        // when
+        Scaling first = autoscaler.decide(state, 3, 4, 0, Double.NaN, NOW);
+        Scaling second = autoscaler.decide(state, 3, 4, 0, Double.NaN, NOW.plusSeconds(15));
+        // then
+        assertThat(first.concurrency()).isEqualTo(3);
+        assertThat(first.reason()).isEqualTo("low backlog");
+        assertThat(second.concurrency()).isEqualTo(2);
+    }
+
+    /**
+     * Test that a check within target resets the quiet checks.
+     */
+    @Test
+    void decide_shouldResetQuietChecks_whenWithinTarget() {
+        // given
+        ListenerState state = new ListenerState();
+        autoscaler.decide(state, 3, 4, 0, Double.NaN, NOW);
+        // when
+        Scaling withinTarget = autoscaler.decide(state, 3, 4, 30, 1.0, NOW.plusSeconds(15));
+        Scaling quiet = autoscaler.decide(state, 3, 4, 0, Double.NaN, NOW.plusSeconds(30));
+        // then
+        assertThat(withinTarget.reason()).isEqualTo("within target");
+        assertThat(quiet.concurrency()).isEqualTo(3);
+    }
+
+    /**
+     * Test that no change follows within the cooldown of the previous one.
+     */
+    @Test
+    void decide_shouldHold_whenCoolingDown() {
+        // given
+        ListenerState state = new ListenerState();
+        autoscaler.decide(state, 1, 4, 100, 1.0, NOW);
+        // when
+        Scaling cooling = autoscaler.decide(state, 2, 4, 100, 1.0, NOW.plusSeconds(15));
+        Scaling cooled = autoscaler.decide(state, 2, 4, 100, 1.0, NOW.plusSeconds(61));
+        // then
+        assertThat(cooling.concurrency()).isEqualTo(2);
+        assertThat(cooling.reason()).startsWith("cooling down");
+        assertThat(cooled.concurrency()).isEqualTo(3);
+    }
+
+    /**
+     * Test that only the timers of the listener's own consumers are read, not those of its retry
+     * and dead letter containers or of a listener whose id starts alike.
+     */
+    @Test
+    void processingTimers_shouldMatchConsumersOfListenerOnly() {
+        // given
+        listenerTimer("resourceEventListener-0");
+        listenerTimer("resourceEventListener-1");
+        listenerTimer("resourceEventListener-retry-5000-0");
+        listenerTimer("resourceEventListener-dlt-0");
+        listenerTimer("resourceEventListenerV2-0");
+        // when
+        List<Timer> timers = autoscaler.processingTimers("resourceEventListener");
+        // then
+        assertThat(timers).extracting(timer -> timer.getId().getTag("name"))
+            .containsExactlyInAnyOrder("resourceEventListener-0", "resourceEventListener-1");
+    }
+
+    /**
+     * Test that only the configured listeners are looked up, so the retry and dead letter
+     * containers registered beside them are never scaled.
+     */
+    @Test
+    void evaluate_shouldOnlyLookUpConfiguredListeners() {
+        // given
+        when(listenerRegistry.getListenerContainer("resourceEventListener")).thenReturn(container);
+        // when
+        autoscaler.evaluate();
+        // then
+        verify(listenerRegistry, never()).getListenerContainers();
+        verify(listenerRegistry).getListenerContainer("otherListener");
+        verifyNoInteractions(admin);
+    }
+
+    /**
+     * Test that a partition the group has not committed yet counts from its beginning offset,
+     * not from offset 0, while a committed one counts from its committed offset.
+     */
+    @Test
+    void evaluate_shouldCountLagFromBeginningOffset_whenNothingCommitted() {
+        // given
+        TopicPartition committedPartition = new TopicPartition("resource-events", 0);
+        TopicPartition uncommittedPartition = new TopicPartition("resource-events", 1);
+        givenRunningContainer("resource-events", 2);
+        when(admin.listOffsets(anyMap())).thenAnswer(invocation -> {
+            Map<TopicPartition, OffsetSpec> specs = invocation.getArgument(0);
+            boolean earliest = specs.values().iterator().next() instanceof OffsetSpec.EarliestSpec;
+            return listOffsetsResult(specs.keySet().stream().collect(Collectors.toMap(Function.identity(),
+                partition -> earliest ? 900L : 1_000L)));
+        });
+        ListConsumerGroupOffsetsResult groupOffsets = mock(ListConsumerGroupOffsetsResult.class);
+        when(groupOffsets.partitionsToOffsetAndMetadata())
+            .thenReturn(KafkaFuture.completedFuture(Map.of(committedPartition, new OffsetAndMetadata(990))));
+        when(admin.listConsumerGroupOffsets("resource-processor")).thenReturn(groupOffsets);
+        // when
+        autoscaler.evaluate();
+        // then
+        assertThat(autoscaler.decisions().get("resourceEventListener").lag()).isEqualTo(10 + 100);
+        verify(admin).listOffsets(argThat(specs -> specs.keySet().equals(Set.of(uncommittedPartition))
+            && specs.get(uncommittedPartition) instanceof OffsetSpec.EarliestSpec));
+    }
+
+    private void givenRunningContainer(String topic, int partitions) {
+        when(listenerRegistry.getListenerContainer("resourceEventListener")).thenReturn(container);
+        when(container.isRunning()).thenReturn(true);
+        when(container.getContainerProperties()).thenReturn(new ContainerProperties(topic));
+        when(container.getGroupId()).thenReturn("resource-processor");
+        when(container.getListenerId()).thenReturn("resourceEventListener");
+        when(container.getConcurrency()).thenReturn(1);
+        DescribeTopicsResult topics = mock(DescribeTopicsResult.class);
+        when(topics.allTopicNames()).thenReturn(KafkaFuture.completedFuture(Map.of(topic,
+            new TopicDescription(topic, false, IntStream.range(0, partitions)
+                .mapToObj(partition -> new TopicPartitionInfo(partition, null, List.of(), List.of()))
+                .toList()))));
+        when(admin.describeTopics(List.of(topic))).thenReturn(topics);
+    }
+
+    private static ListOffsetsResult listOffsetsResult(Map<TopicPartition, Long> offsets) {
+        ListOffsetsResult result = mock(ListOffsetsResult.class);
+        when(result.all()).thenReturn(KafkaFuture.completedFuture(offsets.entrySet().stream()
+            .collect(Collectors.toMap(Map.Entry::getKey,
+                entry -> new ListOffsetsResultInfo(entry.getValue(), -1, Optional.empty())))));
+        return result;
+    }
+
+    private Timer listenerTimer(String name) {
+        return Timer.builder("spring.kafka.listener").tag("name", name).register(meterRegistry);
+    }
+}
@@ -0,0 +1,195 @@
+package com.learn.micro.resourceprocessor.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceprocessor.exception.GeneralFailureException;
+import com.learn.micro.resourceprocessor.kafka.event.EventType;
+import com.learn.micro.resourceprocessor.kafka.event.ResourceEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.util.backoff.FixedBackOff;
+
+@ExtendWith(MockitoExtension.class)
+class ResourceBatchConsumerTest {
+
+    private static final String TOPIC = "resource-events";
+    private static final TopicPartition PARTITION = new TopicPartition(TOPIC, 0);
+
+    @Mock
+    private ResourceConsumer resourceConsumer;
+    @Mock
+    private KafkaListenerEndpointRegistry listenerRegistry;
+    @Mock
+    private MessageListenerContainer container;
+    @Mock
+    private ConsumerRecordRecoverer recoverer;
+
+    private final MockConsumer<String, ResourceEvent> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+    private ExecutorService workers;
+
+    @BeforeEach
+    void setUp() {
+        consumer.assign(List.of(PARTITION));
+        consumer.updateBeginningOffsets(Map.of(PARTITION, 0L));
+        workers = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Test that the records of one key are processed in offset order, even when the first one is
+     * slow and the other lane finishes first, and that the partition is committed past all of
+     * them once they are done.
+     */
+    @Test
+    void consume_shouldProcessRecordsOfLaneInOffsetOrder() throws Exception {
+        // given
+        List<String> processed = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(5);
+        doAnswer(invocation -> {
+            String traceId = invocation.getArgument(1);
+            if (traceId.equals("0")) {
+                Thread.sleep(100);
+            }
+            processed.add(invocation.<ResourceEvent>getArgument(0).resourceId() + "@" + traceId);
+            done.countDown();
+            return null;
+        }).when(resourceConsumer).handle(any(), anyString());
+        ResourceBatchConsumer batchConsumer = batchConsumer(100);
+        // when
+        batchConsumer.consume(List.of(record(0, "1"), record(1, "2"), record(2, "1"), record(3, "2"),
+            record(4, "1")), consumer);
+        // then
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(processed.stream().filter(entry -> entry.startsWith("1@")).toList())
+            .containsExactly("1@0", "1@2", "1@4");
+        assertThat(processed.stream().filter(entry -> entry.startsWith("2@")).toList())
+            .containsExactly("2@1", "2@3");
+        assertThat(processed.indexOf("2@1")).isLessThan(processed.indexOf("1@0"));
+        awaitCommitted(batchConsumer, 5L);
+    }
+
+    /**
+     * Test that the commit stops at a record that could be neither processed nor sent to the
+     * DLT, that the records behind it in its lane are not processed, and that the partition is
+     * rewound to it once the other lanes are done.
+     */
+    @Test
+    void consume_shouldCommitUpToFailedRecordAndRewind_whenRecoveryFails() {
+        // given
+        lenient().doThrow(new GeneralFailureException("song-service unavailable"))
+            .when(resourceConsumer).handle(argThat(event -> event.resourceId().equals("2")), anyString());
+        doThrow(new KafkaException("DLT unavailable")).when(recoverer).accept(any(), any());
+        when(listenerRegistry.getListenerContainer("resourceEventBatchListener")).thenReturn(container);
+        ResourceBatchConsumer batchConsumer = new ResourceBatchConsumer(resourceConsumer, Runnable::run,
+            listenerRegistry, recoverer, new FixedBackOff(0L, 1), new SimpleMeterRegistry(), 100);
+        // when
+        batchConsumer.consume(List.of(record(0, "1"), record(1, "2"), record(2, "1"), record(3, "2")), consumer);
+        // then
+        assertThat(consumer.committed(Set.of(PARTITION)).get(PARTITION).offset()).isEqualTo(1L);
+        assertThat(consumer.position(PARTITION)).isEqualTo(1L);
+        verify(resourceConsumer, times(2)).handle(any(), eq("1"));
+        verify(resourceConsumer, never()).handle(any(), eq("3"));
+        verify(container).pausePartition(PARTITION);
+        verify(container).resumePartition(PARTITION);
+    }
+
+    /**
+     * Test that a record sent to the DLT after its retries counts as done, so the commit moves
+     * past it and the next record of its lane is processed.
+     */
+    @Test
+    void consume_shouldCommitPastFailedRecord_whenSentToDlt() {
+        // given
+        lenient().doThrow(new GeneralFailureException("song-service unavailable"))
+            .when(resourceConsumer).handle(any(), eq("1"));
+        ResourceBatchConsumer batchConsumer = new ResourceBatchConsumer(resourceConsumer, Runnable::run,
+            listenerRegistry, recoverer, new FixedBackOff(0L, 1), new SimpleMeterRegistry(), 100);
+        // when
+        batchConsumer.consume(List.of(record(0, "1"), record(1, "2"), record(2, "2")), consumer);
+        // then
+        assertThat(consumer.committed(Set.of(PARTITION)).get(PARTITION).offset()).isEqualTo(3L);
+        verify(recoverer).accept(argThat(consumerRecord -> consumerRecord.offset() == 1L), any());
+        verify(resourceConsumer).handle(any(), eq("2"));
+        verify(container, never()).pausePartition(any());
+    }
+
+    /**
+     * Test that only a partition with too many records pending is paused, and that nothing is
+     * committed before the first record is done.
+     */
+    @Test
+    void consume_shouldPausePartition_whenTooManyRecordsPending() {
+        // given
+        when(listenerRegistry.getListenerContainer("resourceEventBatchListener")).thenReturn(container);
+        ResourceBatchConsumer batchConsumer = new ResourceBatchConsumer(resourceConsumer, task -> { },
+            listenerRegistry, recoverer, new FixedBackOff(0L, 0), new SimpleMeterRegistry(), 2);
+        // when
+        batchConsumer.consume(List.of(record(0, "1"), record(1, "2")), consumer);
+        // then
+        verify(container).pausePartition(PARTITION);
+        assertThat(consumer.committed(Set.of(PARTITION))).doesNotContainKey(PARTITION);
+    }
+
+    private ResourceBatchConsumer batchConsumer(int maxPending) {
+        return new ResourceBatchConsumer(resourceConsumer, workers, listenerRegistry, recoverer,
+            new FixedBackOff(0L, 0), new SimpleMeterRegistry(), maxPending);
+    }
+
+    private void awaitCommitted(ResourceBatchConsumer batchConsumer, long offset) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            batchConsumer.commitCompleted(consumer);
+            var committed = consumer.committed(Set.of(PARTITION)).get(PARTITION);
+            if (committed != null && committed.offset() == offset) {
+                return;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Offset " + offset + " was not committed");
+    }
+
+    private static ConsumerRecord<String, ResourceEvent> record(long offset, String resourceId) {
+        ConsumerRecord<String, ResourceEvent> consumerRecord = new ConsumerRecord<>(TOPIC, 0, offset, resourceId,
+            new ResourceEvent(resourceId, EventType.CREATE));
+        consumerRecord.headers().add("X-Trace-Id", String.valueOf(offset).getBytes(StandardCharsets.UTF_8));
+        return consumerRecord;
+    }
+}
@@ -0,0 +1,150 @@
+package com.learn.micro.resourceprocessor.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceprocessor.client.SongClient;
+import com.learn.micro.resourceprocessor.configuration.KafkaConfig;
+import com.learn.micro.resourceprocessor.exception.GeneralFailureException;
+import com.learn.micro.resourceprocessor.kafka.event.EventType;
+import com.learn.micro.resourceprocessor.kafka.event.ResourceEvent;
+import com.learn.micro.resourceprocessor.service.MetadataService;
+import com.learn.micro.resourceprocessor.service.Mp3HeaderReader;
+import com.learn.micro.resourceprocessor.service.ProcessedEventStore;
+import com.learn.micro.resourceprocessor.service.ProcessedEventStore.Status;
+import com.learn.micro.resourceprocessor.service.ResourceContentReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+/**
+ * Runs the single-record listener with its retry topics on an embedded broker: a failing record
+ * is forwarded through the delay topics to the DLT, while the record behind it on the partition
+ * is processed right away.
+ */
+@SpringBootTest(classes = {KafkaConfig.class, ResourceConsumer.class}, properties = {
+    "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+    "spring.kafka.topic=resource-events",
+    "spring.kafka.consumer.group-id=retry-topic-test",
+    "app.kafka.retry.attempts=3",
+    "app.kafka.retry.initial-delay=500",
+    "app.kafka.retry.multiplier=2",
+    "app.kafka.retry.max-delay=5000"})
+@ImportAutoConfiguration(KafkaAutoConfiguration.class)
+@EmbeddedKafka(partitions = 1, topics = "resource-events")
+class ResourceConsumerRetryTopicTest {
+
+    @Autowired
+    private KafkaTemplate<String, ResourceEvent> kafkaTemplate;
+    @Autowired
+    private KafkaListenerEndpointRegistry listenerRegistry;
+    @Autowired
+    private EmbeddedKafkaBroker embeddedKafka;
+
+    @MockitoBean
+    private MetadataService metadataService;
+    @MockitoBean
+    private ResourceContentReader resourceContentReader;
+    @MockitoBean
+    private SongClient songClient;
+    @MockitoBean
+    private ResourceProducer resourceProducer;
+    @MockitoBean
+    private Mp3HeaderReader mp3HeaderReader;
+    @MockitoBean
+    private ProcessedEventStore processedEventStore;
+
+    /**
+     * Test that a failing record goes to the retry topics and then the DLT, and that the next
+     * record on the partition is consumed before the failing one has used up its retries.
+     */
+    @Test
+    void consume_shouldForwardFailingRecordToRetryTopicsAndDlt_withoutBlockingPartition() {
+        // given
+        when(processedEventStore.check(resource("1")))
+            .thenThrow(new GeneralFailureException("song-service unavailable"));
+        when(processedEventStore.check(resource("2")))
+            .thenReturn(Status.DONE);
+        AtomicLong nextProcessedAt = new AtomicLong();
+        doAnswer(invocation -> {
+            nextProcessedAt.set(System.currentTimeMillis());
+            return null;
+        }).when(resourceProducer).publishProcessingComplete("2");
+        listenerRegistry.getListenerContainers().forEach(container ->
+            ContainerTestUtils.waitForAssignment(container, embeddedKafka.getPartitionsPerTopic()));
+        // when
+        send("1");
+        send("2");
+        // then
+        verify(resourceProducer, timeout(5000)).publishProcessingComplete("2");
+        List<ConsumerRecord<String, String>> forwarded = forwardedUntilDlt("1");
+        List<String> topics = forwarded.stream().map(ConsumerRecord::topic).toList();
+        assertThat(topics).hasSize(3);
+        assertThat(topics.subList(0, 2)).allMatch(topic -> topic.startsWith("resource-events-retry-"));
+        assertThat(topics.get(2)).isEqualTo("resource-events-dlt");
+        assertThat(nextProcessedAt.get()).isLessThan(forwarded.get(2).timestamp());
+        verify(processedEventStore, times(3)).check(resource("1"));
+    }
+
+    private static ResourceEvent resource(String resourceId) {
+        return argThat(event -> event != null && resourceId.equals(event.resourceId()));
+    }
+
+    private void send(String resourceId) {
+        ProducerRecord<String, ResourceEvent> producerRecord = new ProducerRecord<>("resource-events", resourceId,
+            new ResourceEvent(resourceId, EventType.CREATE));
+        producerRecord.headers().add("X-Trace-Id", ("trace-" + resourceId).getBytes(StandardCharsets.UTF_8));
+        kafkaTemplate.send(producerRecord);
+    }
+
+    /**
+     * Reads the records of the resource forwarded to the retry and dead letter topics, in order,
+     * until one arrives on the DLT.
+     */
+    private List<ConsumerRecord<String, String>> forwardedUntilDlt(String resourceId) {
+        Map<String, Object> props = KafkaTestUtils.consumerProps("retry-topic-observer", "false", embeddedKafka);
+        List<ConsumerRecord<String, String>> forwarded = new ArrayList<>();
+        try (Consumer<String, String> consumer = new DefaultKafkaConsumerFactory<>(props,
+            new StringDeserializer(), new StringDeserializer()).createConsumer()) {
+            consumer.subscribe(Pattern.compile("resource-events-(retry-.*|dlt)"));
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (System.currentTimeMillis() < deadline) {
+                for (ConsumerRecord<String, String> consumerRecord : consumer.poll(Duration.ofMillis(200))) {
+                    if (resourceId.equals(consumerRecord.key())) {
+                        forwarded.add(consumerRecord);
+                        if (consumerRecord.topic().endsWith("-dlt")) {
+                            return forwarded;
+                        }
+                    }
+                }
+            }
+        }
+        return forwarded;
+    }
+}
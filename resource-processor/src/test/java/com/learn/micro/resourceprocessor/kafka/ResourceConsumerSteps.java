@@ -1,7 +1,10 @@
 package com.learn.micro.resourceprocessor.kafka;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -11,6 +14,7 @@ import com.learn.micro.resourceprocessor.client.SongClient;
 import com.learn.micro.resourceprocessor.kafka.event.EventType;
 import com.learn.micro.resourceprocessor.kafka.event.ResourceEvent;
 import com.learn.micro.resourceprocessor.model.MetadataDto;
+import com.learn.micro.resourceprocessor.model.ResourceRange;
 import com.learn.micro.resourceprocessor.service.MetadataService;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
@@ -18,6 +22,7 @@ import io.cucumber.java.en.When;
 import io.cucumber.spring.CucumberContextConfiguration;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
@@ -48,7 +53,7 @@ public class ResourceConsumerSteps {
     public void given_valid_resource_id(String id) throws IOException {
         this.resourceId = id;
         resourceContent = loadTestMp3();
-        when(resourceClient.fetchResource(resourceId)).thenReturn(resourceContent);
+        stubResource();
     }
 
     @When("the resource processor consumes the resource ID")
@@ -58,7 +63,9 @@ public class ResourceConsumerSteps {
 
     @Then("the resource is fetched from the resource service")
     public void then_resource_fetched_from_resource_service() {
-        verify(resourceClient).fetchResource(resourceId);
+        // Ranged reads of the head and tail, and no whole-file download
+        verify(resourceClient, atLeastOnce()).fetchResourceRange(eq(resourceId), anyString());
+        verify(resourceClient, never()).fetchResource(resourceId);
     }
 
     @Then("the MP3 is validated")
@@ -92,7 +99,7 @@ public class ResourceConsumerSteps {
     public void given_non_mp3_resource_id(String id) {
         this.resourceId = id;
         resourceContent = new byte[]{0, 1, 2, 3}; // invalid MP3 content
-        when(resourceClient.fetchResource(resourceId)).thenReturn(resourceContent);
+        stubResource();
     }
 
     @When("the resource processor consumes the non-MP3 resource ID")
@@ -112,6 +119,26 @@ public class ResourceConsumerSteps {
         verify(songClient, never()).saveSongMetadata(any());
     }
 
+    private void stubResource() {
+        when(resourceClient.fetchResource(resourceId)).thenReturn(resourceContent);
+        when(resourceClient.resourceExists(resourceId)).thenReturn(true);
+        when(resourceClient.fetchResourceRange(eq(resourceId), anyString()))
+            .thenAnswer(invocation -> range(invocation.getArgument(1)));
+    }
+
+    /**
+     * Serves {@code bytes=<first>-<last>} and {@code bytes=-<length>} like resource-service.
+     */
+    private ResourceRange range(String range) {
+        String spec = range.substring("bytes=".length());
+        int dash = spec.indexOf('-');
+        int length = resourceContent.length;
+        int start = dash == 0 ? Math.max(0, length - Integer.parseInt(spec.substring(1)))
+            : Integer.parseInt(spec.substring(0, dash));
+        int end = dash == 0 ? length : Math.min(length, Integer.parseInt(spec.substring(dash + 1)) + 1);
+        return new ResourceRange(Arrays.copyOfRange(resourceContent, start, end), length);
+    }
+
     private byte[] loadTestMp3() throws IOException {
         try (InputStream is = getClass().getResourceAsStream("/test-data/test.mp3")) {
             if (is == null) {
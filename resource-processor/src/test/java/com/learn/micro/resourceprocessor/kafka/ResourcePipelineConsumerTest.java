@@ -0,0 +1,169 @@
+package com.learn.micro.resourceprocessor.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceprocessor.exception.GeneralFailureException;
+import com.learn.micro.resourceprocessor.kafka.event.EventType;
+import com.learn.micro.resourceprocessor.kafka.event.ResourceEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.ConsumerRecordRecoverer;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.support.Acknowledgment;
+
+@ExtendWith(MockitoExtension.class)
+class ResourcePipelineConsumerTest {
+
+    private static final int MAX_IN_FLIGHT = 4;
+
+    @Mock
+    private ResourcePipeline resourcePipeline;
+    @Mock
+    private KafkaListenerEndpointRegistry listenerRegistry;
+    @Mock
+    private MessageListenerContainer container;
+    @Mock
+    private Acknowledgment acknowledgment;
+    @Mock
+    private ConsumerRecordRecoverer recoverer;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<CompletableFuture<Void>> submitted = new ArrayList<>();
+    private ResourcePipelineConsumer pipelineConsumer;
+
+    @BeforeEach
+    void setUp() {
+        pipelineConsumer = new ResourcePipelineConsumer(resourcePipeline, listenerRegistry, recoverer,
+            meterRegistry, MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Test that a record is acknowledged only once the pipeline is done with it, also when it
+     * failed there.
+     */
+    @Test
+    void consume_shouldAcknowledgeWhenPipelineCompletes() {
+        // given
+        givenPipelineHoldsRecords();
+        // when
+        pipelineConsumer.consume(record(0), acknowledgment);
+        pipelineConsumer.consume(record(1), acknowledgment);
+        // then
+        verify(acknowledgment, never()).acknowledge();
+        submitted.get(0).complete(null);
+        submitted.get(1).completeExceptionally(new GeneralFailureException("song-service unavailable"));
+        verify(acknowledgment, times(2)).acknowledge();
+        assertThat(inFlight()).isZero();
+    }
+
+    /**
+     * Test that a record failing in the pipeline is sent to the dead letter topic before it is
+     * acknowledged, and that a successful record is not.
+     */
+    @Test
+    void consume_shouldSendFailedRecordToRecoverer_beforeAcknowledging() {
+        // given
+        givenPipelineHoldsRecords();
+        ConsumerRecord<String, ResourceEvent> failing = record(0);
+        ConsumerRecord<String, ResourceEvent> succeeding = record(1);
+        GeneralFailureException failure = new GeneralFailureException("song-service unavailable");
+        // when
+        pipelineConsumer.consume(failing, acknowledgment);
+        pipelineConsumer.consume(succeeding, acknowledgment);
+        submitted.get(1).complete(null);
+        submitted.get(0).completeExceptionally(failure);
+        // then
+        verify(recoverer).accept(failing, failure);
+        verify(recoverer, never()).accept(eq(succeeding), any());
+        verify(acknowledgment, times(2)).acknowledge();
+    }
+
+    /**
+     * Test that a failed record the dead letter topic cannot take is left unacknowledged, so it
+     * is delivered again, while its slot in the pipeline is released.
+     */
+    @Test
+    void consume_shouldNotAcknowledge_whenRecovererFails() {
+        // given
+        givenPipelineHoldsRecords();
+        ConsumerRecord<String, ResourceEvent> failing = record(0);
+        GeneralFailureException failure = new GeneralFailureException("song-service unavailable");
+        doThrow(new KafkaException("DLT unavailable")).when(recoverer).accept(failing, failure);
+        // when
+        pipelineConsumer.consume(failing, acknowledgment);
+        submitted.get(0).completeExceptionally(failure);
+        // then
+        verify(acknowledgment, never()).acknowledge();
+        assertThat(inFlight()).isZero();
+    }
+
+    /**
+     * Test that a record without a value is acknowledged at once and not submitted.
+     */
+    @Test
+    void consume_shouldAcknowledgeRecordWithoutValue() {
+        // when
+        pipelineConsumer.consume(new ConsumerRecord<>("resource-events", 0, 0L, "1", null), acknowledgment);
+        // then
+        verify(acknowledgment).acknowledge();
+        verify(resourcePipeline, never()).submit(any(), anyString());
+    }
+
+    /**
+     * Test that the listener returns at once when the pipeline is full, pausing the container
+     * instead of waiting for a slot, and resumes it once half of the records have drained.
+     */
+    @Test
+    void consume_shouldPauseWithoutBlocking_whenFull_andResumeWhenHalfDrained() {
+        // given
+        givenPipelineHoldsRecords();
+        when(listenerRegistry.getListenerContainer("resourceEventPipelineListener")).thenReturn(container);
+        // when
+        for (int offset = 0; offset < MAX_IN_FLIGHT; offset++) {
+            pipelineConsumer.consume(record(offset), acknowledgment);
+        }
+        // then
+        verify(container).pause();
+        assertThat(inFlight()).isEqualTo(MAX_IN_FLIGHT);
+        when(container.isPauseRequested()).thenReturn(true);
+        submitted.get(0).complete(null);
+        verify(container, never()).resume();
+        submitted.get(1).complete(null);
+        verify(container).resume();
+    }
+
+    private void givenPipelineHoldsRecords() {
+        when(resourcePipeline.submit(any(), anyString())).thenAnswer(invocation -> {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            submitted.add(done);
+            return done;
+        });
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("resource.pipeline.in.flight").gauge().value();
+    }
+
+    private static ConsumerRecord<String, ResourceEvent> record(long offset) {
+        return new ConsumerRecord<>("resource-events", 0, offset, String.valueOf(offset),
+            new ResourceEvent(String.valueOf(offset), EventType.CREATE));
+    }
+}
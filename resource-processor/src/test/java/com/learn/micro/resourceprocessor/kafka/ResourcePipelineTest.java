@@ -0,0 +1,144 @@
+package com.learn.micro.resourceprocessor.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceprocessor.exception.GeneralFailureException;
+import com.learn.micro.resourceprocessor.kafka.ResourceConsumer.Extraction;
+import com.learn.micro.resourceprocessor.kafka.ResourceConsumer.FetchedResource;
+import com.learn.micro.resourceprocessor.kafka.event.EventType;
+import com.learn.micro.resourceprocessor.kafka.event.ResourceEvent;
+import com.learn.micro.resourceprocessor.model.MetadataDto;
+import com.learn.micro.resourceprocessor.model.Mp3Header;
+import com.learn.micro.resourceprocessor.service.Mp3HeaderReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ResourcePipelineTest {
+
+    private static final ResourceEvent CREATE = new ResourceEvent("1", EventType.CREATE);
+    private static final MetadataDto METADATA = new MetadataDto("Title", "Artist", "Album", "03:00", "2020");
+
+    @Mock
+    private ResourceConsumer resourceConsumer;
+    @Mock
+    private Mp3HeaderReader mp3HeaderReader;
+
+    private ResourcePipeline resourcePipeline;
+
+    @BeforeEach
+    void setUp() {
+        when(mp3HeaderReader.isEnabled()).thenReturn(true);
+        resourcePipeline = new ResourcePipeline(resourceConsumer, mp3HeaderReader, new SimpleMeterRegistry(),
+            16, 2, 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        resourcePipeline.shutdown();
+    }
+
+    /**
+     * Test that a CREATE runs fetch of the header, parse and persist, one after the other.
+     */
+    @Test
+    void submit_shouldFetchParseAndPersist() throws Exception {
+        // given
+        FetchedResource fetched = header();
+        when(resourceConsumer.fetch(CREATE, true)).thenReturn(fetched);
+        when(resourceConsumer.parse(fetched)).thenReturn(new Extraction(METADATA, false));
+        // when
+        resourcePipeline.submit(CREATE, "trace").get(5, TimeUnit.SECONDS);
+        // then
+        InOrder order = inOrder(resourceConsumer);
+        order.verify(resourceConsumer).fetch(CREATE, true);
+        order.verify(resourceConsumer).parse(fetched);
+        order.verify(resourceConsumer).persist(CREATE, METADATA);
+    }
+
+    /**
+     * Test that a header without a duration makes the pipeline fetch and parse the whole file.
+     */
+    @Test
+    void submit_shouldFetchWholeFile_whenHeaderNotEnough() throws Exception {
+        // given
+        FetchedResource fetchedHeader = header();
+        FetchedResource fetchedFile = new FetchedResource("1", null, new byte[]{1});
+        when(resourceConsumer.fetch(CREATE, true)).thenReturn(fetchedHeader);
+        when(resourceConsumer.fetch(CREATE, false)).thenReturn(fetchedFile);
+        when(resourceConsumer.parse(fetchedHeader)).thenReturn(new Extraction(null, true));
+        when(resourceConsumer.parse(fetchedFile)).thenReturn(new Extraction(METADATA, false));
+        // when
+        resourcePipeline.submit(CREATE, "trace").get(5, TimeUnit.SECONDS);
+        // then
+        verify(resourceConsumer).persist(CREATE, METADATA);
+    }
+
+    /**
+     * Test that an event already processed is not fetched again.
+     */
+    @Test
+    void submit_shouldSkipFetch_whenAlreadyProcessed() throws Exception {
+        // given
+        when(resourceConsumer.skipProcessed(CREATE)).thenReturn(true);
+        // when
+        resourcePipeline.submit(CREATE, "trace").get(5, TimeUnit.SECONDS);
+        // then
+        verify(resourceConsumer, never()).fetch(any(), org.mockito.ArgumentMatchers.anyBoolean());
+        verify(resourceConsumer, never()).persist(any(), any());
+    }
+
+    /**
+     * Test that the events of one resource run one after the other, even when the first one
+     * fails, while another resource is not held back.
+     */
+    @Test
+    void submit_shouldRunEventsOfResourceInOrder() throws Exception {
+        // given
+        List<String> steps = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch releaseFetch = new CountDownLatch(1);
+        ResourceEvent other = new ResourceEvent("2", EventType.DELETE);
+        ResourceEvent delete = new ResourceEvent("1", EventType.DELETE);
+        when(resourceConsumer.fetch(CREATE, true)).thenAnswer(invocation -> {
+            releaseFetch.await(5, TimeUnit.SECONDS);
+            steps.add("create 1");
+            throw new GeneralFailureException("resource-service unavailable");
+        });
+        doAnswer(invocation -> steps.add("delete " + invocation.<ResourceEvent>getArgument(0).resourceId()))
+            .when(resourceConsumer).processDeleteResource(any());
+        // when
+        CompletableFuture<Void> created = resourcePipeline.submit(CREATE, "trace");
+        CompletableFuture<Void> deleted = resourcePipeline.submit(delete, "trace");
+        resourcePipeline.submit(other, "trace").get(5, TimeUnit.SECONDS);
+        releaseFetch.countDown();
+        deleted.get(5, TimeUnit.SECONDS);
+        // then
+        assertThatThrownBy(created::get).isInstanceOf(ExecutionException.class)
+            .hasRootCauseInstanceOf(GeneralFailureException.class);
+        assertThat(steps).containsExactly("delete 2", "create 1", "delete 1");
+    }
+
+    private static FetchedResource header() {
+        return new FetchedResource("1", new Mp3Header(new byte[]{1}, new byte[0], 1L), null);
+    }
+}
@@ -0,0 +1,81 @@
+package com.learn.micro.resourceprocessor.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class BloomFilterTest {
+
+    /**
+     * Test that every key put is found again.
+     */
+    @Test
+    void mightContain_shouldFindEveryKeyPut() {
+        // given
+        BloomFilter bloomFilter = new BloomFilter(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> bloomFilter.put("key-" + i));
+        // when / then
+        assertThat(IntStream.range(0, 10_000).allMatch(i -> bloomFilter.mightContain("key-" + i))).isTrue();
+    }
+
+    /**
+     * Test that keys never put are reported at about the configured rate once the expected
+     * number of keys was put.
+     */
+    @Test
+    void mightContain_shouldKeepFalsePositiveRate_whenFilledToExpectedInsertions() {
+        // given
+        BloomFilter bloomFilter = new BloomFilter(10_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> bloomFilter.put("key-" + i));
+        // when
+        long falsePositives = IntStream.range(0, 100_000)
+            .filter(i -> bloomFilter.mightContain("other-" + i))
+            .count();
+        // then
+        assertThat(falsePositives).isLessThan(2_000);
+    }
+
+    /**
+     * Test that an empty filter contains nothing.
+     */
+    @Test
+    void mightContain_shouldReturnFalse_whenNothingPut() {
+        // given
+        BloomFilter bloomFilter = new BloomFilter(1_000, 0.01);
+        // when / then
+        assertThat(bloomFilter.mightContain("1|CREATE|s3://staging/1.mp3")).isFalse();
+    }
+
+    /**
+     * Test that keys put concurrently, many of them sharing words of the bit array, are all kept.
+     */
+    @Test
+    void put_shouldKeepAllKeys_whenPutConcurrently() throws Exception {
+        // given
+        BloomFilter bloomFilter = new BloomFilter(1_000, 0.01);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> puts = new ArrayList<>();
+        // when
+        try {
+            for (int thread = 0; thread < 8; thread++) {
+                int offset = thread;
+                puts.add(executor.submit(() -> IntStream.range(0, 1_000)
+                    .filter(i -> i % 8 == offset)
+                    .forEach(i -> bloomFilter.put("key-" + i))));
+            }
+            for (Future<?> put : puts) {
+                put.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // then
+        assertThat(IntStream.range(0, 1_000).allMatch(i -> bloomFilter.mightContain("key-" + i))).isTrue();
+    }
+}
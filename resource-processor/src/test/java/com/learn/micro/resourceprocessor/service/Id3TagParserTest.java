@@ -0,0 +1,252 @@
+package com.learn.micro.resourceprocessor.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.learn.micro.resourceprocessor.model.Mp3Header;
+import com.learn.micro.resourceprocessor.service.Id3TagParser.Id3Tags;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class Id3TagParserTest {
+
+    private final Id3TagParser id3TagParser = new Id3TagParser();
+
+    /**
+     * Test that an ID3v2.2 tag is read from its 3-character frames with 3-byte sizes.
+     */
+    @Test
+    void parse_shouldReadV22Frames() {
+        // given
+        byte[] tag = Id3.tag(2, 0, Id3.frame(2, "TT2", 0, Id3.text(0, "Title")),
+            Id3.frame(2, "TP1", 0, Id3.text(0, "Artist")), Id3.frame(2, "TAL", 0, Id3.text(0, "Album")),
+            Id3.frame(2, "TYE", 0, Id3.text(0, "1999")));
+        // when
+        Optional<Id3Tags> tags = parse(tag);
+        // then
+        assertThat(tags).contains(new Id3Tags("Title", "Artist", "Album", "1999"));
+    }
+
+    /**
+     * Test that an ID3v2.3 tag is read, with and without an extended header, whose size
+     * excludes its own 4 bytes.
+     */
+    @Test
+    void parse_shouldReadV23Frames_withAndWithoutExtendedHeader() {
+        // given
+        byte[][] frames = {Id3.frame(3, "TIT2", 0, Id3.text(0, "Title")),
+            Id3.frame(3, "TPE1", 0, Id3.text(0, "Artist")), Id3.frame(3, "TALB", 0, Id3.text(0, "Album")),
+            Id3.frame(3, "TYER", 0, Id3.text(0, "2003"))};
+        byte[] extendedHeader = {0, 0, 0, 6, 0, 0, 0, 0, 0, 0};
+        // when
+        Optional<Id3Tags> plain = parse(Id3.tag(3, 0, frames));
+        Optional<Id3Tags> extended = parse(Id3.tag(3, 0x40, Id3.concat(extendedHeader, Id3.concat(frames))));
+        // then
+        assertThat(plain).contains(new Id3Tags("Title", "Artist", "Album", "2003"));
+        assertThat(extended).isEqualTo(plain);
+    }
+
+    /**
+     * Test that an ID3v2.4 tag is read, with and without an extended header, whose synchsafe
+     * size includes itself, and that TDRC gives the year.
+     */
+    @Test
+    void parse_shouldReadV24Frames_withAndWithoutExtendedHeader() {
+        // given
+        byte[][] frames = {Id3.frame(4, "TIT2", 0, Id3.text(3, "Title")),
+            Id3.frame(4, "TPE1", 0, Id3.text(3, "Artist")), Id3.frame(4, "TALB", 0, Id3.text(3, "Album")),
+            Id3.frame(4, "TDRC", 0, Id3.text(3, "2024"))};
+        byte[] extendedHeader = {0, 0, 0, 6, 1, 0};
+        // when
+        Optional<Id3Tags> plain = parse(Id3.tag(4, 0, frames));
+        Optional<Id3Tags> extended = parse(Id3.tag(4, 0x40, Id3.concat(extendedHeader, Id3.concat(frames))));
+        // then
+        assertThat(plain).contains(new Id3Tags("Title", "Artist", "Album", "2024"));
+        assertThat(extended).isEqualTo(plain);
+    }
+
+    /**
+     * Test that the footer announced by the v2.4 flags is not read as frames.
+     */
+    @Test
+    void parse_shouldStopBeforeFooter() {
+        // given
+        byte[] body = Id3.frame(4, "TIT2", 0, Id3.text(0, "Title"));
+        byte[] tag = Id3.tag(4, 0x10, body);
+        byte[] footer = Arrays.copyOf(tag, 10);
+        footer[0] = '3';
+        footer[1] = 'D';
+        footer[2] = 'I';
+        // when
+        Optional<Id3Tags> tags = parse(Id3.concat(tag, footer));
+        // then
+        assertThat(tags).contains(new Id3Tags("Title", null, null, null));
+    }
+
+    /**
+     * Test that UTF-16 with a byte order mark in either order, UTF-16BE and UTF-8 frames are
+     * decoded, and that only the first of several v2.4 values is kept.
+     */
+    @Test
+    void parse_shouldDecodeTextEncodings() {
+        // given
+        byte[] littleEndian = Id3.concat(new byte[]{1, (byte) 0xFF, (byte) 0xFE},
+            Id3.concat("Tîtle".getBytes(StandardCharsets.UTF_16LE), new byte[]{0, 0}));
+        byte[] tag = Id3.tag(4, 0, Id3.frame(4, "TIT2", 0, littleEndian),
+            Id3.frame(4, "TPE1", 0, Id3.text(1, "Ärtist")), Id3.frame(4, "TALB", 0, Id3.text(2, "Albüm")),
+            Id3.frame(4, "TDRC", 0, Id3.concat(Id3.text(3, "2024"), "\u00002025".getBytes(StandardCharsets.UTF_8))));
+        // when
+        Optional<Id3Tags> tags = parse(tag);
+        // then
+        assertThat(tags).contains(new Id3Tags("Tîtle", "Ärtist", "Albüm", "2024"));
+    }
+
+    /**
+     * Test that fields missing from the ID3v2 tag are taken from the ID3v1 tag at the end of the
+     * file, and that a file with only ID3v1 is read from it.
+     */
+    @Test
+    void parse_shouldFillMissingFieldsFromId3v1() {
+        // given
+        byte[] tag = Id3.tag(3, 0, Id3.frame(3, "TIT2", 0, Id3.text(0, "V2 Title")));
+        byte[] v1 = Id3.v1("V1 Title", "V1 Artist", "V1 Album", "1987");
+        // when
+        Optional<Id3Tags> merged = id3TagParser.parse(new Mp3Header(tag, v1, 100_000L));
+        Optional<Id3Tags> v1Only = id3TagParser.parse(new Mp3Header(new byte[4096], v1, 100_000L));
+        // then
+        assertThat(merged).contains(new Id3Tags("V2 Title", "V1 Artist", "V1 Album", "1987"));
+        assertThat(v1Only).contains(new Id3Tags("V1 Title", "V1 Artist", "V1 Album", "1987"));
+    }
+
+    /**
+     * Test that tags the parser does not decode give an empty result: unsynchronised,
+     * compressed (whole v2.2 tag or v2.3/v2.4 frame), encrypted, cut off by the end of the
+     * buffer, with an extended header size that is negative or runs past the tag, or with a
+     * frame running past the tag.
+     */
+    @Test
+    void parse_shouldBeEmpty_whenTagNotDecodable() {
+        byte[] title3 = Id3.text(0, "Title");
+        assertThat(parse(Id3.unsynchronised())).as("unsynchronised").isEmpty();
+        assertThat(parse(Id3.tag(2, 0x40, Id3.frame(2, "TT2", 0, title3)))).as("v2.2 compressed").isEmpty();
+        assertThat(parse(Id3.compressedV23())).as("v2.3 compressed").isEmpty();
+        assertThat(parse(Id3.encryptedV23())).as("v2.3 encrypted").isEmpty();
+        assertThat(parse(Id3.tag(4, 0, Id3.frame(4, "TIT2", 0x08, title3)))).as("v2.4 compressed").isEmpty();
+        assertThat(parse(Id3.tag(4, 0, Id3.frame(4, "TIT2", 0x04, title3)))).as("v2.4 encrypted").isEmpty();
+        assertThat(parse(Id3.truncated())).as("truncated").isEmpty();
+        byte[] title = Id3.frame(3, "TIT2", 0, title3);
+        byte[] negativeExtendedHeader = {(byte) 0x80, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+        assertThat(parse(Id3.tag(3, 0x40, Id3.concat(negativeExtendedHeader, title))))
+            .as("negative extended header size").isEmpty();
+        byte[] oversizedExtendedHeader = {0, 0, 1, 0, 0, 0, 0, 0, 0, 0};
+        assertThat(parse(Id3.tag(3, 0x40, Id3.concat(oversizedExtendedHeader, title))))
+            .as("extended header past the tag").isEmpty();
+        byte[] overrun = Id3.tag(3, 0, Id3.frame(3, "TIT2", 0, title3));
+        overrun[17] = 100;
+        assertThat(parse(overrun)).as("frame past the tag").isEmpty();
+    }
+
+    private Optional<Id3Tags> parse(byte[] head) {
+        return id3TagParser.parse(new Mp3Header(head, new byte[0], head.length));
+    }
+
+    /**
+     * Builds ID3 tags byte by byte.
+     */
+    static final class Id3 {
+
+        private Id3() {
+        }
+
+        static byte[] tag(int majorVersion, int flags, byte[]... frames) {
+            byte[] body = concat(frames);
+            byte[] header = {'I', 'D', '3', (byte) majorVersion, 0, (byte) flags, 0, 0, 0, 0};
+            synchsafe(header, 6, body.length);
+            return concat(header, body);
+        }
+
+        static byte[] frame(int majorVersion, String id, int formatFlags, byte[] body) {
+            if (majorVersion == 2) {
+                byte[] header = Arrays.copyOf(id.getBytes(StandardCharsets.US_ASCII), 6);
+                header[3] = (byte) (body.length >> 16);
+                header[4] = (byte) (body.length >> 8);
+                header[5] = (byte) body.length;
+                return concat(header, body);
+            }
+            byte[] header = Arrays.copyOf(id.getBytes(StandardCharsets.US_ASCII), 10);
+            if (majorVersion == 3) {
+                header[4] = (byte) (body.length >> 24);
+                header[5] = (byte) (body.length >> 16);
+                header[6] = (byte) (body.length >> 8);
+                header[7] = (byte) body.length;
+            } else {
+                synchsafe(header, 4, body.length);
+            }
+            header[9] = (byte) formatFlags;
+            return concat(header, body);
+        }
+
+        static byte[] text(int encoding, String text) {
+            Charset charset = switch (encoding) {
+                case 1 -> StandardCharsets.UTF_16;
+                case 2 -> StandardCharsets.UTF_16BE;
+                case 3 -> StandardCharsets.UTF_8;
+                default -> StandardCharsets.ISO_8859_1;
+            };
+            return concat(new byte[]{(byte) encoding}, text.getBytes(charset));
+        }
+
+        static byte[] v1(String title, String artist, String album, String year) {
+            byte[] tag = new byte[Mp3DurationCalculator.ID3V1_SIZE];
+            put(tag, 0, "TAG");
+            put(tag, 3, title);
+            put(tag, 33, artist);
+            put(tag, 63, album);
+            put(tag, 93, year);
+            return tag;
+        }
+
+        static byte[] unsynchronised() {
+            return tag(3, 0x80, frame(3, "TIT2", 0, text(0, "Title")));
+        }
+
+        static byte[] compressedV23() {
+            return tag(3, 0, frame(3, "TIT2", 0x80, text(0, "Title")));
+        }
+
+        static byte[] encryptedV23() {
+            return tag(3, 0, frame(3, "TIT2", 0x40, text(0, "Title")));
+        }
+
+        /**
+         * A tag of which only the first 20 bytes are there.
+         */
+        static byte[] truncated() {
+            byte[] tag = tag(3, 0, frame(3, "TIT2", 0, text(0, "A title long enough to be cut")));
+            return Arrays.copyOf(tag, 20);
+        }
+
+        static byte[] concat(byte[]... parts) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (byte[] part : parts) {
+                out.writeBytes(part);
+            }
+            return out.toByteArray();
+        }
+
+        private static void synchsafe(byte[] data, int offset, int value) {
+            data[offset] = (byte) (value >> 21 & 0x7F);
+            data[offset + 1] = (byte) (value >> 14 & 0x7F);
+            data[offset + 2] = (byte) (value >> 7 & 0x7F);
+            data[offset + 3] = (byte) (value & 0x7F);
+        }
+
+        private static void put(byte[] data, int offset, String text) {
+            byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+            System.arraycopy(bytes, 0, data, offset, bytes.length);
+        }
+    }
+}
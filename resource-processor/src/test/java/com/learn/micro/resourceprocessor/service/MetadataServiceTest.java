@@ -0,0 +1,84 @@
+package com.learn.micro.resourceprocessor.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceprocessor.model.MetadataDto;
+import com.learn.micro.resourceprocessor.service.Id3TagParserTest.Id3;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.OptionalDouble;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * The duration calculator is stubbed to an hour, so a result with "60:00" came from the fast
+ * path and one with the 7 seconds Tika counts in the test file came from Tika.
+ */
+@ExtendWith(MockitoExtension.class)
+class MetadataServiceTest {
+
+    private static final String FAST_PATH_DURATION = "60:00";
+    private static final String TIKA_DURATION = "00:07";
+
+    @Mock
+    private Mp3DurationCalculator durationCalculator;
+
+    private MetadataService metadataService;
+    private byte[] audio;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        when(durationCalculator.durationSeconds(any())).thenReturn(OptionalDouble.of(3600));
+        metadataService = new MetadataService(new Mp3Sniffer(), new Id3TagParser(), durationCalculator);
+        byte[] file;
+        try (InputStream is = getClass().getResourceAsStream("/test-data/test.mp3")) {
+            file = is.readAllBytes();
+        }
+        audio = Arrays.copyOfRange(file, Mp3DurationCalculator.id3v2Size(file), file.length);
+    }
+
+    /**
+     * Test that a tag the parser decodes is used without Tika.
+     */
+    @Test
+    void extractMetadata_shouldUseTagParser_whenTagDecodable() {
+        // given
+        byte[] tag = Id3.tag(3, 0, Id3.frame(3, "TIT2", 0, Id3.text(0, "Fast Title")));
+        // when
+        MetadataDto metadata = metadataService.extractMetadata(Id3.concat(tag, audio));
+        // then
+        assertThat(metadata.getName()).isEqualTo("Fast Title");
+        assertThat(metadata.getDuration()).isEqualTo(FAST_PATH_DURATION);
+    }
+
+    /**
+     * Test that unsynchronised, compressed and encrypted tags are handed to Tika.
+     */
+    @Test
+    void extractMetadata_shouldFallBackToTika_whenTagNotDecodable() {
+        for (byte[] tag : new byte[][]{Id3.unsynchronised(), Id3.compressedV23(), Id3.encryptedV23()}) {
+            // when
+            MetadataDto metadata = metadataService.extractMetadata(Id3.concat(tag, audio));
+            // then
+            assertThat(metadata.getDuration()).isEqualTo(TIKA_DURATION);
+            assertThat(metadata.getArtist()).isEqualTo("Test Artist");
+        }
+    }
+
+    /**
+     * Test that a file ending inside its tag is handed to Tika, which finds no audio in it.
+     */
+    @Test
+    void extractMetadata_shouldFallBackToTika_whenTagTruncated() {
+        // when
+        MetadataDto metadata = metadataService.extractMetadata(Id3.truncated());
+        // then
+        assertThat(metadata.getDuration()).isNull();
+    }
+}
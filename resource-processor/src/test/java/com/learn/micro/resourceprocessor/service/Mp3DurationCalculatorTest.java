@@ -0,0 +1,193 @@
+package com.learn.micro.resourceprocessor.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.learn.micro.resourceprocessor.model.Mp3Header;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.OptionalDouble;
+import org.junit.jupiter.api.Test;
+
+class Mp3DurationCalculatorTest {
+
+    // MPEG-1 Layer III, 128 kbps, 44.1 kHz, stereo: 417-byte frames of 1152 samples
+    private static final byte[] MPEG1_128K = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00};
+    // MPEG-2 Layer III, 64 kbps, 22.05 kHz, stereo: 208-byte frames of 576 samples
+    private static final byte[] MPEG2_64K = {(byte) 0xFF, (byte) 0xF3, (byte) 0x80, 0x00};
+    // MPEG-2.5 Layer III, 32 kbps, 11.025 kHz, stereo: 208-byte frames of 576 samples
+    private static final byte[] MPEG25_32K = {(byte) 0xFF, (byte) 0xE3, 0x40, 0x00};
+
+    private final Mp3DurationCalculator calculator = new Mp3DurationCalculator();
+
+    /**
+     * Test that a constant bitrate MPEG-1 file without a Xing header is timed from the audio
+     * size, leaving out the ID3v1 tag at the end.
+     */
+    @Test
+    void durationSeconds_shouldUseBitrate_whenMpeg1WithoutXing() {
+        // given
+        byte[] head = frames(MPEG1_128K, 417, 3);
+        long fileLength = 417L * 100 + Mp3DurationCalculator.ID3V1_SIZE;
+        // when
+        OptionalDouble duration = calculator.durationSeconds(new Mp3Header(head, id3v1(), fileLength));
+        // then
+        assertThat(duration).hasValueCloseTo(417 * 100 * 8 / 128_000.0, within(1e-9));
+    }
+
+    /**
+     * Test that the frame count of a Xing header wins over the bitrate, with the header placed
+     * after the 32 bytes of MPEG-1 stereo side information.
+     */
+    @Test
+    void durationSeconds_shouldUseXingFrameCount_whenMpeg1() {
+        // given
+        byte[] head = frames(MPEG1_128K, 417, 3);
+        writeXing(head, 4 + 32, "Xing", 1000);
+        // when
+        OptionalDouble duration = calculator.durationSeconds(new Mp3Header(head, new byte[0], 5_000_000L));
+        // then
+        assertThat(duration).hasValueCloseTo(1000 * 1152 / 44_100.0, within(1e-9));
+    }
+
+    /**
+     * Test that an Info header, which LAME writes for constant bitrate files, is read like
+     * Xing, after the 17 bytes of MPEG-2 side information and with 576 samples per frame.
+     */
+    @Test
+    void durationSeconds_shouldUseInfoFrameCount_whenMpeg2() {
+        // given
+        byte[] head = frames(MPEG2_64K, 208, 3);
+        writeXing(head, 4 + 17, "Info", 500);
+        // when
+        OptionalDouble duration = calculator.durationSeconds(new Mp3Header(head, new byte[0], 5_000_000L));
+        // then
+        assertThat(duration).hasValueCloseTo(500 * 576 / 22_050.0, within(1e-9));
+    }
+
+    /**
+     * Test that the frame count of a VBRI header, written by Fraunhofer encoders 32 bytes after
+     * the frame header, is used when there is no Xing header.
+     */
+    @Test
+    void durationSeconds_shouldUseVbriFrameCount() {
+        // given
+        byte[] head = frames(MPEG1_128K, 417, 3);
+        int tag = 4 + 32;
+        System.arraycopy("VBRI".getBytes(StandardCharsets.US_ASCII), 0, head, tag, 4);
+        ByteBuffer.wrap(head, tag + 14, 4).putInt(2000);
+        // when
+        OptionalDouble duration = calculator.durationSeconds(new Mp3Header(head, new byte[0], 5_000_000L));
+        // then
+        assertThat(duration).hasValueCloseTo(2000 * 1152 / 44_100.0, within(1e-9));
+    }
+
+    /**
+     * Test that MPEG-2.5 frames get a quarter of the MPEG-1 sample rate and the MPEG-2 bitrate
+     * table.
+     */
+    @Test
+    void durationSeconds_shouldUseBitrate_whenMpeg25() {
+        // given
+        byte[] head = frames(MPEG25_32K, 208, 3);
+        // when
+        OptionalDouble duration = calculator.durationSeconds(new Mp3Header(head, new byte[0], 2080L));
+        // then
+        assertThat(duration).hasValueCloseTo(2080 * 8 / 32_000.0, within(1e-9));
+    }
+
+    /**
+     * Test that the first frame is looked for after the ID3v2 tag, including the footer that the
+     * header flags announce.
+     */
+    @Test
+    void durationSeconds_shouldSkipId3v2TagWithFooter() {
+        // given
+        byte[] tag = id3v2Header(30, 0x10);
+        byte[] head = Mp3HeaderReader.concat(Arrays.copyOf(tag, 10 + 30 + 10), frames(MPEG1_128K, 417, 2));
+        long fileLength = 50 + 417L * 10;
+        // when
+        OptionalDouble duration = calculator.durationSeconds(new Mp3Header(head, new byte[0], fileLength));
+        // then
+        assertThat(Mp3DurationCalculator.id3v2Size(head)).isEqualTo(50);
+        assertThat(duration).hasValueCloseTo(417 * 10 * 8 / 128_000.0, within(1e-9));
+    }
+
+    /**
+     * Test that a file shorter than one frame is still timed from its first frame header.
+     */
+    @Test
+    void durationSeconds_shouldUseSingleFrame_whenFileShorterThanFrame() {
+        // given
+        byte[] head = Arrays.copyOf(MPEG1_128K, 100);
+        // when
+        OptionalDouble duration = calculator.durationSeconds(new Mp3Header(head, new byte[0], 100L));
+        // then
+        assertThat(duration).hasValueCloseTo(100 * 8 / 128_000.0, within(1e-9));
+    }
+
+    /**
+     * Test that no duration is given when the head holds no frame header.
+     */
+    @Test
+    void durationSeconds_shouldBeEmpty_whenNoFrame() {
+        // given
+        byte[] head = new byte[4096];
+        // when
+        OptionalDouble duration = calculator.durationSeconds(new Mp3Header(head, new byte[0], 100_000L));
+        // then
+        assertThat(duration).isEmpty();
+    }
+
+    /**
+     * Test that the test file is timed at the 7 seconds the consumer scenario expects.
+     */
+    @Test
+    void durationSeconds_shouldMatchTestFile() throws IOException {
+        // given
+        byte[] file;
+        try (InputStream is = getClass().getResourceAsStream("/test-data/test.mp3")) {
+            file = is.readAllBytes();
+        }
+        byte[] head = Arrays.copyOf(file, Math.min(file.length, Mp3DurationCalculator.id3v2Size(file) + 4096));
+        byte[] tail = Arrays.copyOfRange(file, file.length - Mp3DurationCalculator.ID3V1_SIZE, file.length);
+        // when
+        OptionalDouble duration = calculator.durationSeconds(new Mp3Header(head, tail, file.length));
+        // then
+        assertThat(duration).isPresent();
+        assertThat((int) duration.getAsDouble()).isEqualTo(7);
+    }
+
+    private static byte[] frames(byte[] header, int frameLength, int count) {
+        byte[] data = new byte[frameLength * count];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(header, 0, data, i * frameLength, header.length);
+        }
+        return data;
+    }
+
+    private static void writeXing(byte[] head, int offset, String marker, int frameCount) {
+        System.arraycopy(marker.getBytes(StandardCharsets.US_ASCII), 0, head, offset, 4);
+        ByteBuffer.wrap(head, offset + 4, 8).putInt(0x1).putInt(frameCount);
+    }
+
+    private static byte[] id3v2Header(int size, int flags) {
+        byte[] header = new byte[10 + size];
+        header[0] = 'I';
+        header[1] = 'D';
+        header[2] = '3';
+        header[3] = 4;
+        header[5] = (byte) flags;
+        header[9] = (byte) size;
+        return header;
+    }
+
+    private static byte[] id3v1() {
+        byte[] tag = new byte[Mp3DurationCalculator.ID3V1_SIZE];
+        System.arraycopy("TAG".getBytes(StandardCharsets.US_ASCII), 0, tag, 0, 3);
+        return tag;
+    }
+}
@@ -0,0 +1,125 @@
+package com.learn.micro.resourceprocessor.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceprocessor.model.Mp3Header;
+import com.learn.micro.resourceprocessor.model.ResourceRange;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+
+@ExtendWith(MockitoExtension.class)
+class Mp3HeaderReaderTest {
+
+    private static final String RESOURCE_ID = "1";
+
+    @Mock
+    private ResourceContentReader resourceContentReader;
+
+    private Mp3HeaderReader mp3HeaderReader;
+    private byte[] file;
+
+    @BeforeEach
+    void setUp() {
+        mp3HeaderReader = new Mp3HeaderReader(resourceContentReader, true, DataSize.ofKilobytes(16),
+            DataSize.ofKilobytes(4));
+        when(resourceContentReader.fetchResourceRange(eq(RESOURCE_ID), isNull(), anyString()))
+            .thenAnswer(invocation -> range(invocation.getArgument(2)));
+    }
+
+    /**
+     * Test that a file shorter than the probe is read with the probe alone, without a request
+     * for the tail.
+     */
+    @Test
+    void read_shouldReadProbeOnly_whenFileShorterThanProbe() {
+        // given
+        file = mp3(20, 1000);
+        // when
+        Mp3Header header = mp3HeaderReader.read(RESOURCE_ID, null);
+        // then
+        assertThat(header.head()).isEqualTo(file);
+        assertThat(header.tail()).isEmpty();
+        assertThat(header.fileLength()).isEqualTo(1000);
+        verify(resourceContentReader, times(1)).fetchResourceRange(eq(RESOURCE_ID), isNull(), anyString());
+    }
+
+    /**
+     * Test that a small tag is covered by the probe and only the 128 trailing bytes are read
+     * besides it.
+     */
+    @Test
+    void read_shouldReadProbeAndTail_whenTagFitsProbe() {
+        // given
+        file = mp3(20, 100_000);
+        // when
+        Mp3Header header = mp3HeaderReader.read(RESOURCE_ID, null);
+        // then
+        assertThat(header.head()).isEqualTo(Arrays.copyOf(file, 16 * 1024));
+        assertThat(header.tail()).isEqualTo(Arrays.copyOfRange(file, file.length - 128, file.length));
+        verify(resourceContentReader).fetchResourceRange(RESOURCE_ID, null, "bytes=0-16383");
+        verify(resourceContentReader).fetchResourceRange(RESOURCE_ID, null, "bytes=-128");
+    }
+
+    /**
+     * Test that a tag larger than the probe is read to its end plus the frame window, in one
+     * more request that starts where the probe stopped.
+     */
+    @Test
+    void read_shouldReadRestOfTag_whenTagLargerThanProbe() {
+        // given
+        file = mp3(20_000, 100_000);
+        // when
+        Mp3Header header = mp3HeaderReader.read(RESOURCE_ID, null);
+        // then
+        assertThat(header.head()).isEqualTo(Arrays.copyOf(file, 10 + 20_000 + 4096));
+        verify(resourceContentReader).fetchResourceRange(RESOURCE_ID, null, "bytes=16384-24105");
+        verify(resourceContentReader).fetchResourceRange(RESOURCE_ID, null, "bytes=-128");
+    }
+
+    private ResourceRange range(String range) {
+        String spec = range.substring("bytes=".length());
+        int dash = spec.indexOf('-');
+        int start;
+        int end;
+        if (dash == 0) {
+            start = Math.max(0, file.length - Integer.parseInt(spec.substring(1)));
+            end = file.length;
+        } else {
+            start = Integer.parseInt(spec.substring(0, dash));
+            end = Math.min(file.length, Integer.parseInt(spec.substring(dash + 1)) + 1);
+        }
+        return new ResourceRange(Arrays.copyOfRange(file, start, end), file.length);
+    }
+
+    /**
+     * An ID3v2.4 tag of {@code tagSize} bytes followed by filler up to {@code length} bytes.
+     */
+    private static byte[] mp3(int tagSize, int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        data[0] = 'I';
+        data[1] = 'D';
+        data[2] = '3';
+        data[3] = 4;
+        data[4] = 0;
+        data[5] = 0;
+        data[6] = (byte) (tagSize >> 21 & 0x7F);
+        data[7] = (byte) (tagSize >> 14 & 0x7F);
+        data[8] = (byte) (tagSize >> 7 & 0x7F);
+        data[9] = (byte) (tagSize & 0x7F);
+        return data;
+    }
+}
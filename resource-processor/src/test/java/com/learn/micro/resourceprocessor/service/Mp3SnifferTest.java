@@ -0,0 +1,79 @@
+package com.learn.micro.resourceprocessor.service;
+
+import static com.learn.micro.resourceprocessor.service.MpegFrameHeaderTest.bytes;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class Mp3SnifferTest {
+
+    private final Mp3Sniffer mp3Sniffer = new Mp3Sniffer();
+
+    /**
+     * Test that a file starting with an ID3v2 tag is accepted.
+     */
+    @Test
+    void isMp3_shouldAccept_whenId3v2Tag() throws IOException {
+        // given
+        byte[] content;
+        try (InputStream is = getClass().getResourceAsStream("/test-data/test.mp3")) {
+            content = is.readAllBytes();
+        }
+        // when / then
+        assertThat(mp3Sniffer.isMp3(content)).isTrue();
+        assertThat(mp3Sniffer.isMp3(Arrays.copyOf(content, 10))).isTrue();
+    }
+
+    /**
+     * Test that a file without a tag is accepted when it starts with two consecutive frames,
+     * or with one frame that the buffer does not reach past.
+     */
+    @Test
+    void isMp3_shouldAccept_whenBareFrames() {
+        // given
+        byte[] frames = new byte[418 * 2];
+        System.arraycopy(bytes(0xFF, 0xFB, 0x92, 0xC0), 0, frames, 0, 4);
+        System.arraycopy(bytes(0xFF, 0xFB, 0x92, 0xC0), 0, frames, 418, 4);
+        // when / then
+        assertThat(mp3Sniffer.isMp3(frames)).isTrue();
+        assertThat(mp3Sniffer.isMp3(Arrays.copyOf(frames, 100))).isTrue();
+    }
+
+    /**
+     * Test that text, empty content and frame headers with a bad sync word, the reserved
+     * version or layer, or an invalid bitrate are rejected.
+     */
+    @Test
+    void isMp3_shouldReject_whenNotMp3() {
+        assertThat(mp3Sniffer.isMp3(null)).isFalse();
+        assertThat(mp3Sniffer.isMp3(new byte[0])).isFalse();
+        assertThat(mp3Sniffer.isMp3("not an mp3 file".getBytes(StandardCharsets.US_ASCII))).isFalse();
+        assertThat(mp3Sniffer.isMp3(bytes(0, 1, 2, 3))).isFalse();
+        assertThat(mp3Sniffer.isMp3(frame(0xFF, 0x7B, 0x90, 0x00))).as("bad sync").isFalse();
+        assertThat(mp3Sniffer.isMp3(frame(0xFF, 0xEB, 0x90, 0x00))).as("reserved version").isFalse();
+        assertThat(mp3Sniffer.isMp3(frame(0xFF, 0xF9, 0x90, 0x00))).as("reserved layer").isFalse();
+        assertThat(mp3Sniffer.isMp3(frame(0xFF, 0xFB, 0xF0, 0x00))).as("bad bitrate").isFalse();
+    }
+
+    /**
+     * Test that "ID3" followed by a tag size with the high bit set is not taken for a tag.
+     */
+    @Test
+    void isMp3_shouldReject_whenId3SizeNotSyncsafe() {
+        // given
+        byte[] content = bytes('I', 'D', '3', 4, 0, 0, 0x80, 0, 0, 0, 'x', 'y');
+        // when / then
+        assertThat(mp3Sniffer.isMp3(content)).isFalse();
+    }
+
+    private static byte[] frame(int... header) {
+        byte[] content = new byte[1024];
+        System.arraycopy(bytes(header), 0, content, 0, header.length);
+        Arrays.fill(content, header.length, content.length, (byte) 'a');
+        return content;
+    }
+}
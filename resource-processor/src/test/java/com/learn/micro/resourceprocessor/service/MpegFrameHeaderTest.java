@@ -0,0 +1,98 @@
+package com.learn.micro.resourceprocessor.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class MpegFrameHeaderTest {
+
+    /**
+     * Test that an MPEG-1 Layer III header is parsed into its bitrate, sample rate and a frame
+     * length of 144 * bitrate / sample rate bytes.
+     */
+    @Test
+    void parse_shouldReadMpeg1Layer3() {
+        // when
+        MpegFrameHeader frame = MpegFrameHeader.parse(bytes(0xFF, 0xFB, 0x92, 0xC0), 0);
+        // then
+        assertThat(frame).isEqualTo(new MpegFrameHeader(1, 3, 128, 44_100, 1, true));
+        assertThat(frame.samplesPerFrame()).isEqualTo(1152);
+        assertThat(frame.length()).isEqualTo(418);
+        assertThat(frame.sideInfoSize()).isEqualTo(17);
+    }
+
+    /**
+     * Test that MPEG-2 halves the sample rate, uses the lower bitrate table and 576 samples per
+     * Layer III frame.
+     */
+    @Test
+    void parse_shouldReadMpeg2Layer3() {
+        // when
+        MpegFrameHeader frame = MpegFrameHeader.parse(bytes(0xFF, 0xF3, 0x84, 0x00), 0);
+        // then
+        assertThat(frame).isEqualTo(new MpegFrameHeader(2, 3, 64, 24_000, 0, false));
+        assertThat(frame.samplesPerFrame()).isEqualTo(576);
+        assertThat(frame.length()).isEqualTo(192);
+        assertThat(frame.sideInfoSize()).isEqualTo(17);
+    }
+
+    /**
+     * Test that MPEG-2.5 quarters the sample rate and is reported as version 2.
+     */
+    @Test
+    void parse_shouldReadMpeg25Layer3() {
+        // when
+        MpegFrameHeader frame = MpegFrameHeader.parse(bytes(0xFF, 0xE3, 0x48, 0x00), 0);
+        // then
+        assertThat(frame).isEqualTo(new MpegFrameHeader(2, 3, 32, 8_000, 0, false));
+    }
+
+    /**
+     * Test that a Layer I frame is counted in 4-byte slots.
+     */
+    @Test
+    void parse_shouldReadMpeg1Layer1() {
+        // when
+        MpegFrameHeader frame = MpegFrameHeader.parse(bytes(0xFF, 0xFF, 0x90, 0x00), 0);
+        // then
+        assertThat(frame.layer()).isEqualTo(1);
+        assertThat(frame.bitrateKbps()).isEqualTo(288);
+        assertThat(frame.samplesPerFrame()).isEqualTo(384);
+        assertThat(frame.length()).isEqualTo(312);
+    }
+
+    /**
+     * Test that the header is read at the given offset.
+     */
+    @Test
+    void parse_shouldReadAtOffset() {
+        // when
+        MpegFrameHeader frame = MpegFrameHeader.parse(bytes(0x00, 0x00, 0xFF, 0xFB, 0x90, 0x00), 2);
+        // then
+        assertThat(frame.bitrateKbps()).isEqualTo(128);
+    }
+
+    /**
+     * Test that headers with a broken sync word, the reserved version or layer, a free or bad
+     * bitrate index, the reserved sample rate, or too few bytes are rejected.
+     */
+    @Test
+    void parse_shouldReturnNull_whenHeaderInvalid() {
+        assertThat(MpegFrameHeader.parse(bytes(0xFE, 0xFB, 0x90, 0x00), 0)).as("sync, first byte").isNull();
+        assertThat(MpegFrameHeader.parse(bytes(0xFF, 0xDB, 0x90, 0x00), 0)).as("sync, second byte").isNull();
+        assertThat(MpegFrameHeader.parse(bytes(0xFF, 0xEB, 0x90, 0x00), 0)).as("reserved version").isNull();
+        assertThat(MpegFrameHeader.parse(bytes(0xFF, 0xF9, 0x90, 0x00), 0)).as("reserved layer").isNull();
+        assertThat(MpegFrameHeader.parse(bytes(0xFF, 0xFB, 0x00, 0x00), 0)).as("free bitrate").isNull();
+        assertThat(MpegFrameHeader.parse(bytes(0xFF, 0xFB, 0xF0, 0x00), 0)).as("bad bitrate").isNull();
+        assertThat(MpegFrameHeader.parse(bytes(0xFF, 0xFB, 0x9C, 0x00), 0)).as("reserved sample rate").isNull();
+        assertThat(MpegFrameHeader.parse(bytes(0xFF, 0xFB, 0x90), 0)).as("truncated").isNull();
+    }
+
+    static byte[] bytes(int... values) {
+        byte[] data = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            data[i] = (byte) values[i];
+        }
+        return data;
+    }
+}
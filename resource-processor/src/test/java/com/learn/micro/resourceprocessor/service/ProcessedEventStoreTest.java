@@ -0,0 +1,213 @@
+package com.learn.micro.resourceprocessor.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceprocessor.client.ResourceClient;
+import com.learn.micro.resourceprocessor.client.SongClient;
+import com.learn.micro.resourceprocessor.exception.GeneralFailureException;
+import com.learn.micro.resourceprocessor.kafka.event.EventType;
+import com.learn.micro.resourceprocessor.kafka.event.ResourceEvent;
+import com.learn.micro.resourceprocessor.service.ProcessedEventStore.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ProcessedEventStoreTest {
+
+    private static final ResourceEvent CREATE =
+        new ResourceEvent("1", EventType.CREATE, null, "s3://staging/1.mp3", 100L);
+    private static final ResourceEvent DELETE = new ResourceEvent("1", EventType.DELETE);
+
+    @Mock
+    private SongClient songClient;
+    @Mock
+    private ResourceClient resourceClient;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    /**
+     * Test that an event the filter has not seen is new without any lookup once the recovery
+     * window has passed.
+     */
+    @Test
+    void check_shouldReturnNewWithoutLookup_whenNotSeenAndNotRecovering() {
+        // given
+        ProcessedEventStore store = store(Duration.ZERO);
+        // when
+        Status status = store.check(CREATE);
+        // then
+        assertThat(status).isEqualTo(Status.NEW);
+        verifyNoInteractions(songClient, resourceClient);
+        assertThat(count("new")).isEqualTo(1);
+    }
+
+    /**
+     * Test that during recovery an event the filter has not seen is confirmed, so a CREATE
+     * processed before a restart or by the previous owner of the partition is skipped.
+     */
+    @Test
+    void check_shouldReturnDone_whenNotSeenWhileRecoveringAndSongExists() {
+        // given
+        ProcessedEventStore store = store(Duration.ofMinutes(2));
+        when(songClient.songExists(1)).thenReturn(true);
+        // when
+        Status status = store.check(CREATE);
+        // then
+        assertThat(status).isEqualTo(Status.DONE);
+        assertThat(count("duplicate")).isEqualTo(1);
+    }
+
+    /**
+     * Test that during recovery a CREATE whose song is missing and whose resource still exists
+     * is new.
+     */
+    @Test
+    void check_shouldReturnNew_whenNotSeenWhileRecoveringAndSongMissing() {
+        // given
+        ProcessedEventStore store = store(Duration.ofMinutes(2));
+        when(resourceClient.resourceExists("1")).thenReturn(true);
+        // when
+        Status status = store.check(CREATE);
+        // then
+        assertThat(status).isEqualTo(Status.NEW);
+        assertThat(count("new")).isEqualTo(1);
+    }
+
+    /**
+     * Test that a partition assignment opens the recovery window again.
+     */
+    @Test
+    void check_shouldConfirm_whenRecoveryStartedAgain() {
+        // given
+        ProcessedEventStore store = store(Duration.ofMinutes(2));
+        when(songClient.songExists(1)).thenReturn(true);
+        // when
+        store.startRecovery();
+        // then
+        assertThat(store.check(CREATE)).isEqualTo(Status.DONE);
+    }
+
+    /**
+     * Test that a completed CREATE seen again is a duplicate once the song is confirmed.
+     */
+    @Test
+    void check_shouldReturnDone_whenSeenAndSongExists() {
+        // given
+        ProcessedEventStore store = store(Duration.ZERO);
+        store.markProcessed(CREATE);
+        when(songClient.songExists(1)).thenReturn(true);
+        // when
+        Status status = store.check(CREATE);
+        // then
+        assertThat(status).isEqualTo(Status.DONE);
+        verify(resourceClient, never()).resourceExists(anyString());
+    }
+
+    /**
+     * Test that a hit of the filter for a CREATE whose song is missing is a false positive, and
+     * the event is processed.
+     */
+    @Test
+    void check_shouldReturnNew_whenSeenButSongMissing() {
+        // given
+        ProcessedEventStore store = store(Duration.ZERO);
+        store.markProcessed(CREATE);
+        when(resourceClient.resourceExists("1")).thenReturn(true);
+        // when
+        Status status = store.check(CREATE);
+        // then
+        assertThat(status).isEqualTo(Status.NEW);
+        assertThat(count("false-positive")).isEqualTo(1);
+    }
+
+    /**
+     * Test that a CREATE whose resource was deleted since is superseded, not redone.
+     */
+    @Test
+    void check_shouldReturnSuperseded_whenSongAndResourceMissing() {
+        // given
+        ProcessedEventStore store = store(Duration.ofMinutes(2));
+        // when
+        Status status = store.check(CREATE);
+        // then
+        assertThat(status).isEqualTo(Status.SUPERSEDED);
+        assertThat(count("superseded")).isEqualTo(1);
+    }
+
+    /**
+     * Test that a DELETE is done when the song is gone and new while it is still stored,
+     * without asking resource-service.
+     */
+    @Test
+    void check_shouldDecideDeleteBySong() {
+        // given
+        ProcessedEventStore store = store(Duration.ofMinutes(2));
+        when(songClient.songExists(1)).thenReturn(false, true);
+        // when / then
+        assertThat(store.check(DELETE)).isEqualTo(Status.DONE);
+        assertThat(store.check(DELETE)).isEqualTo(Status.NEW);
+        verifyNoInteractions(resourceClient);
+    }
+
+    /**
+     * Test that the key carries the content version: another version of the same resource is
+     * not found in the filter.
+     */
+    @Test
+    void check_shouldNotMatchOtherVersion() {
+        // given
+        ProcessedEventStore store = store(Duration.ZERO);
+        store.markProcessed(CREATE);
+        // when
+        Status status = store.check(new ResourceEvent("1", EventType.CREATE, null, "s3://staging/other.mp3", 100L));
+        // then
+        assertThat(status).isEqualTo(Status.NEW);
+        verifyNoInteractions(songClient);
+    }
+
+    /**
+     * Test that a failed lookup is rethrown instead of being taken for a missing song.
+     */
+    @Test
+    void check_shouldRethrow_whenLookupFails() {
+        // given
+        ProcessedEventStore store = store(Duration.ofMinutes(2));
+        when(songClient.songExists(any())).thenThrow(new GeneralFailureException("song-service unavailable"));
+        // when / then
+        assertThatThrownBy(() -> store.check(DELETE)).isInstanceOf(GeneralFailureException.class);
+    }
+
+    /**
+     * Test that nothing is checked when idempotency is disabled.
+     */
+    @Test
+    void check_shouldReturnNew_whenDisabled() {
+        // given
+        ProcessedEventStore store = new ProcessedEventStore(songClient, resourceClient, meterRegistry, false,
+            1_000, 0.01, Duration.ofMinutes(2));
+        store.markProcessed(CREATE);
+        // when / then
+        assertThat(store.check(CREATE)).isEqualTo(Status.NEW);
+        verifyNoInteractions(songClient, resourceClient);
+    }
+
+    private ProcessedEventStore store(Duration recoveryWindow) {
+        return new ProcessedEventStore(songClient, resourceClient, meterRegistry, true, 1_000, 0.01,
+            recoveryWindow);
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("resource.events.idempotency", "result", result).count();
+    }
+}
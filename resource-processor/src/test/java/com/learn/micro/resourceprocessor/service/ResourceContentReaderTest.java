@@ -0,0 +1,95 @@
+package com.learn.micro.resourceprocessor.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceprocessor.client.ResourceClient;
+import com.learn.micro.resourceprocessor.client.S3ResourceClient;
+import com.learn.micro.resourceprocessor.model.ResourceRange;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+@ExtendWith(MockitoExtension.class)
+class ResourceContentReaderTest {
+
+    private static final String LOCATION = "s3://staging-bucket/files/song.mp3";
+    private static final byte[] CONTENT = {1, 2, 3, 4};
+
+    @Mock
+    private ResourceClient resourceClient;
+    @Mock
+    private S3ResourceClient s3ResourceClient;
+    @Mock
+    private ObjectProvider<S3ResourceClient> s3ResourceClientProvider;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ResourceContentReader contentReader;
+
+    @BeforeEach
+    void setUp() {
+        when(s3ResourceClientProvider.getIfAvailable()).thenReturn(s3ResourceClient);
+        contentReader = new ResourceContentReader(resourceClient, s3ResourceClientProvider, meterRegistry);
+    }
+
+    /**
+     * Test that content read from the bucket is returned without calling resource-service.
+     */
+    @Test
+    void fetchResource_shouldReadFromBucket_whenDirectReadSucceeds() {
+        // given
+        when(s3ResourceClient.fetchObject(LOCATION)).thenReturn(Optional.of(CONTENT));
+        // when
+        byte[] content = contentReader.fetchResource("1", LOCATION);
+        // then
+        assertThat(content).isEqualTo(CONTENT);
+        verifyNoInteractions(resourceClient);
+        assertThat(fetches("s3")).isEqualTo(1.0);
+    }
+
+    /**
+     * Test that a range the bucket could not serve is read through resource-service.
+     */
+    @Test
+    void fetchResourceRange_shouldFallBackToResourceService_whenDirectReadFails() {
+        // given
+        ResourceRange range = new ResourceRange(CONTENT, 100);
+        when(s3ResourceClient.fetchRange(LOCATION, "bytes=0-3")).thenReturn(Optional.empty());
+        when(resourceClient.fetchResourceRange("1", "bytes=0-3")).thenReturn(range);
+        // when
+        ResourceRange fetched = contentReader.fetchResourceRange("1", LOCATION, "bytes=0-3");
+        // then
+        assertThat(fetched).isSameAs(range);
+        assertThat(fetches("resource-service")).isEqualTo(1.0);
+    }
+
+    /**
+     * Test that an event without an S3 location is read through resource-service only.
+     */
+    @Test
+    void fetchResource_shouldReadFromResourceService_whenLocationMissing() {
+        // given
+        when(resourceClient.fetchResource("1")).thenReturn(CONTENT);
+        // when
+        byte[] content = contentReader.fetchResource("1", null);
+        // then
+        assertThat(content).isEqualTo(CONTENT);
+        verify(s3ResourceClient, never()).fetchObject(any());
+        verify(s3ResourceClient, never()).fetchRange(any(), anyString());
+        assertThat(fetches("resource-service")).isEqualTo(1.0);
+    }
+
+    private double fetches(String source) {
+        return meterRegistry.get("resource.fetch").tag("source", source).counter().count();
+    }
+}
@@ -0,0 +1,30 @@
+package com.learn.micro.resourceservice.client;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code DELETE /actuator/storagecache[/{storageType}]}: drops cached storage descriptors of
+ * {@link StorageClient} after a storage was changed in storage-service, instead of waiting for
+ * the next refresh.
+ */
+@Component
+@Endpoint(id = "storagecache")
+@RequiredArgsConstructor
+public class StorageCacheEndpoint {
+
+    private final StorageClient storageClient;
+
+    @DeleteOperation
+    public void invalidateAll() {
+        storageClient.invalidateAll();
+    }
+
+    @DeleteOperation
+    public void invalidate(@Selector String storageType) {
+        storageClient.invalidate(storageType);
+    }
+}
@@ -1,32 +1,115 @@
 package com.learn.micro.resourceservice.client;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.learn.micro.resourceservice.exception.GeneralFailureException;
 import com.learn.micro.resourceservice.model.Storage;
+import com.learn.micro.resourceservice.service.MessageHelper;
 import com.learn.micro.resourceservice.service.ServiceProvider;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
-import lombok.RequiredArgsConstructor;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.text.MessageFormat;
+import java.time.Duration;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
+/**
+ * Storage descriptors rarely change, so they are served from a bounded local cache.
+ * Entries are refreshed in the background once {@code refresh-after} has passed and expire
+ * after {@code ttl}. When storage-service cannot be reached the last known descriptor is served.
+ * Loads run as futures rather than inside the cache's map lock, so callers on virtual threads
+ * wait on the HTTP call without pinning their carrier thread.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class StorageClient {
 
     private static final String STORAGE_SERVICE = "storage-service";
     private static final String STORAGE_CB = "storageServiceCircuitBreaker";
+    private static final String STORAGE_CACHE = "storageDescriptors";
     private final RestTemplate restTemplate;
     private final ServiceProvider serviceProvider;
+    private final MessageHelper messageHelper;
+    private final CircuitBreaker circuitBreaker;
+    private final AsyncLoadingCache<String, Storage> storageCache;
+    private final Cache<String, Storage> lastKnownStorages;
+    private final Counter staleServedCounter;
+
+    public StorageClient(RestTemplate restTemplate, ServiceProvider serviceProvider,
+        MessageHelper messageHelper, CircuitBreakerRegistry circuitBreakerRegistry,
+        MeterRegistry meterRegistry,
+        @Value("${app.storage.cache.ttl:30m}") Duration ttl,
+        @Value("${app.storage.cache.refresh-after:5m}") Duration refreshAfter,
+        @Value("${app.storage.cache.max-size:100}") long maxSize) {
+        this.restTemplate = restTemplate;
+        this.serviceProvider = serviceProvider;
+        this.messageHelper = messageHelper;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(STORAGE_CB);
+        this.storageCache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .refreshAfterWrite(refreshAfter)
+            .expireAfterWrite(ttl)
+            .recordStats()
+            .buildAsync(this::loadStorage);
+        this.lastKnownStorages = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .build();
+        this.staleServedCounter = Counter.builder("storage.cache.stale.served")
+            .description("Storage descriptors served from the last known value after a failed load")
+            .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, storageCache, STORAGE_CACHE);
+    }
 
-    @CircuitBreaker(name = STORAGE_CB, fallbackMethod = "fetchStorageFallback")
     public Storage fetchStorage(String storageType) {
+        try {
+            return storageCache.get(storageType).join();
+        } catch (RuntimeException e) {
+            Storage lastKnown = lastKnownStorages.getIfPresent(storageType);
+            if (lastKnown == null) {
+                log.error("Storage Service unavailable and no cached storage for type: {}", storageType, e);
+                throw new GeneralFailureException(MessageFormat.format(
+                    messageHelper.getMessage("server.error.no.service"), STORAGE_SERVICE), e);
+            }
+            log.warn("Storage Service unavailable, serving last known storage for type: {}. Reason: {}",
+                storageType, e.getMessage());
+            staleServedCounter.increment();
+            return lastKnown;
+        }
+    }
+
+    /**
+     * Drops the cached descriptor so the next lookup goes to storage-service.
+     * The last known value is kept and is still served if that lookup fails.
+     */
+    public void invalidate(String storageType) {
+        log.info("Invalidating cached storage for type {}", storageType);
+        storageCache.synchronous().invalidate(storageType);
+    }
+
+    public void invalidateAll() {
+        log.info("Invalidating all cached storages");
+        storageCache.synchronous().invalidateAll();
+    }
+
+    private Storage loadStorage(String storageType) {
+        Storage storage = circuitBreaker.executeSupplier(() -> requestStorage(storageType));
+        lastKnownStorages.put(storageType, storage);
+        return storage;
+    }
+
+    private Storage requestStorage(String storageType) {
         log.info("Fetching storage for type {}", storageType);
         ServiceInstance storageService = serviceProvider.getServiceInstance(STORAGE_SERVICE);
         String url = storageService.getUri() + "/storages/type/" + storageType;
         log.info("Fetching storage from url: {}", url);
-        log.info("Storage URL: {}", url);
         ResponseEntity<Storage> response =
             restTemplate.getForEntity(url, Storage.class);
         if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
@@ -35,13 +118,4 @@ public class StorageClient {
         throw new IllegalStateException(
             "Failed to fetch storage from Storage Service: " + storageType);
     }
-
-    public Storage fetchStorageFallback(String storageType, Throwable throwable) {
-        log.warn("Storage Service unavailable, returning stub data for type: {}. Reason: {}", storageType, throwable.getMessage());
-        return Storage.builder()
-            .storageType(storageType)
-            .bucket(storageType.toLowerCase() + "-bucket")
-            .path("/files")
-            .build();
-    }
 }
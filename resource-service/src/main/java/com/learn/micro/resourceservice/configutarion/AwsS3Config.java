@@ -1,13 +1,19 @@
 package com.learn.micro.resourceservice.configutarion;
 
 import java.net.URI;
+import java.time.Duration;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3Configuration;
 
@@ -29,4 +35,30 @@ public class AwsS3Config {
                         S3Configuration.builder().pathStyleAccessEnabled(true).build())
                 .build();
     }
+
+    /**
+     * Netty based client for {@code app.s3.client=async}. Requests are multiplexed over a few
+     * event loop threads, so max-concurrency rather than the thread count bounds what is in flight.
+     * SDK retries are off; S3AsyncServiceImpl retries with its own jittered backoff.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.s3.client", havingValue = "async")
+    public S3AsyncClient s3AsyncClient(AwsProperties awsProperties,
+        @Value("${app.s3.async.max-concurrency:500}") int maxConcurrency,
+        @Value("${app.s3.async.acquire-timeout:30s}") Duration acquireTimeout) {
+        return S3AsyncClient.builder()
+                .region(Region.of(awsProperties.getRegion()))
+                .endpointOverride(URI.create(awsProperties.getEndpoint()))
+                .credentialsProvider(StaticCredentialsProvider.create(
+                    AwsBasicCredentials.create(
+                        awsProperties.getCredentials().getAccessKey(),
+                        awsProperties.getCredentials().getSecretKey())))
+                .serviceConfiguration(
+                        S3Configuration.builder().pathStyleAccessEnabled(true).build())
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConcurrency)
+                        .connectionAcquisitionTimeout(acquireTimeout))
+                .overrideConfiguration(override -> override.retryPolicy(RetryPolicy.none()))
+                .build();
+    }
 }
@@ -1,15 +1,22 @@
 package com.learn.micro.resourceservice.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.learn.micro.resourceservice.model.DeleteResourceResponse;
 import com.learn.micro.resourceservice.model.GetResourceResponse;
@@ -26,18 +33,48 @@ import lombok.extern.slf4j.Slf4j;
 public class ResourceController {
 
     private final ResourceService resourceService;
+
+    @Value("${app.upload.streaming-enabled:true}")
+    private boolean streamingUploadEnabled;
+
     @GetMapping("/{id}")
-    public ResponseEntity<byte[]> findById(@PathVariable("id") String id) {
-        log.info("Inside ResourceService Controller: Getting resource with Id: {}", id);
-        GetResourceResponse result = resourceService.findById(id);
-        return ResponseEntity.ok().contentType(MediaType.valueOf("audio/mpeg"))
-            .body(result.content());
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> findById(@PathVariable("id") String id,
+        @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+        @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange) {
+        log.info("Inside ResourceService Controller: Getting resource with Id: {}, range: {}", id, range);
+        // The request thread is released while S3 answers; the body is streamed on an async dispatch
+        return resourceService.findById(id, range, ifRange).thenApply(this::toStreamingResponse);
+    }
+
+    private ResponseEntity<StreamingResponseBody> toStreamingResponse(GetResourceResponse result) {
+        StreamingResponseBody body = outputStream -> {
+            try (InputStream content = result.content()) {
+                content.transferTo(outputStream);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity
+            .status(result.isPartial() ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+            .contentType(MediaType.valueOf("audio/mpeg"))
+            .contentLength(result.contentLength())
+            .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (result.eTag() != null) {
+            response.eTag(result.eTag());
+        }
+        if (result.isPartial()) {
+            response.header(HttpHeaders.CONTENT_RANGE, result.contentRange());
+        }
+        return response.body(body);
     }
 
     @PostMapping
-    public ResponseEntity<UploadResourceResponse> upload(@RequestBody byte[] fileContent) {
-        log.info("Inside ResourceService Controller: Saving new resource");
-        UploadResourceResponse result = resourceService.save(fileContent);
+    public ResponseEntity<UploadResourceResponse> upload(InputStream fileContent,
+        @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength)
+        throws IOException {
+        log.info("Inside ResourceService Controller: Saving new resource, streaming={}",
+            streamingUploadEnabled);
+        UploadResourceResponse result = streamingUploadEnabled
+            ? resourceService.save(fileContent, contentLength != null ? contentLength : -1L)
+            : resourceService.save(fileContent.readAllBytes());
         return ResponseEntity.ok(result);
     }
 
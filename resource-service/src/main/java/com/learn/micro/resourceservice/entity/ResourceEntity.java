@@ -28,4 +28,10 @@ public class ResourceEntity {
 
     @Column(name = "stage", nullable = false)
     private String stage;
+
+    /**
+     * SHA-256 of the file content, hex encoded. Resources with the same hash share one S3 object.
+     */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
 }
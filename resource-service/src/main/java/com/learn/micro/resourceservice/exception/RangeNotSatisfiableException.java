@@ -0,0 +1,12 @@
+package com.learn.micro.resourceservice.exception;
+
+public class RangeNotSatisfiableException extends RuntimeException {
+
+    public RangeNotSatisfiableException(String message) {
+        super(message);
+    }
+
+    public RangeNotSatisfiableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -13,6 +13,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import com.learn.micro.resourceservice.exception.GeneralFailureException;
+import com.learn.micro.resourceservice.exception.RangeNotSatisfiableException;
 import com.learn.micro.resourceservice.exception.SimpleErrorResponse;
 import com.learn.micro.resourceservice.exception.ValidationErrorResponse;
 
@@ -37,6 +38,14 @@ public class MainExceptionHandler {
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
     }
 
+    @ExceptionHandler(RangeNotSatisfiableException.class)
+    public ResponseEntity<SimpleErrorResponse> handleRangeNotSatisfiableException(
+        RangeNotSatisfiableException e) {
+        SimpleErrorResponse errorResponse = new SimpleErrorResponse(e.getMessage(),
+            HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).body(errorResponse);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ValidationErrorResponse> handleValidationException(
         MethodArgumentNotValidException e) {
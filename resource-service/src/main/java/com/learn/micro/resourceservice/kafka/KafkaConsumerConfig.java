@@ -6,8 +6,11 @@ import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
@@ -20,6 +23,7 @@ import org.springframework.kafka.support.serializer.JsonDeserializer;
 public class KafkaConsumerConfig {
 
     private final KafkaProperties kafkaProperties;
+    private final Environment environment;
 
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
@@ -27,8 +31,15 @@ public class KafkaConsumerConfig {
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
 
-    public KafkaConsumerConfig(KafkaProperties kafkaProperties) {
+    /**
+     * Initial consumers of resourceProcessedListener, changed at runtime when autoscaling is on.
+     */
+    @Value("${app.kafka.consumer.concurrency:1}")
+    private int concurrency;
+
+    public KafkaConsumerConfig(KafkaProperties kafkaProperties, Environment environment) {
         this.kafkaProperties = kafkaProperties;
+        this.environment = environment;
     }
 
     @Bean
@@ -53,6 +64,13 @@ public class KafkaConsumerConfig {
         ConcurrentKafkaListenerContainerFactory<String, ResourceEvent> factory =
             new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(concurrency);
+        if (Threading.VIRTUAL.isActive(environment)) {
+            // Boot only applies virtual threads to the factory it configures itself
+            SimpleAsyncTaskExecutor listenerExecutor = new SimpleAsyncTaskExecutor("kafka-listener-");
+            listenerExecutor.setVirtualThreads(true);
+            factory.getContainerProperties().setListenerTaskExecutor(listenerExecutor);
+        }
         return factory;
     }
 }
\ No newline at end of file
@@ -15,6 +15,9 @@ import org.springframework.kafka.support.serializer.JsonSerializer;
 @Configuration
 public class KafkaProducerConfig {
 
+    // The most an idempotent producer allows while still keeping order
+    private static final int MAX_IN_FLIGHT_REQUESTS = 5;
+
     private final KafkaProperties kafkaProperties;
 
     public KafkaProducerConfig(KafkaProperties kafkaProperties) {
@@ -26,6 +29,10 @@ public class KafkaProducerConfig {
         Map<String, Object> props = kafkaProperties.buildProducerProperties();
         props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        // Broker-side retries of a batch can neither duplicate nor reorder the events of a resource
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, MAX_IN_FLIGHT_REQUESTS);
         return new DefaultKafkaProducerFactory<>(props);
     }
 
@@ -0,0 +1,27 @@
+package com.learn.micro.resourceservice.kafka;
+
+import com.learn.micro.resourceservice.kafka.ListenerConcurrencyAutoscaler.Decision;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /actuator/listenerconcurrency}: the latest decision of
+ * {@link ListenerConcurrencyAutoscaler} for every listener it manages.
+ */
+@Component
+@Endpoint(id = "listenerconcurrency")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.kafka.autoscaling.enabled", havingValue = "true")
+public class ListenerConcurrencyEndpoint {
+
+    private final ListenerConcurrencyAutoscaler autoscaler;
+
+    @ReadOperation
+    public Map<String, Decision> listeners() {
+        return autoscaler.decisions();
+    }
+}
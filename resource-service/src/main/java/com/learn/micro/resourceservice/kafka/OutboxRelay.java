@@ -0,0 +1,200 @@
+package com.learn.micro.resourceservice.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learn.micro.resourceservice.entity.OutboxEventEntity;
+import com.learn.micro.resourceservice.kafka.event.ResourceEvent;
+import com.learn.micro.resourceservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.RetriableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Drains the outbox table to Kafka. Each pass locks the oldest rows and sends them in rounds:
+ * a round sends the next row of every resource, flushes and waits for the broker acks, so a row
+ * is only sent once the previous row of its resource was acknowledged. A failed send stops its
+ * resource for the rest of the pass; nothing after it goes out, so the next pass resumes at the
+ * failed row and per-resource order survives retries. Acknowledged rows are deleted in the same
+ * transaction.
+ * <p>
+ * A row that fails because of itself, a payload that cannot be read or a record the broker
+ * rejects, counts an attempt; after {@code app.outbox.relay.max-attempts} it is dead-lettered:
+ * marked failed, kept for inspection and skipped, so it no longer holds back its resource or,
+ * piled up at the head of the table, the whole outbox. Timeouts and retriable broker errors are
+ * not held against the row, so an outage does not dead-letter the rows waiting it out.
+ * <p>
+ * The rows stay locked while their sends are awaited, up to {@code app.outbox.relay.send-timeout}
+ * per round. The lock only holds off the relays of other instances, which take turns on the
+ * oldest rows anyway; requests insert new rows and never wait on it. Keep the timeout short:
+ * a send that times out is simply retried by the next pass.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(value = "app.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ResourceProducer resourceProducer;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final int maxAttempts;
+    private final Counter publishedCounter;
+    private final Counter failedCounter;
+    private final Counter deadLetteredCounter;
+    private final Timer batchTimer;
+    private final AtomicReference<Instant> oldestPending = new AtomicReference<>();
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+        ResourceProducer resourceProducer,
+        ObjectMapper objectMapper,
+        TransactionTemplate transactionTemplate,
+        MeterRegistry meterRegistry,
+        @Value("${app.outbox.relay.batch-size:500}") int batchSize,
+        @Value("${app.outbox.relay.send-timeout:10s}") Duration sendTimeout,
+        @Value("${app.outbox.relay.max-attempts:10}") int maxAttempts) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.resourceProducer = resourceProducer;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        this.maxAttempts = maxAttempts;
+        this.publishedCounter = meterRegistry.counter("outbox.relay.events", "result", "published");
+        this.failedCounter = meterRegistry.counter("outbox.relay.events", "result", "failed");
+        this.deadLetteredCounter = meterRegistry.counter("outbox.relay.events", "result", "dead-lettered");
+        this.batchTimer = meterRegistry.timer("outbox.relay.batch");
+        Gauge.builder("outbox.relay.lag", this, OutboxRelay::lagSeconds)
+            .description("Age of the oldest event still waiting in the outbox")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.relay.linger:200ms}")
+    public void relay() {
+        // Keep draining while batches come back full and make progress, then wait for the next tick
+        boolean drainMore = true;
+        while (drainMore) {
+            drainMore = Boolean.TRUE.equals(
+                batchTimer.record(() -> transactionTemplate.execute(status -> relayBatch())));
+        }
+    }
+
+    private boolean relayBatch() {
+        List<OutboxEventEntity> batch = outboxEventRepository.findOldestForRelay(PageRequest.of(0, batchSize));
+        oldestPending.set(batch.isEmpty() ? null : batch.get(0).getCreatedAt());
+        if (batch.isEmpty()) {
+            return false;
+        }
+        Map<String, Deque<OutboxEventEntity>> pendingByResource = new LinkedHashMap<>();
+        for (OutboxEventEntity outboxEvent : batch) {
+            pendingByResource.computeIfAbsent(outboxEvent.getResourceId(), id -> new ArrayDeque<>())
+                .add(outboxEvent);
+        }
+        List<Long> delivered = new ArrayList<>(batch.size());
+        int blockedResources = 0;
+        while (!pendingByResource.isEmpty()) {
+            List<OutboxEventEntity> round = pendingByResource.values().stream().map(Deque::poll).toList();
+            List<CompletableFuture<?>> sends = round.stream().map(this::send).toList();
+            resourceProducer.flush();
+            for (int i = 0; i < round.size(); i++) {
+                OutboxEventEntity outboxEvent = round.get(i);
+                if (awaitSend(outboxEvent, sends.get(i))) {
+                    delivered.add(outboxEvent.getId());
+                } else {
+                    pendingByResource.remove(outboxEvent.getResourceId());
+                    blockedResources++;
+                }
+            }
+            pendingByResource.values().removeIf(Deque::isEmpty);
+        }
+        outboxEventRepository.deleteAllByIdInBatch(delivered);
+        publishedCounter.increment(delivered.size());
+        if (blockedResources > 0) {
+            log.warn("Outbox relay left {} resources pending after send failures", blockedResources);
+        }
+        return batch.size() == batchSize && !delivered.isEmpty();
+    }
+
+    private CompletableFuture<?> send(OutboxEventEntity outboxEvent) {
+        try {
+            ResourceEvent event = objectMapper.readValue(outboxEvent.getPayload(), ResourceEvent.class);
+            return resourceProducer.send(event, outboxEvent.getTraceId());
+        } catch (JsonProcessingException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private boolean awaitSend(OutboxEventEntity outboxEvent, CompletableFuture<?> send) {
+        try {
+            send.get(sendTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedCounter.increment();
+        } catch (TimeoutException e) {
+            log.error("Timed out relaying outbox event {} for resourceId={}", outboxEvent.getId(),
+                outboxEvent.getResourceId());
+            failedCounter.increment();
+        } catch (ExecutionException e) {
+            log.error("Failed to relay outbox event {} for resourceId={}", outboxEvent.getId(),
+                outboxEvent.getResourceId(), e);
+            failedCounter.increment();
+            if (!isTransient(e.getCause())) {
+                countAttempt(outboxEvent);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts a failure caused by the row, dead-lettering it once it reaches max-attempts. The
+     * managed entity is written when the pass commits.
+     */
+    private void countAttempt(OutboxEventEntity outboxEvent) {
+        outboxEvent.setAttempts(outboxEvent.getAttempts() + 1);
+        if (outboxEvent.getAttempts() >= maxAttempts) {
+            outboxEvent.setFailedAt(Instant.now());
+            deadLetteredCounter.increment();
+            log.error("Dead-lettered outbox event {} for resourceId={} after {} attempts", outboxEvent.getId(),
+                outboxEvent.getResourceId(), outboxEvent.getAttempts());
+        }
+    }
+
+    private static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RetriableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double lagSeconds() {
+        Instant oldest = oldestPending.get();
+        return oldest == null ? 0 : Duration.between(oldest, Instant.now()).toMillis() / 1000.0;
+    }
+}
@@ -9,7 +9,9 @@ import com.learn.micro.resourceservice.logging.TraceContext;
 import com.learn.micro.resourceservice.model.Storage;
 import com.learn.micro.resourceservice.repository.ResourceRepository;
 import com.learn.micro.resourceservice.service.MessageHelper;
+import com.learn.micro.resourceservice.service.Mp3ContentCache;
 import com.learn.micro.resourceservice.service.S3Service;
+import java.util.List;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -30,8 +32,10 @@ public class ResourceConsumer {
     private final S3Service s3Service;
     private final StorageClient storageClient;
     private final MessageHelper messageHelper;
+    private final Mp3ContentCache mp3ContentCache;
 
-    @KafkaListener(topics = "${app.kafka.processor-topic}", groupId = "${spring.kafka.consumer.group-id}")
+    @KafkaListener(id = "resourceProcessedListener", topics = "${app.kafka.processor-topic}",
+        groupId = "${spring.kafka.consumer.group-id}")
     @Transactional
     public void handleResourceProcessed(ResourceEvent event, @Header(value = "X-Trace-Id", required = false) String traceId) {
         if (traceId == null || traceId.isEmpty()) {
@@ -49,17 +53,21 @@ public class ResourceConsumer {
         }
         try {
             int resourceId = Integer.parseInt(event.resourceId());
-            ResourceEntity resource = resourceRepository.findById(resourceId)
+            ResourceEntity resource = resourceRepository.findForUpdateById(resourceId)
                 .orElseThrow(() -> new IllegalStateException("Resource not found: " + resourceId));
             if (!STAGING_STORAGE.equals(resource.getStage())) {
                 log.warn("Resource {} is not in STAGING state, skipping move.", resourceId);
                 return;
             }
+            // Deduplicated resources share the object; locking them all keeps a concurrent upload
+            // from linking to the old location while it is being moved
+            String oldLocation = resource.getS3Location();
+            resourceRepository.findForUpdateByS3Location(oldLocation);
             Storage permanentStorage = storageClient.fetchStorage(PERMANENT_STORAGE);
-            String newLocation = s3Service.moveFile(resource.getS3Location(), permanentStorage);
-            resource.setS3Location(newLocation);
-            resource.setStage(permanentStorage.storageType());
-            resourceRepository.save(resource);
+            String newLocation = s3Service.moveFile(oldLocation, permanentStorage);
+            int relocated = resourceRepository.relocate(oldLocation, newLocation, permanentStorage.storageType());
+            mp3ContentCache.invalidate(List.of(oldLocation));
+            log.info("Moved {} to {} for {} resources", oldLocation, newLocation, relocated);
             log.info("Resource {} successfully moved to PERMANENT storage.", resourceId);
         } catch (Exception e) {
             log.error("Failed to process ResourceEvent: {}", event, e);
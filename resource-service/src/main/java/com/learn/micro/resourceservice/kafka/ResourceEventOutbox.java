@@ -0,0 +1,62 @@
+package com.learn.micro.resourceservice.kafka;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learn.micro.resourceservice.entity.OutboxEventEntity;
+import com.learn.micro.resourceservice.exception.GeneralFailureException;
+import com.learn.micro.resourceservice.kafka.event.ResourceEvent;
+import com.learn.micro.resourceservice.logging.TraceContext;
+import com.learn.micro.resourceservice.repository.OutboxEventRepository;
+import java.time.Instant;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Records resource events in the outbox table as part of the caller's transaction.
+ * {@link OutboxRelay} publishes them to Kafka once that transaction has committed.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ResourceEventOutbox {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(ResourceEvent event) {
+        enqueueAll(List.of(event));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueAll(List<ResourceEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        String traceId = TraceContext.getTraceId();
+        Instant now = Instant.now();
+        List<OutboxEventEntity> outboxEvents = events.stream()
+            .map(event -> OutboxEventEntity.builder()
+                .resourceId(event.resourceId())
+                .eventType(event.eventType().name())
+                .payload(toJson(event))
+                .traceId(traceId)
+                .createdAt(now)
+                .build())
+            .toList();
+        outboxEventRepository.saveAll(outboxEvents);
+        log.info("Stored {} resource events in the outbox", outboxEvents.size());
+    }
+
+    private String toJson(ResourceEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new GeneralFailureException("Failed to serialize resource event", e);
+        }
+    }
+}
@@ -1,13 +1,15 @@
 package com.learn.micro.resourceservice.kafka;
 
 import com.learn.micro.resourceservice.kafka.event.ResourceEvent;
-import com.learn.micro.resourceservice.logging.TraceContext;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeader;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 
 @Slf4j
@@ -20,14 +22,21 @@ public class ResourceProducer {
     @Value("${app.kafka.topic}")
     private String topic;
 
-    public void publish(ResourceEvent event) {
-        String traceId = TraceContext.getTraceId();
-        log.info("Inside ResourceProducer: Sending resourceId {} to Kafka topic {}", event.resourceId(), topic);
+    /**
+     * Sends the event keyed by resourceId, so all events of one resource land on the same
+     * partition in the order they are sent. The trace id is the one captured when the event
+     * was recorded, not the caller's.
+     */
+    public CompletableFuture<SendResult<String, ResourceEvent>> send(ResourceEvent event, String traceId) {
+        log.debug("Inside ResourceProducer: Sending resourceId {} to Kafka topic {}", event.resourceId(), topic);
         ProducerRecord<String, ResourceEvent> producerRecord = new ProducerRecord<>(topic, event.resourceId(), event);
         if (traceId != null) {
-            producerRecord.headers().add(new org.apache.kafka.common.header.internals.RecordHeader(
-                "X-Trace-Id", traceId.getBytes(StandardCharsets.UTF_8)));
+            producerRecord.headers().add(new RecordHeader("X-Trace-Id", traceId.getBytes(StandardCharsets.UTF_8)));
         }
-        kafkaTemplate.send(producerRecord);
+        return kafkaTemplate.send(producerRecord);
+    }
+
+    public void flush() {
+        kafkaTemplate.flush();
     }
 }
@@ -2,10 +2,26 @@ package com.learn.micro.resourceservice.kafka.event;
 
 import java.util.Objects;
 
-public record ResourceEvent(String resourceId, EventType eventType){
+/**
+ * @param sourceResourceId set on CREATE when the upload was deduplicated: the resource whose
+ *                         stored content, and therefore extracted metadata, this one shares
+ * @param s3Location       set on CREATE for a new upload: where the file is stored, as
+ *                         {@code s3://bucket/key}; absent in events from older producers
+ * @param size             length of the file in bytes, when known
+ */
+public record ResourceEvent(String resourceId, EventType eventType, String sourceResourceId,
+    String s3Location, Long size){
 
     public ResourceEvent {
         Objects.requireNonNull(resourceId);
         Objects.requireNonNull(eventType);
     }
+
+    public ResourceEvent(String resourceId, EventType eventType) {
+        this(resourceId, eventType, null);
+    }
+
+    public ResourceEvent(String resourceId, EventType eventType, String sourceResourceId) {
+        this(resourceId, eventType, sourceResourceId, null, null);
+    }
 }
@@ -1,4 +1,14 @@
 package com.learn.micro.resourceservice.model;
 
-public record GetResourceResponse(byte[] content) {
+import java.io.InputStream;
+
+/**
+ * Open handle on stored MP3 content. {@code contentRange} is only set for partial (206) responses.
+ */
+public record GetResourceResponse(InputStream content, long contentLength, String contentRange,
+                                  String eTag) {
+
+    public boolean isPartial() {
+        return contentRange != null;
+    }
 }
@@ -0,0 +1,22 @@
+package com.learn.micro.resourceservice.repository;
+
+import com.learn.micro.resourceservice.entity.OutboxEventEntity;
+import jakarta.persistence.LockModeType;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEventEntity, Long> {
+
+    /**
+     * Oldest pending events first, leaving out dead-lettered ones. The row lock makes concurrent
+     * relays take turns, which keeps events for the same resource in order across instances.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM OutboxEventEntity o WHERE o.failedAt IS NULL ORDER BY o.id")
+    List<OutboxEventEntity> findOldestForRelay(Pageable pageable);
+}
@@ -1,12 +1,43 @@
 package com.learn.micro.resourceservice.repository;
+import jakarta.persistence.LockModeType;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.learn.micro.resourceservice.entity.ResourceEntity;
 
 @Repository
-public interface ResourceRepository extends JpaRepository<ResourceEntity, Integer> {
+public interface ResourceRepository extends JpaRepository<ResourceEntity, Integer>,
+    ResourceRepositoryCustom {
 
-    List<ResourceEntity> findAllByIdIn(List<Integer> ids);
+    /**
+     * Finds a resource already holding this content. The shared lock makes a concurrent delete
+     * or move of that resource wait until the new reference has been committed.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    Optional<ResourceEntity> findFirstByContentHashOrderByIdAsc(String contentHash);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<ResourceEntity> findForUpdateById(Integer id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<ResourceEntity> findForUpdateByS3Location(String s3Location);
+
+    /**
+     * Of the given locations, those still referenced by at least one resource.
+     */
+    @Query("SELECT DISTINCT r.s3Location FROM ResourceEntity r WHERE r.s3Location IN :locations")
+    List<String> findReferencedLocations(@Param("locations") Collection<String> locations);
+
+    @Modifying
+    @Query("UPDATE ResourceEntity r SET r.s3Location = :newLocation, r.stage = :stage "
+        + "WHERE r.s3Location = :oldLocation")
+    int relocate(@Param("oldLocation") String oldLocation, @Param("newLocation") String newLocation,
+        @Param("stage") String stage);
 }
@@ -0,0 +1,12 @@
+package com.learn.micro.resourceservice.repository;
+
+import com.learn.micro.resourceservice.entity.ResourceEntity;
+import java.util.List;
+
+public interface ResourceRepositoryCustom {
+
+    /**
+     * Deletes the given ids in a single statement and returns the rows that were actually removed.
+     */
+    List<ResourceEntity> deleteAllByIdInReturning(List<Integer> ids);
+}
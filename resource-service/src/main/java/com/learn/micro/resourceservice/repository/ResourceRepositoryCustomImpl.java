@@ -0,0 +1,33 @@
+package com.learn.micro.resourceservice.repository;
+
+import com.learn.micro.resourceservice.entity.ResourceEntity;
+import java.util.List;
+import java.util.Map;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+public class ResourceRepositoryCustomImpl implements ResourceRepositoryCustom {
+
+    private static final String DELETE_RETURNING =
+        "DELETE FROM resource WHERE id IN (:ids) RETURNING id, s3_location, stage";
+    private static final RowMapper<ResourceEntity> RESOURCE_ROW_MAPPER = (rs, rowNum) ->
+        ResourceEntity.builder()
+            .id(rs.getInt("id"))
+            .s3Location(rs.getString("s3_location"))
+            .stage(rs.getString("stage"))
+            .build();
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public ResourceRepositoryCustomImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<ResourceEntity> deleteAllByIdInReturning(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(DELETE_RETURNING, Map.of("ids", ids), RESOURCE_ROW_MAPPER);
+    }
+}
@@ -0,0 +1,350 @@
+package com.learn.micro.resourceservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.learn.micro.resourceservice.exception.RangeNotSatisfiableException;
+import com.learn.micro.resourceservice.model.GetResourceResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Keeps the bytes of recently read MP3 files, keyed by S3 location, so popular tracks are not
+ * fetched from S3 on every request. The memory tier is a Caffeine cache weighed by size
+ * (W-TinyLFU eviction). With {@code app.cache.mp3.disk.enabled} entries evicted from memory
+ * are spilled to local files and served from a memory-mapped view.
+ * <p>
+ * Only whole-object reads populate the cache, as they are streamed to the client; ranged
+ * reads are answered from a cached copy when there is one. Of concurrent cold reads of the same
+ * object only one captures it, into a single array of the known length; the others stream
+ * straight through.
+ */
+@Slf4j
+@Component
+public class Mp3ContentCache {
+
+    private static final String MEMORY_CACHE = "mp3Memory";
+    private static final String DISK_CACHE = "mp3Disk";
+    // A claim outlives its stream only if the stream is never closed
+    private static final Duration CLAIM_TIMEOUT = Duration.ofMinutes(5);
+    private final boolean enabled;
+    private final long maxEntrySize;
+    private final Path diskPath;
+    private final Cache<String, CachedMp3> memoryTier;
+    private final Cache<String, DiskEntry> diskTier;
+    private final Map<String, Boolean> populatingLocations = Caffeine.newBuilder()
+        .expireAfterWrite(CLAIM_TIMEOUT)
+        .<String, Boolean>build()
+        .asMap();
+
+    public Mp3ContentCache(MeterRegistry meterRegistry,
+        @Value("${app.cache.mp3.enabled:true}") boolean enabled,
+        @Value("${app.cache.mp3.memory-size:256MB}") DataSize memorySize,
+        @Value("${app.cache.mp3.max-entry-size:16MB}") DataSize maxEntrySize,
+        @Value("${app.cache.mp3.disk.enabled:false}") boolean diskEnabled,
+        @Value("${app.cache.mp3.disk.path:${java.io.tmpdir}/resource-service/mp3-cache}") Path diskPath,
+        @Value("${app.cache.mp3.disk.size:2GB}") DataSize diskSize) {
+        this.enabled = enabled;
+        this.maxEntrySize = Math.min(maxEntrySize.toBytes(), Integer.MAX_VALUE);
+        this.diskPath = diskEnabled ? prepareDiskPath(diskPath) : null;
+        this.diskTier = diskEnabled
+            ? Caffeine.newBuilder()
+                .maximumWeight(diskSize.toBytes())
+                .weigher((String location, DiskEntry entry) -> entry.length())
+                .removalListener((String location, DiskEntry entry, RemovalCause cause) -> deleteFile(entry))
+                .recordStats()
+                .build()
+            : null;
+        this.memoryTier = Caffeine.newBuilder()
+            .maximumWeight(memorySize.toBytes())
+            .weigher((String location, CachedMp3 entry) -> entry.content().remaining())
+            .removalListener(this::spillToDisk)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memoryTier, MEMORY_CACHE);
+        if (diskTier != null) {
+            CaffeineCacheMetrics.monitor(meterRegistry, diskTier, DISK_CACHE);
+        }
+    }
+
+    public Optional<CachedMp3> get(String s3Location) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        CachedMp3 cached = memoryTier.getIfPresent(s3Location);
+        if (cached == null && diskTier != null) {
+            DiskEntry diskEntry = diskTier.getIfPresent(s3Location);
+            cached = diskEntry != null ? map(diskEntry) : null;
+        }
+        return Optional.ofNullable(cached);
+    }
+
+    /**
+     * Wraps a whole-object response so its bytes are cached once they have been read to the end.
+     * Objects above {@code max-entry-size}, partial responses and reads of an object another
+     * reader is already capturing pass through untouched.
+     */
+    public GetResourceResponse populating(String s3Location, GetResourceResponse response) {
+        if (!enabled || response.isPartial() || response.contentLength() < 0
+            || response.contentLength() > maxEntrySize
+            || populatingLocations.putIfAbsent(s3Location, Boolean.TRUE) != null) {
+            return response;
+        }
+        InputStream content = new CapturingInputStream(response.content(), (int) response.contentLength(),
+            bytes -> memoryTier.put(s3Location, new CachedMp3(ByteBuffer.wrap(bytes), response.eTag())),
+            () -> populatingLocations.remove(s3Location));
+        return new GetResourceResponse(content, response.contentLength(), response.contentRange(),
+            response.eTag());
+    }
+
+    public void invalidate(Collection<String> s3Locations) {
+        memoryTier.invalidateAll(s3Locations);
+        if (diskTier != null) {
+            diskTier.invalidateAll(s3Locations);
+        }
+    }
+
+    public void invalidateAll() {
+        memoryTier.invalidateAll();
+        if (diskTier != null) {
+            diskTier.invalidateAll();
+        }
+    }
+
+    private void spillToDisk(String s3Location, CachedMp3 entry, RemovalCause cause) {
+        if (diskTier == null || cause != RemovalCause.SIZE || s3Location == null || entry == null) {
+            return;
+        }
+        try {
+            Path file = Files.createTempFile(diskPath, "mp3-", ".bin");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ByteBuffer content = entry.content().duplicate();
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+            }
+            diskTier.put(s3Location, new DiskEntry(file, entry.eTag(), entry.content().remaining()));
+        } catch (IOException e) {
+            log.warn("Failed to spill cached {} to disk", s3Location, e);
+        }
+    }
+
+    private CachedMp3 map(DiskEntry entry) {
+        try (FileChannel channel = FileChannel.open(entry.path(), StandardOpenOption.READ)) {
+            return new CachedMp3(channel.map(FileChannel.MapMode.READ_ONLY, 0, entry.length()), entry.eTag());
+        } catch (IOException e) {
+            log.warn("Failed to map cached file {}", entry.path(), e);
+            return null;
+        }
+    }
+
+    private static void deleteFile(DiskEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(entry.path());
+        } catch (IOException e) {
+            log.warn("Failed to delete cached file {}", entry.path(), e);
+        }
+    }
+
+    /**
+     * The disk index lives in memory, so files left by a previous run are unreachable and removed.
+     */
+    private static Path prepareDiskPath(Path diskPath) {
+        try {
+            Files.createDirectories(diskPath);
+            try (Stream<Path> leftovers = Files.list(diskPath)) {
+                for (Path file : leftovers.toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            log.info("MP3 disk cache at {}", diskPath);
+            return diskPath;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot use MP3 disk cache directory " + diskPath, e);
+        }
+    }
+
+    /**
+     * Cached file content, on heap or memory-mapped, plus the entity tag S3 returned for it.
+     */
+    public record CachedMp3(ByteBuffer content, String eTag) {
+
+        /**
+         * Whether a ranged read conditional on this If-Range can be answered from the cache. An
+         * entity tag is compared with the cached one; a date would have to be compared with the
+         * modification time, which is not kept, so such reads go to S3, which checks it.
+         */
+        public static boolean canEvaluate(String ifRange) {
+            return ifRange == null || ifRange.isBlank() || ifRange.startsWith("\"") || ifRange.startsWith("W/");
+        }
+
+        /**
+         * Builds the response for a read served from the cache, honouring a single byte range
+         * and an If-Range entity tag the same way the S3 read does. Several ranges, a weak or
+         * non-matching entity tag and a date give the whole object.
+         */
+        public GetResourceResponse toResponse(String range, String ifRange) {
+            int length = content.remaining();
+            boolean rangeApplies = range != null && (ifRange == null || ifRange.isBlank() || ifRange.equals(eTag));
+            List<HttpRange> ranges = rangeApplies ? HttpRange.parseRanges(range) : List.of();
+            if (ranges.size() != 1) {
+                return new GetResourceResponse(new ByteBufferInputStream(content.duplicate()), length, null, eTag);
+            }
+            long first;
+            long last;
+            try {
+                first = ranges.get(0).getRangeStart(length);
+                last = ranges.get(0).getRangeEnd(length);
+            } catch (IllegalArgumentException e) {
+                throw new RangeNotSatisfiableException("Requested range not satisfiable: " + range, e);
+            }
+            ByteBuffer slice = content.duplicate();
+            slice.position(content.position() + (int) first).limit(content.position() + (int) last + 1);
+            return new GetResourceResponse(new ByteBufferInputStream(slice), last - first + 1,
+                "bytes " + first + "-" + last + "/" + length, eTag);
+        }
+    }
+
+    private record DiskEntry(Path path, String eTag, int length) {
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Copies the bytes as they are read into an array of the expected length and hands it over
+     * only when the stream was read to the end with exactly that length; an aborted download is
+     * never cached. The claim on the location is released once the copy is handed over or given up.
+     */
+    private static final class CapturingInputStream extends FilterInputStream {
+
+        private final Consumer<byte[]> onComplete;
+        private final Runnable onRelease;
+        private byte[] captured;
+        private int position;
+
+        private CapturingInputStream(InputStream in, int expectedLength, Consumer<byte[]> onComplete,
+            Runnable onRelease) {
+            super(in);
+            this.captured = new byte[expectedLength];
+            this.onComplete = onComplete;
+            this.onRelease = onRelease;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value >= 0) {
+                capture(new byte[] {(byte) value}, 0, 1);
+            } else {
+                complete();
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            int count = super.read(target, offset, length);
+            if (count > 0) {
+                capture(target, offset, count);
+            } else if (count < 0) {
+                complete();
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes would leave a hole in the copy
+            release();
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            release();
+            super.close();
+        }
+
+        private void capture(byte[] source, int offset, int count) {
+            if (captured == null) {
+                return;
+            }
+            if (position + count > captured.length) {
+                release();
+                return;
+            }
+            System.arraycopy(source, offset, captured, position, count);
+            position += count;
+        }
+
+        private void complete() {
+            if (captured != null && position == captured.length) {
+                onComplete.accept(captured);
+            }
+            release();
+        }
+
+        private void release() {
+            if (captured != null) {
+                captured = null;
+                onRelease.run();
+            }
+        }
+    }
+}
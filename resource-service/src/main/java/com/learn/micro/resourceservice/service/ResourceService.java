@@ -1,14 +1,28 @@
 package com.learn.micro.resourceservice.service;
 
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+
 import com.learn.micro.resourceservice.model.DeleteResourceResponse;
 import com.learn.micro.resourceservice.model.GetResourceResponse;
 import com.learn.micro.resourceservice.model.UploadResourceResponse;
 
 public interface ResourceService {
 
-    GetResourceResponse findById(String id);
+    /**
+     * Validation and the database lookup happen on the calling thread; the future completes
+     * when S3 has answered, without holding the caller while it waits.
+     */
+    CompletableFuture<GetResourceResponse> findById(String id, String range, String ifRange);
 
     UploadResourceResponse save(byte[] fileContent);
 
+    /**
+     * Streams the request body straight to S3 without buffering the whole file on heap.
+     *
+     * @param contentLength body length in bytes, or a negative value when it is unknown (chunked)
+     */
+    UploadResourceResponse save(InputStream fileContent, long contentLength);
+
     DeleteResourceResponse delete(String id);
 }
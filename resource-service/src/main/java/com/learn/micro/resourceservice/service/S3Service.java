@@ -1,14 +1,50 @@
 package com.learn.micro.resourceservice.service;
 
+import com.learn.micro.resourceservice.model.GetResourceResponse;
 import com.learn.micro.resourceservice.model.Storage;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface S3Service {
 
     String uploadMp3File(byte[] fileContent, Storage storage);
 
-    byte[] downloadMp3File(String path, Storage storage);
+    String uploadMp3File(InputStream fileContent, long contentLength, Storage storage);
+
+    /**
+     * Opens the object for streaming. The caller owns the returned stream and must close it.
+     *
+     * @param range   single byte range in HTTP form (e.g. {@code bytes=0-1023}), or null for the whole object
+     * @param ifRange entity tag or HTTP date the range is conditional on; a mismatch returns the whole object
+     */
+    GetResourceResponse downloadMp3File(String path, Storage storage, String range, String ifRange);
+
+    /**
+     * Non-blocking variant of {@link #downloadMp3File}; the future completes once the object
+     * headers have arrived. Blocking implementations complete it on the calling thread.
+     */
+    default CompletableFuture<GetResourceResponse> downloadMp3FileAsync(String path, Storage storage,
+        String range, String ifRange) {
+        return CompletableFuture.completedFuture(downloadMp3File(path, storage, range, ifRange));
+    }
 
     void deleteMp3File(String path, Storage storage);
 
+    /**
+     * Removes the objects with S3 DeleteObjects, up to 1000 keys per request.
+     *
+     * @return the locations that were deleted; failures are logged and left out
+     */
+    List<String> deleteMp3Files(List<String> paths, Storage storage);
+
+    default CompletableFuture<List<String>> deleteMp3FilesAsync(List<String> paths, Storage storage) {
+        return CompletableFuture.completedFuture(deleteMp3Files(paths, storage));
+    }
+
     String moveFile(String currentLocation, Storage targetStorage);
+
+    default CompletableFuture<String> moveFileAsync(String currentLocation, Storage targetStorage) {
+        return CompletableFuture.completedFuture(moveFile(currentLocation, targetStorage));
+    }
 }
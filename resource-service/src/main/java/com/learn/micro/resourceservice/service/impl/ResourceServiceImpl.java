@@ -3,7 +3,7 @@ package com.learn.micro.resourceservice.service.impl;
 import com.learn.micro.resourceservice.client.StorageClient;
 import com.learn.micro.resourceservice.entity.ResourceEntity;
 import com.learn.micro.resourceservice.exception.GeneralFailureException;
-import com.learn.micro.resourceservice.kafka.ResourceProducer;
+import com.learn.micro.resourceservice.kafka.ResourceEventOutbox;
 import com.learn.micro.resourceservice.kafka.event.EventType;
 import com.learn.micro.resourceservice.kafka.event.ResourceEvent;
 import com.learn.micro.resourceservice.mapper.ResourceMapper;
@@ -13,15 +13,31 @@ import com.learn.micro.resourceservice.model.Storage;
 import com.learn.micro.resourceservice.model.UploadResourceResponse;
 import com.learn.micro.resourceservice.repository.ResourceRepository;
 import com.learn.micro.resourceservice.service.MessageHelper;
+import com.learn.micro.resourceservice.service.Mp3ContentCache;
 import com.learn.micro.resourceservice.service.ResourceService;
 import com.learn.micro.resourceservice.service.S3Service;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.springframework.http.HttpRange;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,30 +48,37 @@ public class ResourceServiceImpl implements ResourceService {
 
     private static final String STAGING_STORAGE = "STAGING";
     private static final String PERMANENT_STORAGE = "PERMANENT";
+    private static final int MP3_HEADER_LENGTH = 3;
+    private static final String CONTENT_HASH_ALGORITHM = "SHA-256";
+    private static final String DEDUP_METRIC = "resource.upload.dedup";
     private final ResourceRepository resourceRepository;
     private final ResourceMapper resourceMapper;
-    private final ResourceProducer resourceProducer;
+    private final ResourceEventOutbox resourceEventOutbox;
     private final MessageHelper messageHelper;
     private final S3Service s3Service;
     private final StorageClient storageClient;
+    private final MeterRegistry meterRegistry;
+    private final Mp3ContentCache mp3ContentCache;
 
     @Override
     @Transactional
     public UploadResourceResponse save(byte[] fileContent) {
-        if (!isValidMp3(fileContent)) {
+        if (fileContent == null || !isValidMp3(fileContent, fileContent.length)) {
             throw new IllegalArgumentException(messageHelper.getMessage("validation.mp3.invalid"));
         }
         ResourceEntity savedResource;
         try {
-            Storage stagingStorage = storageClient.fetchStorage(STAGING_STORAGE);
-            String fullPath = s3Service.uploadMp3File(fileContent, stagingStorage);
-            ResourceEntity resourceEntity = new ResourceEntity();
-            resourceEntity.setS3Location(fullPath);
-            resourceEntity.setStage(stagingStorage.storageType());
-            savedResource = resourceRepository.save(resourceEntity);
-            ResourceEvent event = new ResourceEvent(String.valueOf(savedResource.getId()), EventType.CREATE);
-            resourceProducer.publish(event);
-            log.info("File uploaded to STAGING and event published for resourceId={}", savedResource.getId());
+            MessageDigest digest = newContentDigest();
+            String contentHash = HexFormat.of().formatHex(digest.digest(fileContent));
+            Optional<ResourceEntity> existing = findSameContent(contentHash);
+            if (existing.isPresent()) {
+                savedResource = saveDuplicate(existing.get(), contentHash);
+            } else {
+                Storage stagingStorage = storageClient.fetchStorage(STAGING_STORAGE);
+                String fullPath = s3Service.uploadMp3File(fileContent, stagingStorage);
+                savedResource = saveStagedResource(fullPath, stagingStorage, contentHash,
+                    (long) fileContent.length);
+            }
         } catch (Exception e) {
             log.error("Error while saving resource", e);
             throw new GeneralFailureException(messageHelper.getMessage("server.error.general"));
@@ -64,7 +87,120 @@ public class ResourceServiceImpl implements ResourceService {
     }
 
     @Override
-    public GetResourceResponse findById(String id) {
+    @Transactional
+    public UploadResourceResponse save(InputStream fileContent, long contentLength) {
+        BufferedInputStream bufferedContent = new BufferedInputStream(fileContent);
+        byte[] header = peekHeader(bufferedContent);
+        if (!isValidMp3(header, header.length)) {
+            throw new IllegalArgumentException(messageHelper.getMessage("validation.mp3.invalid"));
+        }
+        ResourceEntity savedResource;
+        try {
+            Storage stagingStorage = storageClient.fetchStorage(STAGING_STORAGE);
+            MessageDigest digest = newContentDigest();
+            String fullPath = s3Service.uploadMp3File(hashing(bufferedContent, digest), contentLength,
+                stagingStorage);
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+            Optional<ResourceEntity> existing = findSameContent(contentHash);
+            if (existing.isPresent()) {
+                // The hash is only known once the body has been streamed, so the copy is dropped afterwards
+                discardUpload(fullPath, stagingStorage);
+                savedResource = saveDuplicate(existing.get(), contentHash);
+            } else {
+                savedResource = saveStagedResource(fullPath, stagingStorage, contentHash,
+                    contentLength >= 0 ? contentLength : null);
+            }
+        } catch (Exception e) {
+            log.error("Error while streaming resource to storage", e);
+            throw new GeneralFailureException(messageHelper.getMessage("server.error.general"));
+        }
+        return resourceMapper.mapEntityToUploadResourceDto(savedResource);
+    }
+
+    /**
+     * The CREATE event carries the S3 location and size, so the processor can read the object
+     * from the bucket itself rather than through this service.
+     */
+    private ResourceEntity saveStagedResource(String fullPath, Storage stagingStorage, String contentHash,
+        Long size) {
+        ResourceEntity resourceEntity = new ResourceEntity();
+        resourceEntity.setS3Location(fullPath);
+        resourceEntity.setStage(stagingStorage.storageType());
+        resourceEntity.setContentHash(contentHash);
+        ResourceEntity savedResource = resourceRepository.save(resourceEntity);
+        ResourceEvent event = new ResourceEvent(String.valueOf(savedResource.getId()), EventType.CREATE,
+            null, fullPath, size);
+        resourceEventOutbox.enqueue(event);
+        log.info("File uploaded to STAGING and event queued for resourceId={}", savedResource.getId());
+        return savedResource;
+    }
+
+    /**
+     * Links a new resource to the S3 object of an existing one with the same content. The CREATE
+     * event names the existing resource so the processor can copy its metadata instead of
+     * downloading and parsing the file again.
+     */
+    private ResourceEntity saveDuplicate(ResourceEntity existing, String contentHash) {
+        ResourceEntity savedResource = resourceRepository.save(ResourceEntity.builder()
+            .s3Location(existing.getS3Location())
+            .stage(existing.getStage())
+            .contentHash(contentHash)
+            .build());
+        resourceEventOutbox.enqueue(new ResourceEvent(String.valueOf(savedResource.getId()), EventType.CREATE,
+            String.valueOf(existing.getId())));
+        log.info("Upload of resourceId={} matches resourceId={}, linked to {}", savedResource.getId(),
+            existing.getId(), existing.getS3Location());
+        return savedResource;
+    }
+
+    private Optional<ResourceEntity> findSameContent(String contentHash) {
+        Optional<ResourceEntity> existing = resourceRepository.findFirstByContentHashOrderByIdAsc(contentHash);
+        meterRegistry.counter(DEDUP_METRIC, "result", existing.isPresent() ? "hit" : "miss").increment();
+        return existing;
+    }
+
+    private void discardUpload(String fullPath, Storage stagingStorage) {
+        try {
+            s3Service.deleteMp3File(fullPath, stagingStorage);
+        } catch (RuntimeException e) {
+            log.warn("Failed to remove duplicate upload {}, the object is left unreferenced", fullPath, e);
+        }
+    }
+
+    private static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(CONTENT_HASH_ALGORITHM + " is not available", e);
+        }
+    }
+
+    /**
+     * Hashes the bytes as S3 reads them. Mark/reset is disabled so a client-side retry buffer
+     * cannot feed the same bytes into the digest twice.
+     */
+    private static InputStream hashing(InputStream content, MessageDigest digest) {
+        return new DigestInputStream(content, digest) {
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+
+    private byte[] peekHeader(BufferedInputStream content) {
+        try {
+            content.mark(MP3_HEADER_LENGTH);
+            byte[] header = content.readNBytes(MP3_HEADER_LENGTH);
+            content.reset();
+            return header;
+        } catch (IOException e) {
+            throw new GeneralFailureException("Failed to read uploaded content", e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<GetResourceResponse> findById(String id, String range, String ifRange) {
         if (!isValidId(id)) {
             throw new IllegalArgumentException(
                 MessageFormat.format(messageHelper.getMessage("validation.id.invalid"), id));
@@ -75,34 +211,84 @@ public class ResourceServiceImpl implements ResourceService {
             s3Location = resourceRepository.findById(resourceId)
                 .orElseThrow(() -> new ResourceNotFoundException(MessageFormat.format
                     (messageHelper.getMessage("error.resource.not.found"), id))).getS3Location();
+        } catch (ResourceNotFoundException e) {
+            // Answered with 404, which resource-processor reads as a deleted resource
+            throw e;
         } catch (Exception e) {
             throw new GeneralFailureException("Failed to download MP3 from S3: ", e);
         }
+        String s3Range = toSingleS3Range(range);
+        Optional<Mp3ContentCache.CachedMp3> cached = s3Range == null || Mp3ContentCache.CachedMp3.canEvaluate(ifRange)
+            ? mp3ContentCache.get(s3Location)
+            : Optional.empty();
+        if (cached.isPresent()) {
+            log.debug("Serving resourceId={} from the content cache", resourceId);
+            return CompletableFuture.completedFuture(cached.get().toResponse(s3Range, ifRange));
+        }
         Storage storage = storageClient.fetchStorage(STAGING_STORAGE);
-        return new GetResourceResponse(s3Service.downloadMp3File(s3Location, storage));
+        CompletableFuture<GetResourceResponse> download =
+            s3Service.downloadMp3FileAsync(s3Location, storage, s3Range, ifRange);
+        return s3Range == null
+            ? download.thenApply(response -> mp3ContentCache.populating(s3Location, response))
+            : download;
     }
 
     @Override
     @Transactional
     public DeleteResourceResponse delete(String ids) {
         List<Integer> idsToDelete = parseAndValidateIds(ids);
+        List<ResourceEntity> deletedResources = resourceRepository.deleteAllByIdInReturning(idsToDelete);
+        if (deletedResources.isEmpty()) {
+            return new DeleteResourceResponse(List.of());
+        }
+        // Deduplicated resources share objects: an object is only removed once no resource points at it
+        Set<String> locations = deletedResources.stream()
+            .map(ResourceEntity::getS3Location)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+        Set<String> releasedLocations = new HashSet<>(resourceRepository.findReferencedLocations(locations));
+        List<String> unreferencedLocations = locations.stream()
+            .filter(location -> !releasedLocations.contains(location))
+            .toList();
+        if (!unreferencedLocations.isEmpty()) {
+            Storage storage = storageClient.fetchStorage(STAGING_STORAGE);
+            List<String> deletedLocations = s3Service.deleteMp3Files(unreferencedLocations, storage);
+            mp3ContentCache.invalidate(deletedLocations);
+            releasedLocations.addAll(deletedLocations);
+        }
         List<Integer> deletedIds = new ArrayList<>();
-        List<ResourceEntity> filesToDelete = resourceRepository.findAllByIdIn(idsToDelete);
-        for (ResourceEntity entityToDelete : filesToDelete) {
-                try {
-                    resourceRepository.deleteById(entityToDelete.getId());
-                    Storage storage = storageClient.fetchStorage(STAGING_STORAGE);
-                    s3Service.deleteMp3File(entityToDelete.getS3Location(), storage);
-                    ResourceEvent event = new ResourceEvent(String.valueOf(entityToDelete.getId()), EventType.DELETE);
-                    resourceProducer.publish(event);
-                    deletedIds.add(entityToDelete.getId());
-                } catch (Exception e) {
-                    log.error("Failed to delete file with ID: {}", entityToDelete.getId(), e);
-                }
+        List<ResourceEvent> events = new ArrayList<>();
+        for (ResourceEntity deletedResource : deletedResources) {
+            if (releasedLocations.contains(deletedResource.getS3Location())) {
+                deletedIds.add(deletedResource.getId());
+                events.add(new ResourceEvent(String.valueOf(deletedResource.getId()), EventType.DELETE));
+            } else {
+                log.error("Failed to delete file with ID: {}, location: {}", deletedResource.getId(),
+                    deletedResource.getS3Location());
+            }
         }
+        resourceEventOutbox.enqueueAll(events);
         return new DeleteResourceResponse(deletedIds);
     }
 
+    /**
+     * S3 only serves a single range per GetObject; multi-range requests are answered with the
+     * whole object, which RFC 9110 allows. A Range header that cannot be parsed is ignored, as
+     * RFC 9110 requires, and the whole object is read as well.
+     */
+    private String toSingleS3Range(String range) {
+        if (range == null || range.isBlank()) {
+            return null;
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            log.debug("Ignoring malformed Range header: {}", range);
+            return null;
+        }
+        return ranges.size() == 1 ? "bytes=" + ranges.get(0) : null;
+    }
+
     private void validateIds(String ids) {
         if (ids.length() >= 200) {
             throw new IllegalArgumentException(
@@ -128,11 +314,14 @@ public class ResourceServiceImpl implements ResourceService {
                 .toList();
     }
 
-    private boolean isValidMp3(byte[] fileContent) {
-        if (fileContent == null || fileContent.length == 0) {
+    private boolean isValidMp3(byte[] header, int length) {
+        if (length < MP3_HEADER_LENGTH) {
             return false;
         }
-        // Check for "ID3" tag at the start (common in MP3 files)
-        return fileContent[0] == 'I' && fileContent[1] == 'D' && fileContent[2] == '3';
+        // Either an "ID3" tag at the start (common in MP3 files) or a bare MPEG audio frame sync
+        boolean id3Tag = header[0] == 'I' && header[1] == 'D' && header[2] == '3';
+        boolean frameSync = (header[0] & 0xFF) == 0xFF && (header[1] & 0xE0) == 0xE0
+            && (header[1] & 0x18) != 0x08 && (header[1] & 0x06) != 0x00;
+        return id3Tag || frameSync;
     }
 }
@@ -0,0 +1,463 @@
+package com.learn.micro.resourceservice.service.impl;
+
+import static com.learn.micro.resourceservice.service.impl.S3ServiceImpl.PREFIX;
+
+import com.learn.micro.resourceservice.exception.GeneralFailureException;
+import com.learn.micro.resourceservice.exception.RangeNotSatisfiableException;
+import com.learn.micro.resourceservice.model.GetResourceResponse;
+import com.learn.micro.resourceservice.model.Storage;
+import com.learn.micro.resourceservice.service.S3Service;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.BlockingInputStreamAsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+/**
+ * {@link S3Service} on the Netty based {@link S3AsyncClient}, enabled with {@code app.s3.client=async}.
+ * The *Async methods never block: retries are scheduled with a jittered exponential backoff
+ * instead of sleeping, so a handful of event loop threads can keep thousands of requests in
+ * flight. The blocking methods wait on the same futures.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "app.s3.client", havingValue = "async")
+public class S3AsyncServiceImpl implements S3Service {
+
+    private static final int DELETE_BATCH_SIZE = 1000;
+    private final S3AsyncClient s3AsyncClient;
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final DataSize uploadPartSize;
+    private final DataSize multipartCopyThreshold;
+    private final DataSize copyPartSize;
+
+    public S3AsyncServiceImpl(S3AsyncClient s3AsyncClient,
+        @Value("${app.s3.async.max-attempts:3}") int maxAttempts,
+        @Value("${app.s3.async.base-delay:200ms}") Duration baseDelay,
+        @Value("${app.s3.async.max-delay:5s}") Duration maxDelay,
+        @Value("${app.upload.part-size:5MB}") DataSize uploadPartSize,
+        @Value("${app.s3.copy.multipart-threshold:256MB}") DataSize multipartCopyThreshold,
+        @Value("${app.s3.copy.part-size:128MB}") DataSize copyPartSize) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = baseDelay.toMillis();
+        this.maxDelayMillis = maxDelay.toMillis();
+        this.uploadPartSize = uploadPartSize;
+        this.multipartCopyThreshold = multipartCopyThreshold;
+        this.copyPartSize = copyPartSize;
+    }
+
+    @Override
+    public String uploadMp3File(byte[] fileContent, Storage storage) {
+        String s3Key = storage.path() + "/" + UUID.randomUUID() + ".mp3";
+        await(withRetry("upload " + s3Key, () -> s3AsyncClient.putObject(builder -> builder
+            .bucket(storage.bucket())
+            .key(s3Key)
+            .contentType("audio/mpeg"), AsyncRequestBody.fromBytes(fileContent))));
+        log.info("Uploaded file to S3: {}", s3Key);
+        return PREFIX + storage.bucket() + s3Key;
+    }
+
+    /**
+     * The request body is a servlet stream, so it is written from the calling thread; only the
+     * network side runs on the event loop. Like the blocking service, a known length goes out
+     * as one PutObject and an unknown length as a multipart upload.
+     */
+    @Override
+    public String uploadMp3File(InputStream fileContent, long contentLength, Storage storage) {
+        String s3Key = storage.path() + "/" + UUID.randomUUID() + ".mp3";
+        if (contentLength >= 0) {
+            BlockingInputStreamAsyncRequestBody body = AsyncRequestBody.forBlockingInputStream(contentLength);
+            CompletableFuture<PutObjectResponse> upload = s3AsyncClient.putObject(builder -> builder
+                .bucket(storage.bucket())
+                .key(s3Key)
+                .contentType("audio/mpeg")
+                .contentLength(contentLength), body);
+            body.writeInputStream(fileContent);
+            await(upload);
+        } else {
+            uploadMultipart(fileContent, storage.bucket(), s3Key);
+        }
+        log.info("Streamed file to S3: {}", s3Key);
+        return PREFIX + storage.bucket() + s3Key;
+    }
+
+    /**
+     * Reads the next part while the previous one is uploading, so at most two parts are on heap.
+     */
+    private void uploadMultipart(InputStream fileContent, String bucket, String s3Key) {
+        String uploadId = await(withRetry("start upload " + s3Key, () -> s3AsyncClient.createMultipartUpload(
+            builder -> builder.bucket(bucket).key(s3Key).contentType("audio/mpeg")))).uploadId();
+        try {
+            int partSize = (int) uploadPartSize.toBytes();
+            List<CompletedPart> completedParts = new ArrayList<>();
+            CompletableFuture<CompletedPart> inFlight = null;
+            int partNumber = 1;
+            byte[] part;
+            while ((part = fileContent.readNBytes(partSize)).length > 0) {
+                if (inFlight != null) {
+                    completedParts.add(await(inFlight));
+                }
+                inFlight = uploadPart(bucket, s3Key, uploadId, partNumber++, part);
+            }
+            if (inFlight != null) {
+                completedParts.add(await(inFlight));
+            }
+            await(s3AsyncClient.completeMultipartUpload(builder -> builder
+                .bucket(bucket)
+                .key(s3Key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())));
+        } catch (Exception e) {
+            log.error("Multipart upload {} to {}{} failed, aborting", uploadId, bucket, s3Key, e);
+            s3AsyncClient.abortMultipartUpload(builder -> builder.bucket(bucket).key(s3Key).uploadId(uploadId));
+            throw new GeneralFailureException("Failed to stream file to S3", e);
+        }
+    }
+
+    private CompletableFuture<CompletedPart> uploadPart(String bucket, String s3Key, String uploadId,
+        int partNumber, byte[] part) {
+        return withRetry("upload part " + partNumber + " of " + s3Key, () -> s3AsyncClient.uploadPart(
+                builder -> builder
+                    .bucket(bucket)
+                    .key(s3Key)
+                    .uploadId(uploadId)
+                    .partNumber(partNumber)
+                    .contentLength((long) part.length),
+                AsyncRequestBody.fromBytes(part)))
+            .thenApply(response -> CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+    }
+
+    @Override
+    public GetResourceResponse downloadMp3File(String s3Location, Storage storage, String range,
+        String ifRange) {
+        return await(downloadMp3FileAsync(s3Location, storage, range, ifRange));
+    }
+
+    @Override
+    public CompletableFuture<GetResourceResponse> downloadMp3FileAsync(String s3Location, Storage storage,
+        String range, String ifRange) {
+        S3Location location = S3Location.parse(s3Location);
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+            .bucket(location.bucket())
+            .key(location.key());
+        if (range != null && S3Requests.applyIfRange(request, ifRange)) {
+            request.range(range);
+        }
+        GetObjectRequest rangedRequest = request.build();
+        return withRetry("download " + s3Location, () -> getObject(rangedRequest)
+                .exceptionallyCompose(error -> {
+                    int statusCode = statusCode(error);
+                    if (statusCode == HttpStatus.PRECONDITION_FAILED.value()) {
+                        // If-Range validator no longer matches: the whole object is sent instead
+                        return getObject(GetObjectRequest.builder()
+                            .bucket(location.bucket())
+                            .key(location.key())
+                            .build());
+                    }
+                    if (statusCode == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+                        return CompletableFuture.failedFuture(new RangeNotSatisfiableException(
+                            "Requested range not satisfiable: " + range, unwrap(error)));
+                    }
+                    return CompletableFuture.failedFuture(error);
+                }))
+            .thenApply(S3Requests::toResourceResponse);
+    }
+
+    private CompletableFuture<ResponseInputStream<GetObjectResponse>> getObject(GetObjectRequest request) {
+        return s3AsyncClient.getObject(request, AsyncResponseTransformer.toBlockingInputStream());
+    }
+
+    @Override
+    public void deleteMp3File(String s3Location, Storage storage) {
+        S3Location location = S3Location.parse(s3Location);
+        await(withRetry("delete " + s3Location, () -> s3AsyncClient.deleteObject(builder -> builder
+            .bucket(location.bucket())
+            .key(location.key()))));
+        log.info("Deleted file from S3: {}", location.key());
+    }
+
+    @Override
+    public List<String> deleteMp3Files(List<String> s3Locations, Storage storage) {
+        return await(deleteMp3FilesAsync(s3Locations, storage));
+    }
+
+    /**
+     * Sends every DeleteObjects batch at once rather than one after another.
+     */
+    @Override
+    public CompletableFuture<List<String>> deleteMp3FilesAsync(List<String> s3Locations, Storage storage) {
+        Map<String, List<String>> keysByBucket = new LinkedHashMap<>();
+        for (String s3Location : s3Locations) {
+            try {
+                S3Location location = S3Location.parse(s3Location);
+                keysByBucket.computeIfAbsent(location.bucket(), bucket -> new ArrayList<>()).add(location.key());
+            } catch (IllegalArgumentException e) {
+                log.error("Skipping invalid S3 URI: {}", s3Location);
+            }
+        }
+        List<CompletableFuture<List<String>>> batches = new ArrayList<>();
+        keysByBucket.forEach((bucket, keys) -> {
+            for (int from = 0; from < keys.size(); from += DELETE_BATCH_SIZE) {
+                List<String> batch = keys.subList(from, Math.min(from + DELETE_BATCH_SIZE, keys.size()));
+                batches.add(deleteBatch(bucket, batch).thenApply(failedKeys -> batch.stream()
+                    .filter(key -> !failedKeys.contains(key))
+                    .map(key -> PREFIX + bucket + key)
+                    .toList()));
+            }
+        });
+        return CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new))
+            .thenApply(ignored -> batches.stream()
+                .flatMap(batch -> batch.join().stream())
+                .toList());
+    }
+
+    private CompletableFuture<Set<String>> deleteBatch(String bucket, List<String> keys) {
+        List<ObjectIdentifier> objects = keys.stream()
+            .map(key -> ObjectIdentifier.builder().key(key).build())
+            .toList();
+        return withRetry("delete " + keys.size() + " files from " + bucket,
+            () -> s3AsyncClient.deleteObjects(builder -> builder
+                .bucket(bucket)
+                .delete(delete -> delete.quiet(true).objects(objects))))
+            .thenApply(response -> {
+                Set<String> failedKeys = new HashSet<>();
+                for (S3Error error : response.errors()) {
+                    log.error("Failed to delete file from S3: {}{}, code={}, message={}", bucket,
+                        error.key(), error.code(), error.message());
+                    failedKeys.add(error.key());
+                }
+                log.info("Deleted {} of {} files from S3 bucket {}", keys.size() - failedKeys.size(),
+                    keys.size(), bucket);
+                return failedKeys;
+            })
+            .exceptionally(error -> {
+                log.error("Failed to delete {} files from S3 bucket {}", keys.size(), bucket, error);
+                return new HashSet<>(keys);
+            });
+    }
+
+    @Override
+    public String moveFile(String currentLocation, Storage targetStorage) {
+        return await(moveFileAsync(currentLocation, targetStorage));
+    }
+
+    /**
+     * Server-side copy followed by a delete of the source. Large objects are copied with all
+     * UploadPartCopy requests in flight at once.
+     */
+    @Override
+    public CompletableFuture<String> moveFileAsync(String currentLocation, Storage targetStorage) {
+        S3Location source = S3Location.parse(currentLocation);
+        String newKey = targetStorage.path() + "/" + UUID.randomUUID() + ".mp3";
+        return withRetry("head " + currentLocation, () -> s3AsyncClient.headObject(builder -> builder
+                .bucket(source.bucket())
+                .key(source.key())))
+            .thenCompose(head -> {
+                long objectSize = head.contentLength();
+                CompletableFuture<?> copy = objectSize < multipartCopyThreshold.toBytes()
+                    ? withRetry("copy " + currentLocation, () -> s3AsyncClient.copyObject(builder -> builder
+                        .sourceBucket(source.bucket())
+                        .sourceKey(source.key())
+                        .destinationBucket(targetStorage.bucket())
+                        .destinationKey(newKey)))
+                    : copyMultipart(source, objectSize, targetStorage.bucket(), newKey);
+                return copy.thenAccept(ignored -> log.info("Copied {} bytes to new bucket: {}, key: {}",
+                    objectSize, targetStorage.bucket(), newKey));
+            })
+            .thenCompose(ignored -> withRetry("delete " + currentLocation,
+                () -> s3AsyncClient.deleteObject(builder -> builder
+                    .bucket(source.bucket())
+                    .key(source.key()))))
+            .thenApply(ignored -> {
+                log.info("Deleted old file from S3: {}/{}", source.bucket(), source.key());
+                return PREFIX + targetStorage.bucket() + newKey;
+            });
+    }
+
+    private CompletableFuture<Void> copyMultipart(S3Location source, long objectSize, String targetBucket,
+        String targetKey) {
+        return withRetry("start copy to " + targetKey, () -> s3AsyncClient.createMultipartUpload(builder -> builder
+                .bucket(targetBucket)
+                .key(targetKey)
+                .contentType("audio/mpeg")))
+            .thenCompose(created -> {
+                String uploadId = created.uploadId();
+                long partSize = copyPartSize.toBytes();
+                List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+                int partNumber = 1;
+                for (long firstByte = 0; firstByte < objectSize; firstByte += partSize) {
+                    int currentPart = partNumber++;
+                    String copySourceRange = "bytes=" + firstByte + "-" + (Math.min(firstByte + partSize, objectSize) - 1);
+                    parts.add(withRetry("copy part " + currentPart + " of " + targetKey,
+                        () -> s3AsyncClient.uploadPartCopy(builder -> builder
+                            .sourceBucket(source.bucket())
+                            .sourceKey(source.key())
+                            .destinationBucket(targetBucket)
+                            .destinationKey(targetKey)
+                            .uploadId(uploadId)
+                            .partNumber(currentPart)
+                            .copySourceRange(copySourceRange)))
+                        .thenApply(response -> CompletedPart.builder()
+                            .partNumber(currentPart)
+                            .eTag(response.copyPartResult().eTag())
+                            .build()));
+                }
+                return CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new))
+                    .thenCompose(ignored -> s3AsyncClient.completeMultipartUpload(builder -> builder
+                        .bucket(targetBucket)
+                        .key(targetKey)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder()
+                            .parts(parts.stream().map(CompletableFuture::join).toList())
+                            .build())))
+                    .<Void>thenApply(ignored -> null)
+                    .exceptionallyCompose(error -> s3AsyncClient.abortMultipartUpload(builder -> builder
+                            .bucket(targetBucket)
+                            .key(targetKey)
+                            .uploadId(uploadId))
+                        .handle((aborted, abortError) -> {
+                            throw new CompletionException(unwrap(error));
+                        }));
+            });
+    }
+
+    /**
+     * Runs the call and retries transient failures after a "full jitter" delay: a random wait
+     * between zero and the exponential backoff. The retry is scheduled rather than slept, so no
+     * thread is held while waiting. Exhausted or non-retryable failures surface as
+     * {@link GeneralFailureException}, except errors the caller maps to a status of their own.
+     */
+    private <T> CompletableFuture<T> withRetry(String operation, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(operation, call, 1, result);
+        return result;
+    }
+
+    private <T> void attempt(String operation, Supplier<CompletableFuture<T>> call, int attempt,
+        CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (attempt >= maxAttempts || !isRetryable(cause)) {
+                log.error("S3 {} failed after {} attempts", operation, attempt, cause);
+                result.completeExceptionally(toFailure(operation, attempt, cause));
+                return;
+            }
+            long delay = backoffWithJitter(attempt);
+            log.warn("S3 {} failed on attempt {}, retrying in {} ms: {}", operation, attempt, delay,
+                cause.toString());
+            CompletableFuture.runAsync(() -> attempt(operation, call, attempt + 1, result),
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+        });
+    }
+
+    private long backoffWithJitter(int attempt) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof S3Exception s3Exception) {
+            int statusCode = s3Exception.statusCode();
+            return statusCode >= 500 || statusCode == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return error instanceof SdkClientException || error instanceof IOException
+            || error instanceof UncheckedIOException;
+    }
+
+    private static Throwable toFailure(String operation, int attempts, Throwable cause) {
+        if (cause instanceof RangeNotSatisfiableException || cause instanceof IllegalArgumentException
+            || cause instanceof GeneralFailureException) {
+            return cause;
+        }
+        return new GeneralFailureException("Failed to " + operation + " after " + attempts + " attempts", cause);
+    }
+
+    private static int statusCode(Throwable error) {
+        return unwrap(error) instanceof S3Exception s3Exception ? s3Exception.statusCode() : -1;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+            && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new GeneralFailureException(cause);
+        }
+    }
+
+    private record S3Location(String bucket, String key) {
+
+        /**
+         * Splits {@code s3://bucket/path/file.mp3} into the bucket and a key that keeps its
+         * leading slash, the way locations are stored.
+         */
+        static S3Location parse(String s3Location) {
+            if (s3Location == null || !s3Location.startsWith(PREFIX)) {
+                throw new IllegalArgumentException("Invalid S3 URI: " + s3Location);
+            }
+            String withoutPrefix = s3Location.substring(PREFIX.length());
+            int firstSlash = withoutPrefix.indexOf('/');
+            if (firstSlash == -1) {
+                throw new IllegalArgumentException("Invalid S3 URI format: " + s3Location);
+            }
+            return new S3Location(withoutPrefix.substring(0, firstSlash), withoutPrefix.substring(firstSlash));
+        }
+    }
+}
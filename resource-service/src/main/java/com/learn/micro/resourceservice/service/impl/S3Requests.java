@@ -0,0 +1,54 @@
+package com.learn.micro.resourceservice.service.impl;
+
+import com.learn.micro.resourceservice.model.GetResourceResponse;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+
+/**
+ * Request and response mapping shared by the blocking and the async S3 service.
+ */
+@Slf4j
+final class S3Requests {
+
+    private S3Requests() {
+    }
+
+    /**
+     * Maps an If-Range validator onto the matching S3 precondition. Returns false when the range
+     * must be ignored outright: weak entity tags never match If-Range, and an unparsable date
+     * cannot be checked.
+     */
+    static boolean applyIfRange(GetObjectRequest.Builder request, String ifRange) {
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            request.ifMatch(ifRange);
+            return true;
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        try {
+            request.ifUnmodifiedSince(
+                ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+            return true;
+        } catch (DateTimeParseException e) {
+            log.warn("Ignoring Range with unparsable If-Range value: {}", ifRange);
+            return false;
+        }
+    }
+
+    static GetResourceResponse toResourceResponse(ResponseInputStream<GetObjectResponse> object) {
+        GetObjectResponse response = object.response();
+        log.info("Opened S3 object stream: length={}, range={}", response.contentLength(),
+            response.contentRange());
+        return new GetResourceResponse(object, response.contentLength(), response.contentRange(),
+            response.eTag());
+    }
+}
@@ -1,31 +1,59 @@
 package com.learn.micro.resourceservice.service.impl;
 
 import com.learn.micro.resourceservice.exception.GeneralFailureException;
+import com.learn.micro.resourceservice.exception.RangeNotSatisfiableException;
+import com.learn.micro.resourceservice.model.GetResourceResponse;
 import com.learn.micro.resourceservice.model.Storage;
 import com.learn.micro.resourceservice.service.S3Service;
-import java.io.ByteArrayOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.retry.support.RetryTemplate;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Error;
 import software.amazon.awssdk.services.s3.model.S3Exception;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.s3.client", havingValue = "sync", matchIfMissing = true)
 public class S3ServiceImpl implements S3Service {
 
     public static final String PREFIX = "s3://";
+    private static final int DELETE_BATCH_SIZE = 1000;
     private final S3Client s3Client;
 
+    @Value("${app.upload.part-size:5MB}")
+    private DataSize uploadPartSize;
+
+    @Value("${app.s3.copy.multipart-threshold:256MB}")
+    private DataSize multipartCopyThreshold;
+
+    @Value("${app.s3.copy.part-size:128MB}")
+    private DataSize copyPartSize;
+
     private final RetryTemplate retryTemplate = RetryTemplate.builder()
         .maxAttempts(3)
         .fixedBackoff(2000)
@@ -51,7 +79,67 @@ public class S3ServiceImpl implements S3Service {
         });
     }
 
-    public byte[] downloadMp3File(String s3Location, Storage storage) {
+    /**
+     * Streams the content into S3. A known length goes out as a single PutObject; an unknown
+     * (chunked) length is sent as a multipart upload, so only one part is ever held on heap.
+     * The single PutObject is not retried because the servlet stream cannot be replayed.
+     */
+    @Override
+    public String uploadMp3File(InputStream fileContent, long contentLength, Storage storage) {
+        String s3Key = storage.path() + "/" + UUID.randomUUID() + ".mp3";
+        if (contentLength >= 0) {
+            PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(storage.bucket())
+                .key(s3Key)
+                .contentType("audio/mpeg")
+                .contentLength(contentLength)
+                .build();
+            s3Client.putObject(request, RequestBody.fromInputStream(fileContent, contentLength));
+        } else {
+            uploadMultipart(fileContent, storage.bucket(), s3Key);
+        }
+        log.info("Streamed file to S3: {}", s3Key);
+        return PREFIX + storage.bucket() + s3Key;
+    }
+
+    private void uploadMultipart(InputStream fileContent, String bucket, String s3Key) {
+        String uploadId = s3Client.createMultipartUpload(builder -> builder
+            .bucket(bucket)
+            .key(s3Key)
+            .contentType("audio/mpeg")).uploadId();
+        try {
+            byte[] partBuffer = new byte[(int) uploadPartSize.toBytes()];
+            List<CompletedPart> completedParts = new ArrayList<>();
+            int partNumber = 1;
+            int partLength;
+            while ((partLength = fileContent.readNBytes(partBuffer, 0, partBuffer.length)) > 0) {
+                int currentPart = partNumber++;
+                int currentLength = partLength;
+                String eTag = retryTemplate.execute(context -> s3Client.uploadPart(builder -> builder
+                        .bucket(bucket)
+                        .key(s3Key)
+                        .uploadId(uploadId)
+                        .partNumber(currentPart)
+                        .contentLength((long) currentLength),
+                    RequestBody.fromInputStream(
+                        new ByteArrayInputStream(partBuffer, 0, currentLength), currentLength)).eTag());
+                completedParts.add(CompletedPart.builder().partNumber(currentPart).eTag(eTag).build());
+            }
+            s3Client.completeMultipartUpload(builder -> builder
+                .bucket(bucket)
+                .key(s3Key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build()));
+        } catch (Exception e) {
+            log.error("Multipart upload {} to {}{} failed, aborting", uploadId, bucket, s3Key, e);
+            s3Client.abortMultipartUpload(builder -> builder.bucket(bucket).key(s3Key).uploadId(uploadId));
+            throw new GeneralFailureException("Failed to stream file to S3", e);
+        }
+    }
+
+    @Override
+    public GetResourceResponse downloadMp3File(String s3Location, Storage storage, String range,
+        String ifRange) {
         return retryTemplate.execute(context -> {
             if (!s3Location.startsWith(PREFIX)) {
                 throw new IllegalArgumentException("Invalid S3 URI: " + s3Location);
@@ -68,19 +156,29 @@ public class S3ServiceImpl implements S3Service {
             log.info("BUCKET: {}", bucket);
             String s3Key = withoutPrefix.substring(firstSlash);
             log.info("KEY: {}", s3Key);
-            GetObjectRequest request = GetObjectRequest.builder()
+            GetObjectRequest.Builder request = GetObjectRequest.builder()
                 .bucket(bucket)
-                .key(s3Key)
-                .build();
-            try (InputStream inputStream = s3Client.getObject(request);
-                ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-                inputStream.transferTo(outputStream);
-                log.info("Downloaded file from S3: {}/{}", bucket, s3Key);
-                return outputStream.toByteArray();
-            } catch (IOException e) {
-                throw new GeneralFailureException("Failed to read object from S3", e);
+                .key(s3Key);
+            if (range != null && S3Requests.applyIfRange(request, ifRange)) {
+                request.range(range);
+            }
+            try {
+                return S3Requests.toResourceResponse(s3Client.getObject(request.build()));
+            } catch (S3Exception e) {
+                if (e.statusCode() == HttpStatus.PRECONDITION_FAILED.value()) {
+                    // If-Range validator no longer matches: the whole object is sent instead
+                    return S3Requests.toResourceResponse(s3Client.getObject(
+                        GetObjectRequest.builder().bucket(bucket).key(s3Key).build()));
+                }
+                if (e.statusCode() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+                    throw new RangeNotSatisfiableException("Requested range not satisfiable: " + range, e);
+                }
+                throw e;
             }
         }, context -> {
+            if (context.getLastThrowable() instanceof RangeNotSatisfiableException e) {
+                throw e;
+            }
             log.error("Failed to download file from S3 after {} attempts", context.getRetryCount() + 1);
             throw new GeneralFailureException("Failed to download file from S3 after retries");
         });
@@ -107,50 +205,137 @@ public class S3ServiceImpl implements S3Service {
         });
     }
 
+    @Override
+    public List<String> deleteMp3Files(List<String> s3Locations, Storage storage) {
+        Map<String, List<String>> keysByBucket = new LinkedHashMap<>();
+        for (String s3Location : s3Locations) {
+            String withoutPrefix = s3Location.startsWith(PREFIX) ? s3Location.substring(5) : "";
+            int firstSlash = withoutPrefix.indexOf('/');
+            if (firstSlash == -1) {
+                log.error("Skipping invalid S3 URI: {}", s3Location);
+                continue;
+            }
+            keysByBucket.computeIfAbsent(withoutPrefix.substring(0, firstSlash), bucket -> new ArrayList<>())
+                .add(withoutPrefix.substring(firstSlash));
+        }
+        List<String> deletedLocations = new ArrayList<>();
+        keysByBucket.forEach((bucket, keys) -> {
+            for (int from = 0; from < keys.size(); from += DELETE_BATCH_SIZE) {
+                List<String> batch = keys.subList(from, Math.min(from + DELETE_BATCH_SIZE, keys.size()));
+                Set<String> failedKeys = deleteBatch(bucket, batch);
+                batch.stream()
+                    .filter(key -> !failedKeys.contains(key))
+                    .map(key -> PREFIX + bucket + key)
+                    .forEach(deletedLocations::add);
+            }
+        });
+        return deletedLocations;
+    }
+
+    private Set<String> deleteBatch(String bucket, List<String> keys) {
+        return retryTemplate.execute(context -> {
+            List<ObjectIdentifier> objects = keys.stream()
+                .map(key -> ObjectIdentifier.builder().key(key).build())
+                .toList();
+            DeleteObjectsResponse response = s3Client.deleteObjects(builder -> builder
+                .bucket(bucket)
+                .delete(delete -> delete.quiet(true).objects(objects)));
+            Set<String> failedKeys = new HashSet<>();
+            for (S3Error error : response.errors()) {
+                log.error("Failed to delete file from S3: {}{}, code={}, message={}", bucket,
+                    error.key(), error.code(), error.message());
+                failedKeys.add(error.key());
+            }
+            log.info("Deleted {} of {} files from S3 bucket {}", keys.size() - failedKeys.size(),
+                keys.size(), bucket);
+            return failedKeys;
+        }, context -> {
+            log.error("Failed to delete {} files from S3 bucket {} after {} attempts", keys.size(),
+                bucket, context.getRetryCount());
+            return new HashSet<>(keys);
+        });
+    }
+
+    /**
+     * Promotes an object with a server-side copy, so the bytes never pass through this JVM.
+     * Objects at or above {@code app.s3.copy.multipart-threshold} are copied part by part with
+     * UploadPartCopy (a single CopyObject is capped at 5 GB by S3). The destination key is chosen
+     * once, so a retry after a failed delete of the source copies onto the same object instead of
+     * leaving an orphaned copy behind.
+     */
     @Override
     public String moveFile(String currentLocation, Storage targetStorage) {
+        String[] parts = currentLocation.replace(PREFIX, "").split("/", 2);
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("Invalid S3 location: " + currentLocation);
+        }
+        String sourceBucket = parts[0];
+        String sourceKey = "/" + parts[1];
+        String newKey = targetStorage.path() + "/" + UUID.randomUUID() + ".mp3";
         return retryTemplate.execute(context -> {
-            try {
-                String[] parts = currentLocation.replace(PREFIX, "").split("/", 2);
-                if (parts.length < 2) {
-                    throw new IllegalArgumentException("Invalid S3 location: " + currentLocation);
-                }
-                String sourceBucket = parts[0];
-                log.info("BUCKET: {}", sourceBucket);
-                String sourceKey = "/" + parts[1];
-                log.info("KEY: {}", sourceKey);
-                GetObjectRequest getRequest = GetObjectRequest.builder()
-                    .bucket(sourceBucket)
-                    .key(sourceKey)
-                    .build();
-                byte[] fileBytes;
-                try (InputStream inputStream = s3Client.getObject(getRequest);
-                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-                    inputStream.transferTo(outputStream);
-                    fileBytes = outputStream.toByteArray();
-                }
-                String newKey = targetStorage.path() + "/" + UUID.randomUUID() + ".mp3";
-                PutObjectRequest putRequest = PutObjectRequest.builder()
-                    .bucket(targetStorage.bucket())
-                    .key(newKey)
-                    .contentType("audio/mpeg")
-                    .build();
-                s3Client.putObject(putRequest, RequestBody.fromBytes(fileBytes));
-                log.info("Moved file to new bucket: {}, key: {}", targetStorage.bucket(), newKey);
-                DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder()
-                    .bucket(sourceBucket)
-                    .key(sourceKey)
-                    .build();
-                s3Client.deleteObject(deleteRequest);
-                log.info("Deleted old file from S3: {}/{}", sourceBucket, sourceKey);
-                return PREFIX + targetStorage.bucket() + newKey;
-            } catch (Exception e) {
-                log.error("Error while moving file from {} to {}", currentLocation, targetStorage.bucket(), e);
-                throw new GeneralFailureException("Failed to move file between storages", e);
+            long objectSize = s3Client.headObject(builder -> builder
+                .bucket(sourceBucket)
+                .key(sourceKey)).contentLength();
+            if (objectSize < multipartCopyThreshold.toBytes()) {
+                s3Client.copyObject(builder -> builder
+                    .sourceBucket(sourceBucket)
+                    .sourceKey(sourceKey)
+                    .destinationBucket(targetStorage.bucket())
+                    .destinationKey(newKey));
+            } else {
+                copyMultipart(sourceBucket, sourceKey, objectSize, targetStorage.bucket(), newKey);
             }
+            log.info("Copied {} bytes to new bucket: {}, key: {}", objectSize, targetStorage.bucket(), newKey);
+            DeleteObjectRequest deleteRequest = DeleteObjectRequest.builder()
+                .bucket(sourceBucket)
+                .key(sourceKey)
+                .build();
+            s3Client.deleteObject(deleteRequest);
+            log.info("Deleted old file from S3: {}/{}", sourceBucket, sourceKey);
+            return PREFIX + targetStorage.bucket() + newKey;
         }, context -> {
-            log.error("Failed to move file after {} attempts", context.getRetryCount() + 1);
-            throw new GeneralFailureException("Failed to move file after retries");
+            log.error("Failed to move file from {} to {} after {} attempts", currentLocation,
+                targetStorage.bucket(), context.getRetryCount(), context.getLastThrowable());
+            throw new GeneralFailureException("Failed to move file between storages",
+                context.getLastThrowable());
         });
     }
+
+    private void copyMultipart(String sourceBucket, String sourceKey, long objectSize,
+        String targetBucket, String targetKey) {
+        String uploadId = s3Client.createMultipartUpload(builder -> builder
+            .bucket(targetBucket)
+            .key(targetKey)
+            .contentType("audio/mpeg")).uploadId();
+        try {
+            long partSize = copyPartSize.toBytes();
+            List<CompletedPart> completedParts = new ArrayList<>();
+            int partNumber = 1;
+            for (long firstByte = 0; firstByte < objectSize; firstByte += partSize) {
+                long lastByte = Math.min(firstByte + partSize, objectSize) - 1;
+                int currentPart = partNumber++;
+                String copySourceRange = "bytes=" + firstByte + "-" + lastByte;
+                String eTag = s3Client.uploadPartCopy(builder -> builder
+                    .sourceBucket(sourceBucket)
+                    .sourceKey(sourceKey)
+                    .destinationBucket(targetBucket)
+                    .destinationKey(targetKey)
+                    .uploadId(uploadId)
+                    .partNumber(currentPart)
+                    .copySourceRange(copySourceRange)).copyPartResult().eTag();
+                completedParts.add(CompletedPart.builder().partNumber(currentPart).eTag(eTag).build());
+            }
+            s3Client.completeMultipartUpload(builder -> builder
+                .bucket(targetBucket)
+                .key(targetKey)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build()));
+        } catch (Exception e) {
+            s3Client.abortMultipartUpload(builder -> builder
+                .bucket(targetBucket)
+                .key(targetKey)
+                .uploadId(uploadId));
+            throw e;
+        }
+    }
 }
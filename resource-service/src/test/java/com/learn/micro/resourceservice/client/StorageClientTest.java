@@ -0,0 +1,122 @@
+package com.learn.micro.resourceservice.client;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceservice.exception.GeneralFailureException;
+import com.learn.micro.resourceservice.model.Storage;
+import com.learn.micro.resourceservice.service.MessageHelper;
+import com.learn.micro.resourceservice.service.ServiceProvider;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class StorageClientTest {
+
+    private static final String URL = "http://storage-service/storages/type/PERMANENT";
+    private static final Storage PERMANENT = new Storage("PERMANENT", "permanent-bucket", "/files");
+
+    @Mock
+    private RestTemplate restTemplate;
+    @Mock
+    private ServiceProvider serviceProvider;
+    @Mock
+    private MessageHelper messageHelper;
+    @Mock
+    private ServiceInstance serviceInstance;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private StorageClient storageClient;
+
+    @BeforeEach
+    void setUp() {
+        when(serviceProvider.getServiceInstance("storage-service")).thenReturn(serviceInstance);
+        when(serviceInstance.getUri()).thenReturn(URI.create("http://storage-service"));
+        storageClient = new StorageClient(restTemplate, serviceProvider, messageHelper,
+            CircuitBreakerRegistry.ofDefaults(), meterRegistry, Duration.ofMinutes(30), Duration.ofMinutes(5), 100);
+    }
+
+    /**
+     * Test that a cached descriptor is served without calling storage-service again.
+     */
+    @Test
+    void fetchStorage_shouldServeCachedStorage_withoutHttpCall() {
+        // given
+        when(restTemplate.getForEntity(URL, Storage.class)).thenReturn(ResponseEntity.ok(PERMANENT));
+        // when
+        storageClient.fetchStorage("PERMANENT");
+        Storage storage = storageClient.fetchStorage("PERMANENT");
+        // then
+        assertEquals(PERMANENT, storage);
+        verify(restTemplate, times(1)).getForEntity(anyString(), eq(Storage.class));
+    }
+
+    /**
+     * Test that the last known descriptor is served and counted when a load fails.
+     */
+    @Test
+    void fetchStorage_shouldServeLastKnownStorage_whenLoadFails() {
+        // given
+        when(restTemplate.getForEntity(URL, Storage.class))
+            .thenReturn(ResponseEntity.ok(PERMANENT))
+            .thenThrow(new ResourceAccessException("Connection refused"));
+        storageClient.fetchStorage("PERMANENT");
+        storageClient.invalidate("PERMANENT");
+        // when
+        Storage storage = storageClient.fetchStorage("PERMANENT");
+        // then
+        assertEquals(PERMANENT, storage);
+        assertEquals(1.0, meterRegistry.get("storage.cache.stale.served").counter().count());
+    }
+
+    /**
+     * Test that a failed load with no descriptor known surfaces as {@link GeneralFailureException}.
+     */
+    @Test
+    void fetchStorage_shouldThrowGeneralFailure_whenLoadFailsAndNothingKnown() {
+        // given
+        when(restTemplate.getForEntity(URL, Storage.class)).thenThrow(new ResourceAccessException("Connection refused"));
+        when(messageHelper.getMessage(any())).thenReturn("{0} is unavailable");
+        // when and then
+        GeneralFailureException exception = assertThrows(GeneralFailureException.class,
+            () -> storageClient.fetchStorage("PERMANENT"));
+        assertEquals("storage-service is unavailable", exception.getMessage());
+        assertEquals(0.0, meterRegistry.get("storage.cache.stale.served").counter().count());
+    }
+
+    /**
+     * Test that invalidating a storage type makes the next lookup load it again.
+     */
+    @Test
+    void invalidate_shouldForceReload() {
+        // given
+        Storage moved = new Storage("PERMANENT", "archive-bucket", "/files");
+        when(restTemplate.getForEntity(URL, Storage.class))
+            .thenReturn(ResponseEntity.ok(PERMANENT))
+            .thenReturn(ResponseEntity.ok(moved));
+        storageClient.fetchStorage("PERMANENT");
+        // when
+        storageClient.invalidate("PERMANENT");
+        Storage storage = storageClient.fetchStorage("PERMANENT");
+        // then
+        assertEquals(moved, storage);
+        verify(restTemplate, times(2)).getForEntity(anyString(), eq(Storage.class));
+    }
+}
@@ -0,0 +1,87 @@
+package com.learn.micro.resourceservice.kafka;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.learn.micro.resourceservice.kafka.ListenerConcurrencyAutoscaler.ListenerState;
+import com.learn.micro.resourceservice.kafka.ListenerConcurrencyAutoscaler.Scaling;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.apache.kafka.clients.admin.Admin;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+
+@ExtendWith(MockitoExtension.class)
+class ListenerConcurrencyAutoscalerTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Mock
+    private KafkaListenerEndpointRegistry listenerRegistry;
+    @Mock
+    private Admin admin;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ListenerConcurrencyAutoscaler autoscaler;
+
+    @BeforeEach
+    void setUp() {
+        autoscaler = new ListenerConcurrencyAutoscaler(listenerRegistry, admin, meterRegistry,
+            List.of("resourceProcessedListener"), 1, 4, Duration.ofSeconds(30), Duration.ofSeconds(60), 4);
+    }
+
+    /**
+     * Test that a slow backlog adds a consumer, and that the next change waits for the cooldown.
+     */
+    @Test
+    void decide_shouldScaleUpOnce_whenBacklogDrainsTooSlowly() {
+        // given
+        ListenerState state = new ListenerState();
+        // when
+        Scaling first = autoscaler.decide(state, 1, 4, 240, 0.5, NOW);
+        Scaling second = autoscaler.decide(state, 2, 4, 240, 0.5, NOW.plusSeconds(15));
+        // then
+        assertThat(first.concurrency()).isEqualTo(2);
+        assertThat(second.concurrency()).isEqualTo(2);
+        assertThat(second.reason()).isEqualTo("cooling down, backlog drains in 60s");
+    }
+
+    /**
+     * Test that an idle listener gives back a consumer only after four quiet checks in a row.
+     */
+    @Test
+    void decide_shouldScaleDown_afterFourQuietChecks() {
+        // given
+        ListenerState state = new ListenerState();
+        // when
+        List<Integer> concurrencies = IntStream.range(0, 4)
+            .mapToObj(check -> autoscaler.decide(state, 2, 4, 0, Double.NaN, NOW.plusSeconds(15L * check))
+                .concurrency())
+            .toList();
+        // then
+        assertThat(concurrencies).containsExactly(2, 2, 2, 1);
+    }
+
+    /**
+     * Test that only the timers of the listener's consumers are read.
+     */
+    @Test
+    void listenerTimers_shouldMatchConsumersOfListenerOnly() {
+        // given
+        Timer.builder("spring.kafka.listener").tag("name", "resourceProcessedListener-0").register(meterRegistry);
+        Timer.builder("spring.kafka.listener").tag("name", "resourceProcessedListener-retry-0")
+            .register(meterRegistry);
+        // when
+        List<Timer> timers = autoscaler.listenerTimers("resourceProcessedListener");
+        // then
+        assertThat(timers).extracting(timer -> timer.getId().getTag("name"))
+            .containsExactly("resourceProcessedListener-0");
+    }
+}
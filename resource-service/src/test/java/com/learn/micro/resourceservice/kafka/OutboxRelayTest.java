@@ -0,0 +1,160 @@
+package com.learn.micro.resourceservice.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.learn.micro.resourceservice.entity.OutboxEventEntity;
+import com.learn.micro.resourceservice.kafka.event.EventType;
+import com.learn.micro.resourceservice.kafka.event.ResourceEvent;
+import com.learn.micro.resourceservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+    @Mock
+    private ResourceProducer resourceProducer;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    void setUp() {
+        when(transactionTemplate.execute(any()))
+            .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        outboxRelay = new OutboxRelay(outboxEventRepository, resourceProducer, objectMapper, transactionTemplate,
+            meterRegistry, 500, Duration.ofSeconds(1), MAX_ATTEMPTS);
+    }
+
+    /**
+     * Test that a failed send stops its resource for the pass: the later event of that resource
+     * is not sent and stays in the outbox, while other resources are relayed and deleted.
+     */
+    @Test
+    void relay_shouldNotSendLaterEventsOfResource_whenSendFails() throws Exception {
+        // given
+        givenOutbox(outboxEvent(1L, "1", EventType.CREATE), outboxEvent(2L, "2", EventType.CREATE),
+            outboxEvent(3L, "1", EventType.DELETE));
+        when(resourceProducer.send(any(), isNull())).thenAnswer(invocation ->
+            invocation.<ResourceEvent>getArgument(0).resourceId().equals("1")
+                ? CompletableFuture.failedFuture(new KafkaException("broker unavailable"))
+                : CompletableFuture.completedFuture(null));
+        // when
+        outboxRelay.relay();
+        // then
+        verify(resourceProducer, never()).send(argThat(event -> event.eventType() == EventType.DELETE), any());
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(2L));
+    }
+
+    /**
+     * Test that the events of one resource are sent one round at a time,
+     * the next only after the previous one was flushed and acknowledged.
+     */
+    @Test
+    void relay_shouldSendEventsOfResourceInOrder() throws Exception {
+        // given
+        givenOutbox(outboxEvent(1L, "1", EventType.CREATE), outboxEvent(2L, "1", EventType.DELETE));
+        when(resourceProducer.send(any(), isNull())).thenReturn(CompletableFuture.completedFuture(null));
+        // when
+        outboxRelay.relay();
+        // then
+        InOrder inOrder = inOrder(resourceProducer);
+        inOrder.verify(resourceProducer).send(argThat(event -> event.eventType() == EventType.CREATE), isNull());
+        inOrder.verify(resourceProducer).flush();
+        inOrder.verify(resourceProducer).send(argThat(event -> event.eventType() == EventType.DELETE), isNull());
+        inOrder.verify(resourceProducer).flush();
+        verify(outboxEventRepository).deleteAllByIdInBatch(List.of(1L, 2L));
+    }
+
+    /**
+     * Test that a row whose payload cannot be read counts an attempt on every pass and is
+     * dead-lettered at max-attempts, without being sent or deleted.
+     */
+    @Test
+    void relay_shouldDeadLetterRow_whenPayloadFailsMaxAttempts() throws Exception {
+        // given
+        OutboxEventEntity poison = outboxEvent(1L, "1", EventType.CREATE);
+        poison.setPayload("{not json");
+        poison.setAttempts(MAX_ATTEMPTS - 2);
+        givenOutbox(poison);
+        // when
+        outboxRelay.relay();
+        // then
+        assertEquals(MAX_ATTEMPTS - 1, poison.getAttempts());
+        assertNull(poison.getFailedAt());
+        // when
+        outboxRelay.relay();
+        // then
+        assertEquals(MAX_ATTEMPTS, poison.getAttempts());
+        assertNotNull(poison.getFailedAt());
+        assertEquals(1.0, meterRegistry.get("outbox.relay.events").tag("result", "dead-lettered").counter().count());
+        verify(resourceProducer, never()).send(any(), any());
+        verify(outboxEventRepository, times(2)).deleteAllByIdInBatch(List.of());
+    }
+
+    /**
+     * Test that a retriable broker failure is not held against the row, so an outage does not
+     * dead-letter the events waiting it out.
+     */
+    @Test
+    void relay_shouldNotCountAttempt_whenFailureIsRetriable() throws Exception {
+        // given
+        OutboxEventEntity outboxEvent = outboxEvent(1L, "1", EventType.CREATE);
+        outboxEvent.setAttempts(MAX_ATTEMPTS - 1);
+        givenOutbox(outboxEvent);
+        when(resourceProducer.send(any(), isNull())).thenReturn(CompletableFuture.failedFuture(
+            new KafkaException("send failed", new TimeoutException("metadata not available"))));
+        // when
+        outboxRelay.relay();
+        // then
+        assertEquals(MAX_ATTEMPTS - 1, outboxEvent.getAttempts());
+        assertNull(outboxEvent.getFailedAt());
+    }
+
+    private void givenOutbox(OutboxEventEntity... outboxEvents) {
+        when(outboxEventRepository.findOldestForRelay(any(Pageable.class))).thenReturn(List.of(outboxEvents));
+    }
+
+    private OutboxEventEntity outboxEvent(Long id, String resourceId, EventType eventType) throws Exception {
+        return OutboxEventEntity.builder()
+            .id(id)
+            .resourceId(resourceId)
+            .eventType(eventType.name())
+            .payload(objectMapper.writeValueAsString(new ResourceEvent(resourceId, eventType)))
+            .createdAt(Instant.now())
+            .build();
+    }
+}
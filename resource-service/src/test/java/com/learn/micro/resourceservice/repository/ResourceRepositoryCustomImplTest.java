@@ -0,0 +1,62 @@
+package com.learn.micro.resourceservice.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.learn.micro.resourceservice.entity.ResourceEntity;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Runs the JDBC fragment of {@link ResourceRepository} against PostgreSQL, the database it is
+ * written for.
+ */
+class ResourceRepositoryCustomImplTest {
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate =
+        new NamedParameterJdbcTemplate(PostgresTestDatabase.dataSource());
+    private final JdbcTemplate jdbcTemplate = namedJdbcTemplate.getJdbcTemplate();
+    private final ResourceRepositoryCustomImpl repository = new ResourceRepositoryCustomImpl(namedJdbcTemplate);
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("TRUNCATE resource RESTART IDENTITY");
+        jdbcTemplate.update("INSERT INTO resource (s3_location, stage) VALUES"
+            + " ('s3://staging/files/a.mp3', 'STAGING'),"
+            + " ('s3://permanent/files/b.mp3', 'PERMANENT'),"
+            + " ('s3://permanent/files/c.mp3', 'PERMANENT')");
+    }
+
+    /**
+     * Test that the deleted rows come back with their location and stage
+     * and that ids without a row are ignored.
+     */
+    @Test
+    void deleteAllByIdInReturning_shouldReturnDeletedRows() {
+        // when
+        List<ResourceEntity> deleted = repository.deleteAllByIdInReturning(List.of(1, 3, 42));
+        // then
+        List<ResourceEntity> sorted = deleted.stream().sorted(Comparator.comparing(ResourceEntity::getId)).toList();
+        assertEquals(List.of(1, 3), sorted.stream().map(ResourceEntity::getId).toList());
+        assertEquals("s3://staging/files/a.mp3", sorted.get(0).getS3Location());
+        assertEquals("STAGING", sorted.get(0).getStage());
+        assertEquals("PERMANENT", sorted.get(1).getStage());
+        assertEquals(List.of(2), jdbcTemplate.queryForList("SELECT id FROM resource", Integer.class));
+    }
+
+    /**
+     * Test that an empty id list deletes nothing and issues no statement.
+     */
+    @Test
+    void deleteAllByIdInReturning_shouldReturnEmpty_whenNoIds() {
+        // when
+        List<ResourceEntity> deleted = repository.deleteAllByIdInReturning(List.of());
+        // then
+        assertTrue(deleted.isEmpty());
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT count(*) FROM resource", Integer.class));
+    }
+}
@@ -0,0 +1,136 @@
+package com.learn.micro.resourceservice.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.learn.micro.resourceservice.model.GetResourceResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+class Mp3ContentCacheTest {
+
+    private static final String LOCATION = "s3://permanent-bucket/files/song.mp3";
+    private static final byte[] CONTENT = "ID3-mp3-content".getBytes();
+
+    private final Mp3ContentCache mp3ContentCache = new Mp3ContentCache(new SimpleMeterRegistry(), true,
+        DataSize.ofMegabytes(1), DataSize.ofKilobytes(64), false, Path.of("unused"), DataSize.ofMegabytes(1));
+
+    /**
+     * Test that of two concurrent cold reads of the same object only the first one captures it,
+     * and that the object is cached once that read has reached the end.
+     */
+    @Test
+    void populating_shouldLetOnlyOneReaderCapture_whenReadsOverlap() throws IOException {
+        // given
+        GetResourceResponse first = response();
+        GetResourceResponse second = response();
+        // when
+        GetResourceResponse capturing = mp3ContentCache.populating(LOCATION, first);
+        GetResourceResponse passThrough = mp3ContentCache.populating(LOCATION, second);
+        byte[] read;
+        try (InputStream content = capturing.content()) {
+            read = content.readAllBytes();
+        }
+        // then
+        assertNotSame(first, capturing);
+        assertSame(second, passThrough);
+        assertArrayEquals(CONTENT, read);
+        assertArrayEquals(CONTENT, cachedBytes());
+    }
+
+    /**
+     * Test that a read closed before the end is not cached
+     * and hands the capture over to the next cold read.
+     */
+    @Test
+    void populating_shouldNotCacheAndReleaseClaim_whenReadAborted() throws IOException {
+        // given
+        try (InputStream content = mp3ContentCache.populating(LOCATION, response()).content()) {
+            content.readNBytes(3);
+        }
+        // when
+        assertTrue(mp3ContentCache.get(LOCATION).isEmpty());
+        GetResourceResponse retry = mp3ContentCache.populating(LOCATION, response());
+        try (InputStream content = retry.content()) {
+            content.transferTo(OutputStream.nullOutputStream());
+        }
+        // then
+        assertArrayEquals(CONTENT, cachedBytes());
+    }
+
+    /**
+     * Test that a stream longer than its announced length is not cached.
+     */
+    @Test
+    void populating_shouldNotCache_whenStreamLongerThanContentLength() throws IOException {
+        // given
+        GetResourceResponse response = new GetResourceResponse(new ByteArrayInputStream(CONTENT),
+            CONTENT.length - 1, null, "\"etag\"");
+        // when
+        try (InputStream content = mp3ContentCache.populating(LOCATION, response).content()) {
+            content.readAllBytes();
+        }
+        // then
+        assertTrue(mp3ContentCache.get(LOCATION).isEmpty());
+    }
+
+    /**
+     * Test that a request for several ranges is answered with the whole object, like the S3 read.
+     */
+    @Test
+    void toResponse_shouldServeWholeObject_whenSeveralRanges() throws IOException {
+        // given
+        Mp3ContentCache.CachedMp3 cached = new Mp3ContentCache.CachedMp3(ByteBuffer.wrap(CONTENT), "\"etag\"");
+        // when
+        GetResourceResponse response = cached.toResponse("bytes=0-1,4-5", null);
+        // then
+        assertNull(response.contentRange());
+        assertArrayEquals(CONTENT, response.content().readAllBytes());
+    }
+
+    /**
+     * Test that a range is served only when its If-Range is absent or the matching strong entity
+     * tag, and that a date, which the cache cannot check, is left to S3.
+     */
+    @Test
+    void toResponse_shouldServeRange_onlyWhenIfRangeMatches() throws IOException {
+        // given
+        Mp3ContentCache.CachedMp3 cached = new Mp3ContentCache.CachedMp3(ByteBuffer.wrap(CONTENT), "\"etag\"");
+        String date = "Wed, 21 Oct 2015 07:28:00 GMT";
+        // when
+        GetResourceResponse matching = cached.toResponse("bytes=0-2", "\"etag\"");
+        GetResourceResponse unconditional = cached.toResponse("bytes=0-2", "");
+        GetResourceResponse changed = cached.toResponse("bytes=0-2", "\"other\"");
+        GetResourceResponse weak = cached.toResponse("bytes=0-2", "W/\"etag\"");
+        // then
+        assertEquals("bytes 0-2/" + CONTENT.length, matching.contentRange());
+        assertArrayEquals("ID3".getBytes(), matching.content().readAllBytes());
+        assertEquals("bytes 0-2/" + CONTENT.length, unconditional.contentRange());
+        assertNull(changed.contentRange());
+        assertNull(weak.contentRange());
+        assertTrue(Mp3ContentCache.CachedMp3.canEvaluate("W/\"etag\""));
+        assertFalse(Mp3ContentCache.CachedMp3.canEvaluate(date));
+    }
+
+    private byte[] cachedBytes() throws IOException {
+        try (InputStream content = mp3ContentCache.get(LOCATION).orElseThrow().toResponse(null, null).content()) {
+            return content.readAllBytes();
+        }
+    }
+
+    private static GetResourceResponse response() {
+        return new GetResourceResponse(new ByteArrayInputStream(CONTENT), CONTENT.length, null, "\"etag\"");
+    }
+}
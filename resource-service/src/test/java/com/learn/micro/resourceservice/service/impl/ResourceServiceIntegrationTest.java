@@ -4,29 +4,42 @@ import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.learn.micro.resourceservice.client.StorageClient;
+import com.learn.micro.resourceservice.entity.OutboxEventEntity;
 import com.learn.micro.resourceservice.entity.ResourceEntity;
 import com.learn.micro.resourceservice.kafka.ResourceProducer;
 import com.learn.micro.resourceservice.model.DeleteResourceResponse;
 import com.learn.micro.resourceservice.model.GetResourceResponse;
 import com.learn.micro.resourceservice.model.Storage;
 import com.learn.micro.resourceservice.model.UploadResourceResponse;
+import com.learn.micro.resourceservice.repository.OutboxEventRepository;
+import com.learn.micro.resourceservice.repository.PostgresTestDatabase;
 import com.learn.micro.resourceservice.repository.ResourceRepository;
+import com.learn.micro.resourceservice.service.Mp3ContentCache;
 import com.learn.micro.resourceservice.service.ResourceService;
 import com.learn.micro.resourceservice.service.S3Service;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
 @SpringBootTest
@@ -40,6 +53,12 @@ class ResourceServiceIntegrationTest {
     @Autowired
     private ResourceRepository resourceRepository;
 
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private Mp3ContentCache mp3ContentCache;
+
     @MockitoBean
     private S3Service s3Service;
 
@@ -49,9 +68,16 @@ class ResourceServiceIntegrationTest {
     @MockitoBean
     private StorageClient storageClient;
 
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", PostgresTestDatabase::jdbcUrl);
+    }
+
     @BeforeEach
     void setUp() {
         resourceRepository.deleteAll();
+        outboxEventRepository.deleteAll();
+        mp3ContentCache.invalidateAll();
         when(storageClient.fetchStorage("STAGING")).thenReturn(stagingStorage);
     }
 
@@ -73,6 +99,30 @@ class ResourceServiceIntegrationTest {
         ResourceEntity savedEntity = resourceRepository.findById(response.id()).orElseThrow();
         assertEquals(mockS3Location, savedEntity.getS3Location());
         verify(s3Service).uploadMp3File(mp3File, stagingStorage);
+        List<OutboxEventEntity> outboxEvents = outboxEventRepository.findAll();
+        assertEquals(1, outboxEvents.size());
+        assertEquals(String.valueOf(response.id()), outboxEvents.get(0).getResourceId());
+        assertEquals("CREATE", outboxEvents.get(0).getEventType());
+    }
+
+    /**
+     * Tests the streaming upload path: the body is handed to S3 as a stream
+     * together with the declared content length, and the resource is persisted.
+     */
+    @Test
+    void whenUploadMp3StreamSaveFileAndReturnResponse() {
+        // given
+        byte[] mp3File = new byte[]{'I', 'D', '3', 0, 0, 0};
+        String mockS3Location = "test-bucket/test-stream.mp3";
+        when(s3Service.uploadMp3File(any(InputStream.class), eq(6L), eq(stagingStorage)))
+            .thenReturn(mockS3Location);
+        // when
+        UploadResourceResponse response =
+            resourceService.save(new ByteArrayInputStream(mp3File), mp3File.length);
+        // then
+        assertNotNull(response);
+        ResourceEntity savedEntity = resourceRepository.findById(response.id()).orElseThrow();
+        assertEquals(mockS3Location, savedEntity.getS3Location());
     }
 
     /**
@@ -80,18 +130,113 @@ class ResourceServiceIntegrationTest {
      * Verifies that the ResourceService returns the correct byte content.
      */
     @Test
-    void whenFindByIdReturnFileContent() {
+    void whenFindByIdReturnFileContent() throws IOException {
         // given
         byte[] mp3File = new byte[]{'I', 'D', '3', 0, 0, 0};
         String s3Location = "test-bucket/test-file.mp3";
-        ResourceEntity entity = resourceRepository.save(new ResourceEntity(null, s3Location, "STAGING"));
-        when(s3Service.downloadMp3File(s3Location, stagingStorage)).thenReturn(mp3File);
+        ResourceEntity entity = resourceRepository.save(new ResourceEntity(null, s3Location, "STAGING", null));
+        when(s3Service.downloadMp3FileAsync(s3Location, stagingStorage, null, null)).thenReturn(
+            CompletableFuture.completedFuture(
+                new GetResourceResponse(new ByteArrayInputStream(mp3File), mp3File.length, null, null)));
         // when
-        GetResourceResponse response = resourceService.findById(entity.getId().toString());
+        GetResourceResponse response = resourceService.findById(entity.getId().toString(), null, null).join();
         // then
         assertNotNull(response);
-        assertArrayEquals(mp3File, response.content());
-        verify(s3Service).downloadMp3File(s3Location, stagingStorage);
+        assertFalse(response.isPartial());
+        assertArrayEquals(mp3File, response.content().readAllBytes());
+        verify(s3Service).downloadMp3FileAsync(s3Location, stagingStorage, null, null);
+    }
+
+    /**
+     * Tests that a single HTTP byte range is translated into a ranged S3 read.
+     */
+    @Test
+    void whenFindByIdWithRangeRequestRangedRead() throws IOException {
+        // given
+        byte[] firstBytes = new byte[]{'I', 'D', '3'};
+        String s3Location = "test-bucket/test-file.mp3";
+        ResourceEntity entity = resourceRepository.save(new ResourceEntity(null, s3Location, "STAGING", null));
+        when(s3Service.downloadMp3FileAsync(s3Location, stagingStorage, "bytes=0-2", "\"etag\""))
+            .thenReturn(CompletableFuture.completedFuture(new GetResourceResponse(
+                new ByteArrayInputStream(firstBytes), firstBytes.length, "bytes 0-2/6", "\"etag\"")));
+        // when
+        GetResourceResponse response =
+            resourceService.findById(entity.getId().toString(), "bytes=0-2", "\"etag\"").join();
+        // then
+        assertEquals("bytes 0-2/6", response.contentRange());
+        assertArrayEquals(firstBytes, response.content().readAllBytes());
+    }
+
+    /**
+     * Tests that a malformed Range header is ignored and the whole file is read.
+     */
+    @Test
+    void whenFindByIdWithMalformedRangeReadWholeFile() throws IOException {
+        // given
+        byte[] mp3File = new byte[]{'I', 'D', '3', 0, 0, 0};
+        String s3Location = "test-bucket/test-malformed-range.mp3";
+        ResourceEntity entity = resourceRepository.save(new ResourceEntity(null, s3Location, "STAGING", null));
+        when(s3Service.downloadMp3FileAsync(s3Location, stagingStorage, null, null)).thenReturn(
+            CompletableFuture.completedFuture(
+                new GetResourceResponse(new ByteArrayInputStream(mp3File), mp3File.length, null, "\"etag\"")));
+        // when
+        GetResourceResponse response = resourceService.findById(entity.getId().toString(), "bytes=abc", null).join();
+        // then
+        assertNull(response.contentRange());
+        assertArrayEquals(mp3File, response.content().readAllBytes());
+    }
+
+    /**
+     * Tests that a file read to the end is cached, so the next reads, ranged or not,
+     * do not go to S3 again.
+     */
+    @Test
+    void whenFindByIdTwiceServeSecondReadFromCache() throws IOException {
+        // given
+        byte[] mp3File = new byte[]{'I', 'D', '3', 0, 0, 0};
+        String s3Location = "test-bucket/test-cached.mp3";
+        ResourceEntity entity = resourceRepository.save(new ResourceEntity(null, s3Location, "STAGING", null));
+        when(s3Service.downloadMp3FileAsync(s3Location, stagingStorage, null, null)).thenReturn(
+            CompletableFuture.completedFuture(
+                new GetResourceResponse(new ByteArrayInputStream(mp3File), mp3File.length, null, "\"etag\"")));
+        String id = entity.getId().toString();
+        resourceService.findById(id, null, null).join().content().readAllBytes();
+        // when
+        GetResourceResponse full = resourceService.findById(id, null, null).join();
+        GetResourceResponse ranged = resourceService.findById(id, "bytes=0-2", "\"etag\"").join();
+        // then
+        assertArrayEquals(mp3File, full.content().readAllBytes());
+        assertEquals("bytes 0-2/6", ranged.contentRange());
+        assertArrayEquals(new byte[]{'I', 'D', '3'}, ranged.content().readAllBytes());
+        verify(s3Service, times(1)).downloadMp3FileAsync(any(), any(), any(), any());
+    }
+
+    /**
+     * Tests that a range conditional on a date is read from S3 even when the file is cached, as
+     * the cache cannot check the date, so the response does not depend on the cache.
+     */
+    @Test
+    void whenFindByIdWithDateIfRangeReadRangeFromS3() throws IOException {
+        // given
+        byte[] mp3File = new byte[]{'I', 'D', '3', 0, 0, 0};
+        byte[] firstBytes = new byte[]{'I', 'D', '3'};
+        String date = "Wed, 21 Oct 2015 07:28:00 GMT";
+        String s3Location = "test-bucket/test-dated.mp3";
+        ResourceEntity entity = resourceRepository.save(new ResourceEntity(null, s3Location, "STAGING", null));
+        when(s3Service.downloadMp3FileAsync(s3Location, stagingStorage, null, null)).thenReturn(
+            CompletableFuture.completedFuture(
+                new GetResourceResponse(new ByteArrayInputStream(mp3File), mp3File.length, null, "\"etag\"")));
+        when(s3Service.downloadMp3FileAsync(s3Location, stagingStorage, "bytes=0-2", date))
+            .thenReturn(CompletableFuture.completedFuture(new GetResourceResponse(
+                new ByteArrayInputStream(firstBytes), firstBytes.length, "bytes 0-2/6", "\"etag\"")));
+        String id = entity.getId().toString();
+        resourceService.findById(id, null, null).join().content().readAllBytes();
+        // when
+        GetResourceResponse ranged = resourceService.findById(id, "bytes=0-2", date).join();
+        // then
+        assertEquals("bytes 0-2/6", ranged.contentRange());
+        assertArrayEquals(firstBytes, ranged.content().readAllBytes());
+        verify(s3Service).downloadMp3FileAsync(s3Location, stagingStorage, "bytes=0-2", date);
     }
 
     /**
@@ -102,14 +247,78 @@ class ResourceServiceIntegrationTest {
     void whenDeleteRemoveFromDbAndS3() {
         // given
         String s3Location = "test-bucket/test-file.mp3";
-        ResourceEntity entity = resourceRepository.save(new ResourceEntity(null, s3Location, "STAGING"));
-        doNothing().when(s3Service).deleteMp3File(s3Location, stagingStorage);
+        ResourceEntity entity = resourceRepository.save(new ResourceEntity(null, s3Location, "STAGING", null));
+        when(s3Service.deleteMp3Files(List.of(s3Location), stagingStorage))
+            .thenReturn(List.of(s3Location));
         // when
         DeleteResourceResponse response = resourceService.delete(entity.getId().toString());
         // then
         assertEquals(List.of(entity.getId()), response.ids());
         assertFalse(resourceRepository.existsById(entity.getId()));
-        verify(s3Service).deleteMp3File(s3Location, stagingStorage);
+        verify(s3Service).deleteMp3Files(List.of(s3Location), stagingStorage);
+    }
+
+    /**
+     * Tests that a multi-id delete removes all rows in one pass and reports
+     * only the ids whose S3 objects were deleted.
+     */
+    @Test
+    void whenDeleteSeveralReportOnlyIdsRemovedFromS3() {
+        // given
+        ResourceEntity first = resourceRepository.save(new ResourceEntity(null, "test-bucket/first.mp3", "STAGING", null));
+        ResourceEntity second = resourceRepository.save(new ResourceEntity(null, "test-bucket/second.mp3", "STAGING", null));
+        when(s3Service.deleteMp3Files(any(), any())).thenReturn(List.of("test-bucket/first.mp3"));
+        // when
+        DeleteResourceResponse response = resourceService.delete(first.getId() + "," + second.getId() + ",999");
+        // then
+        assertEquals(List.of(first.getId()), response.ids());
+        assertFalse(resourceRepository.existsById(first.getId()));
+        assertFalse(resourceRepository.existsById(second.getId()));
+        List<OutboxEventEntity> outboxEvents = outboxEventRepository.findAll();
+        assertEquals(1, outboxEvents.size());
+        assertEquals(String.valueOf(first.getId()), outboxEvents.get(0).getResourceId());
+        assertEquals("DELETE", outboxEvents.get(0).getEventType());
+        verify(resourceProducer, never()).send(any(), any());
+    }
+
+    /**
+     * Tests that re-uploading the same content links the new resource to the stored object
+     * instead of storing it again, and that the CREATE event names the original resource.
+     */
+    @Test
+    void whenUploadSameContentTwiceLinkToExistingObject() {
+        // given
+        byte[] mp3File = new byte[]{'I', 'D', '3', 4, 0, 0};
+        String mockS3Location = "s3://test-bucket/files/original.mp3";
+        when(s3Service.uploadMp3File(mp3File, stagingStorage)).thenReturn(mockS3Location);
+        UploadResourceResponse original = resourceService.save(mp3File);
+        // when
+        UploadResourceResponse duplicate = resourceService.save(mp3File.clone());
+        // then
+        ResourceEntity duplicateEntity = resourceRepository.findById(duplicate.id()).orElseThrow();
+        assertEquals(mockS3Location, duplicateEntity.getS3Location());
+        verify(s3Service).uploadMp3File(any(byte[].class), any());
+        OutboxEventEntity duplicateEvent = outboxEventRepository.findAll().stream()
+            .filter(event -> event.getResourceId().equals(String.valueOf(duplicate.id())))
+            .findFirst().orElseThrow();
+        assertTrue(duplicateEvent.getPayload().contains("\"sourceResourceId\":\"" + original.id() + "\""));
+    }
+
+    /**
+     * Tests that deleting one of two resources sharing an object keeps the object in S3.
+     */
+    @Test
+    void whenDeleteSharedResourceKeepObjectForRemainingReference() {
+        // given
+        String s3Location = "s3://test-bucket/files/shared.mp3";
+        ResourceEntity first = resourceRepository.save(new ResourceEntity(null, s3Location, "STAGING", "hash"));
+        ResourceEntity second = resourceRepository.save(new ResourceEntity(null, s3Location, "STAGING", "hash"));
+        // when
+        DeleteResourceResponse response = resourceService.delete(first.getId().toString());
+        // then
+        assertEquals(List.of(first.getId()), response.ids());
+        assertTrue(resourceRepository.existsById(second.getId()));
+        verify(s3Service, never()).deleteMp3Files(any(), any());
     }
 
     /**
@@ -121,7 +330,10 @@ class ResourceServiceIntegrationTest {
         byte[] invalidFile = new byte[]{0, 1, 2, 3};
         // when and then
         assertThrows(IllegalArgumentException.class, () -> resourceService.save(invalidFile));
+        assertThrows(IllegalArgumentException.class,
+            () -> resourceService.save(new ByteArrayInputStream(invalidFile), invalidFile.length));
         verify(s3Service, never()).uploadMp3File(any(),any());
+        verify(s3Service, never()).uploadMp3File(any(), eq(4L), any());
     }
 
     /**
@@ -132,7 +344,7 @@ class ResourceServiceIntegrationTest {
         // given
         String nonExistentId = "999";
         // when and then
-        assertThrows(Exception.class, () -> resourceService.findById(nonExistentId));
+        assertThrows(Exception.class, () -> resourceService.findById(nonExistentId, null, null));
     }
 
     /**
@@ -146,6 +358,6 @@ class ResourceServiceIntegrationTest {
         DeleteResourceResponse response = resourceService.delete(nonExistentId);
         // then
         assertEquals(List.of(), response.ids());
-        verify(s3Service, never()).deleteMp3File(any(), any());
+        verify(s3Service, never()).deleteMp3Files(any(), any());
     }
 }
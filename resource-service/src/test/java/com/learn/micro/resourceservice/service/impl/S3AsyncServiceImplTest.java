@@ -0,0 +1,228 @@
+package com.learn.micro.resourceservice.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceservice.exception.GeneralFailureException;
+import com.learn.micro.resourceservice.exception.RangeNotSatisfiableException;
+import com.learn.micro.resourceservice.model.GetResourceResponse;
+import com.learn.micro.resourceservice.model.Storage;
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Error;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+@ExtendWith(MockitoExtension.class)
+class S3AsyncServiceImplTest {
+
+    private static final String LOCATION = "s3://permanent-bucket/files/song.mp3";
+    private static final Storage STORAGE = new Storage("PERMANENT", "permanent-bucket", "/files");
+    private static final String RANGE = "bytes=0-3";
+    private static final String ETAG = "\"abc\"";
+
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
+    private S3AsyncServiceImpl s3AsyncService;
+
+    @BeforeEach
+    void setUp() {
+        s3AsyncService = new S3AsyncServiceImpl(s3AsyncClient, 3, Duration.ofMillis(1), Duration.ofMillis(5),
+            DataSize.ofMegabytes(5), DataSize.ofMegabytes(256), DataSize.ofMegabytes(128));
+    }
+
+    /**
+     * Test that a range with a strong entity tag as If-Range is sent as a ranged
+     * GetObject with If-Match, and that the partial response is passed through.
+     */
+    @Test
+    void downloadMp3File_shouldSendRangeWithIfMatch_whenIfRangeIsEntityTag() {
+        // given
+        ArgumentCaptor<GetObjectRequest> request = ArgumentCaptor.forClass(GetObjectRequest.class);
+        when(s3AsyncClient.getObject(request.capture(), any(AsyncResponseTransformer.class)))
+            .thenReturn(CompletableFuture.completedFuture(object(4, "bytes 0-3/10")));
+        // when
+        GetResourceResponse response = s3AsyncService.downloadMp3File(LOCATION, STORAGE, RANGE, ETAG);
+        // then
+        assertEquals("permanent-bucket", request.getValue().bucket());
+        assertEquals("/files/song.mp3", request.getValue().key());
+        assertEquals(RANGE, request.getValue().range());
+        assertEquals(ETAG, request.getValue().ifMatch());
+        assertTrue(response.isPartial());
+        assertEquals(4, response.contentLength());
+    }
+
+    /**
+     * Test that a weak entity tag as If-Range drops the range,
+     * since a weak validator can never match.
+     */
+    @Test
+    void downloadMp3File_shouldIgnoreRange_whenIfRangeIsWeakEntityTag() {
+        // given
+        ArgumentCaptor<GetObjectRequest> request = ArgumentCaptor.forClass(GetObjectRequest.class);
+        when(s3AsyncClient.getObject(request.capture(), any(AsyncResponseTransformer.class)))
+            .thenReturn(CompletableFuture.completedFuture(object(10, null)));
+        // when
+        GetResourceResponse response = s3AsyncService.downloadMp3File(LOCATION, STORAGE, RANGE, "W/\"abc\"");
+        // then
+        assertNull(request.getValue().range());
+        assertFalse(response.isPartial());
+    }
+
+    /**
+     * Test that a 412 on a ranged read, the If-Range validator no longer matching,
+     * falls back to reading the whole object.
+     */
+    @Test
+    void downloadMp3File_shouldReadWholeObject_whenIfRangePreconditionFails() {
+        // given
+        ArgumentCaptor<GetObjectRequest> request = ArgumentCaptor.forClass(GetObjectRequest.class);
+        when(s3AsyncClient.getObject(request.capture(), any(AsyncResponseTransformer.class)))
+            .thenReturn(CompletableFuture.failedFuture(s3Exception(412)))
+            .thenReturn(CompletableFuture.completedFuture(object(10, null)));
+        // when
+        GetResourceResponse response = s3AsyncService.downloadMp3File(LOCATION, STORAGE, RANGE, ETAG);
+        // then
+        List<GetObjectRequest> requests = request.getAllValues();
+        assertEquals(2, requests.size());
+        assertEquals(RANGE, requests.get(0).range());
+        assertNull(requests.get(1).range());
+        assertNull(requests.get(1).ifMatch());
+        assertFalse(response.isPartial());
+        assertEquals(10, response.contentLength());
+    }
+
+    /**
+     * Test that a 416 surfaces as {@link RangeNotSatisfiableException}
+     * and is not retried.
+     */
+    @Test
+    void downloadMp3File_shouldThrowRangeNotSatisfiable_whenRangeOutsideObject() {
+        // given
+        when(s3AsyncClient.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+            .thenReturn(CompletableFuture.failedFuture(s3Exception(416)));
+        // when and then
+        assertThrows(RangeNotSatisfiableException.class,
+            () -> s3AsyncService.downloadMp3File(LOCATION, STORAGE, "bytes=100-200", null));
+        verify(s3AsyncClient, times(1)).getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class));
+    }
+
+    /**
+     * Test that a transient 503 is retried after a backoff
+     * and the call succeeds on the next attempt.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void deleteMp3File_shouldRetry_whenS3Unavailable() {
+        // given
+        when(s3AsyncClient.deleteObject(any(Consumer.class)))
+            .thenReturn(CompletableFuture.failedFuture(s3Exception(503)))
+            .thenReturn(CompletableFuture.completedFuture(DeleteObjectResponse.builder().build()));
+        // when
+        s3AsyncService.deleteMp3File(LOCATION, STORAGE);
+        // then
+        verify(s3AsyncClient, times(2)).deleteObject(any(Consumer.class));
+    }
+
+    /**
+     * Test that a client error such as 403 is not retried
+     * and surfaces as {@link GeneralFailureException}.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void deleteMp3File_shouldFailWithoutRetry_whenErrorIsNotTransient() {
+        // given
+        when(s3AsyncClient.deleteObject(any(Consumer.class)))
+            .thenReturn(CompletableFuture.failedFuture(s3Exception(403)));
+        // when and then
+        assertThrows(GeneralFailureException.class, () -> s3AsyncService.deleteMp3File(LOCATION, STORAGE));
+        verify(s3AsyncClient, times(1)).deleteObject(any(Consumer.class));
+    }
+
+    /**
+     * Test that retries give up after the configured number of attempts.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void deleteMp3File_shouldGiveUp_afterMaxAttempts() {
+        // given
+        when(s3AsyncClient.deleteObject(any(Consumer.class)))
+            .thenReturn(CompletableFuture.failedFuture(s3Exception(500)));
+        // when and then
+        assertThrows(GeneralFailureException.class, () -> s3AsyncService.deleteMp3File(LOCATION, STORAGE));
+        verify(s3AsyncClient, times(3)).deleteObject(any(Consumer.class));
+    }
+
+    /**
+     * Test that keys are deleted in batches of at most 1000
+     * and that keys S3 reports as failed are left out of the result.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void deleteMp3Files_shouldBatchKeysAndSkipFailedOnes() {
+        // given
+        List<String> locations = IntStream.range(0, 1001)
+            .mapToObj(i -> "s3://permanent-bucket/files/" + i + ".mp3")
+            .toList();
+        ArgumentCaptor<Consumer<DeleteObjectsRequest.Builder>> request = ArgumentCaptor.forClass(Consumer.class);
+        when(s3AsyncClient.deleteObjects(request.capture()))
+            .thenReturn(CompletableFuture.completedFuture(DeleteObjectsResponse.builder()
+                .errors(S3Error.builder().key("/files/7.mp3").code("AccessDenied").build())
+                .build()))
+            .thenReturn(CompletableFuture.completedFuture(DeleteObjectsResponse.builder().build()));
+        // when
+        List<String> deleted = s3AsyncService.deleteMp3Files(locations, STORAGE);
+        // then
+        List<Integer> batchSizes = request.getAllValues().stream()
+            .map(consumer -> {
+                DeleteObjectsRequest.Builder builder = DeleteObjectsRequest.builder();
+                consumer.accept(builder);
+                return builder.build().delete().objects().size();
+            })
+            .toList();
+        assertEquals(List.of(1000, 1), batchSizes);
+        assertEquals(1000, deleted.size());
+        assertFalse(deleted.contains("s3://permanent-bucket/files/7.mp3"));
+    }
+
+    private static ResponseInputStream<GetObjectResponse> object(long contentLength, String contentRange) {
+        GetObjectResponse response = GetObjectResponse.builder()
+            .contentLength(contentLength)
+            .contentRange(contentRange)
+            .eTag(ETAG)
+            .build();
+        return new ResponseInputStream<>(response,
+            AbortableInputStream.create(new ByteArrayInputStream(new byte[(int) contentLength])));
+    }
+
+    private static S3Exception s3Exception(int statusCode) {
+        return (S3Exception) S3Exception.builder().statusCode(statusCode).message("status " + statusCode).build();
+    }
+}
@@ -0,0 +1,183 @@
+package com.learn.micro.resourceservice.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.learn.micro.resourceservice.exception.GeneralFailureException;
+import com.learn.micro.resourceservice.model.Storage;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CopyPartResult;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyResponse;
+import software.amazon.awssdk.utils.builder.SdkBuilder;
+
+@ExtendWith(MockitoExtension.class)
+@SuppressWarnings("unchecked")
+class S3ServiceImplTest {
+
+    private static final String LOCATION = "s3://staging-bucket/files/song.mp3";
+    private static final Storage TARGET = new Storage("PERMANENT", "permanent-bucket", "/files");
+    private static final long THRESHOLD = 10;
+    private static final long PART_SIZE = 4;
+    private static final String UPLOAD_ID = "upload-1";
+
+    @Mock
+    private S3Client s3Client;
+
+    private S3ServiceImpl s3Service;
+
+    @BeforeEach
+    void setUp() {
+        s3Service = new S3ServiceImpl(s3Client);
+        ReflectionTestUtils.setField(s3Service, "multipartCopyThreshold", DataSize.ofBytes(THRESHOLD));
+        ReflectionTestUtils.setField(s3Service, "copyPartSize", DataSize.ofBytes(PART_SIZE));
+    }
+
+    /**
+     * Test that an object below the multipart threshold is copied with a single CopyObject to
+     * the returned location, and the source is deleted.
+     */
+    @Test
+    void moveFile_shouldUseCopyObject_belowThreshold() {
+        // given
+        givenObjectSize(THRESHOLD - 1);
+        ArgumentCaptor<Consumer<CopyObjectRequest.Builder>> copy = ArgumentCaptor.forClass(Consumer.class);
+        when(s3Client.copyObject(copy.capture())).thenReturn(null);
+        ArgumentCaptor<DeleteObjectRequest> delete = ArgumentCaptor.forClass(DeleteObjectRequest.class);
+        when(s3Client.deleteObject(delete.capture())).thenReturn(DeleteObjectResponse.builder().build());
+        // when
+        String location = s3Service.moveFile(LOCATION, TARGET);
+        // then
+        CopyObjectRequest request = build(copy.getValue(), CopyObjectRequest::builder);
+        assertEquals("staging-bucket", request.sourceBucket());
+        assertEquals("/files/song.mp3", request.sourceKey());
+        assertEquals("s3://permanent-bucket" + request.destinationKey(), location);
+        assertEquals("/files/song.mp3", delete.getValue().key());
+        verify(s3Client, never()).createMultipartUpload(any(Consumer.class));
+    }
+
+    /**
+     * Test that an object at the threshold is copied with UploadPartCopy, the last part ending
+     * at the last byte when the size is not a multiple of the part size.
+     */
+    @Test
+    void moveFile_shouldCopyInParts_atThreshold() {
+        // given
+        givenObjectSize(THRESHOLD);
+        givenMultipartUpload();
+        ArgumentCaptor<Consumer<UploadPartCopyRequest.Builder>> partCopy = ArgumentCaptor.forClass(Consumer.class);
+        when(s3Client.uploadPartCopy(partCopy.capture())).thenAnswer(invocation -> {
+            UploadPartCopyRequest request = build(invocation.getArgument(0), UploadPartCopyRequest::builder);
+            return UploadPartCopyResponse.builder()
+                .copyPartResult(CopyPartResult.builder().eTag("etag-" + request.partNumber()).build())
+                .build();
+        });
+        ArgumentCaptor<Consumer<CompleteMultipartUploadRequest.Builder>> complete =
+            ArgumentCaptor.forClass(Consumer.class);
+        when(s3Client.completeMultipartUpload(complete.capture())).thenReturn(null);
+        when(s3Client.deleteObject(any(DeleteObjectRequest.class))).thenReturn(DeleteObjectResponse.builder().build());
+        // when
+        s3Service.moveFile(LOCATION, TARGET);
+        // then
+        List<UploadPartCopyRequest> parts = partCopy.getAllValues().stream()
+            .map(consumer -> build(consumer, UploadPartCopyRequest::builder))
+            .toList();
+        assertEquals(List.of("bytes=0-3", "bytes=4-7", "bytes=8-9"),
+            parts.stream().map(UploadPartCopyRequest::copySourceRange).toList());
+        assertEquals(List.of(1, 2, 3), parts.stream().map(UploadPartCopyRequest::partNumber).toList());
+        CompleteMultipartUploadRequest completeRequest = build(complete.getValue(),
+            CompleteMultipartUploadRequest::builder);
+        assertEquals(UPLOAD_ID, completeRequest.uploadId());
+        assertEquals(List.of("etag-1", "etag-2", "etag-3"),
+            completeRequest.multipartUpload().parts().stream().map(CompletedPart::eTag).toList());
+        verify(s3Client, never()).copyObject(any(Consumer.class));
+    }
+
+    /**
+     * Test that a failing part copy aborts the multipart upload, keeps the source and surfaces
+     * as {@link GeneralFailureException}.
+     */
+    @Test
+    void moveFile_shouldAbortMultipartUpload_whenPartCopyFails() {
+        // given
+        givenObjectSize(THRESHOLD);
+        givenMultipartUpload();
+        when(s3Client.uploadPartCopy(any(Consumer.class)))
+            .thenReturn(UploadPartCopyResponse.builder()
+                .copyPartResult(CopyPartResult.builder().eTag("etag-1").build())
+                .build())
+            .thenThrow(SdkClientException.create("connection reset"));
+        // when and then
+        assertThrows(GeneralFailureException.class, () -> s3Service.moveFile(LOCATION, TARGET));
+        verify(s3Client).abortMultipartUpload(any(Consumer.class));
+        verify(s3Client, never()).completeMultipartUpload(any(Consumer.class));
+        verify(s3Client, never()).deleteObject(any(DeleteObjectRequest.class));
+    }
+
+    /**
+     * Test that a retry after the source could not be deleted copies onto the same destination
+     * key, so no orphaned copy is left behind.
+     */
+    @Test
+    void moveFile_shouldReuseDestinationKey_whenRetryingAfterFailedDelete() {
+        // given
+        givenObjectSize(THRESHOLD - 1);
+        ArgumentCaptor<Consumer<CopyObjectRequest.Builder>> copy = ArgumentCaptor.forClass(Consumer.class);
+        when(s3Client.copyObject(copy.capture())).thenReturn(null);
+        when(s3Client.deleteObject(any(DeleteObjectRequest.class)))
+            .thenThrow(S3Exception.builder().statusCode(503).message("status 503").build())
+            .thenReturn(DeleteObjectResponse.builder().build());
+        // when
+        String location = s3Service.moveFile(LOCATION, TARGET);
+        // then
+        List<String> destinationKeys = copy.getAllValues().stream()
+            .map(consumer -> build(consumer, CopyObjectRequest::builder).destinationKey())
+            .toList();
+        assertEquals(2, destinationKeys.size());
+        assertEquals(destinationKeys.get(0), destinationKeys.get(1));
+        assertEquals("s3://permanent-bucket" + destinationKeys.get(0), location);
+        verify(s3Client, times(2)).deleteObject(any(DeleteObjectRequest.class));
+    }
+
+    private void givenObjectSize(long size) {
+        when(s3Client.headObject(any(Consumer.class)))
+            .thenReturn(HeadObjectResponse.builder().contentLength(size).build());
+    }
+
+    private void givenMultipartUpload() {
+        when(s3Client.createMultipartUpload(any(Consumer.class)))
+            .thenReturn(CreateMultipartUploadResponse.builder().uploadId(UPLOAD_ID).build());
+    }
+
+    private static <B extends SdkBuilder<B, R>, R> R build(
+        Consumer<B> consumer, Supplier<B> builder) {
+        B requestBuilder = builder.get();
+        consumer.accept(requestBuilder);
+        return requestBuilder.build();
+    }
+}
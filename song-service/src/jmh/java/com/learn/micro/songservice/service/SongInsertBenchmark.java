@@ -0,0 +1,164 @@
+package com.learn.micro.songservice.service;
+
+import com.learn.micro.songservice.SongServiceApplication;
+import com.learn.micro.songservice.mapper.SongMapper;
+import com.learn.micro.songservice.model.SaveSongResponse;
+import com.learn.micro.songservice.model.SongDto;
+import com.learn.micro.songservice.repository.PostgresTestDatabase;
+import com.learn.micro.songservice.repository.SongRepository;
+import jakarta.persistence.EntityExistsException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Compares inserting one song as {@link SongService#save} did before (a {@code findById} check,
+ * then {@code SongRepository.save}, which merges the entity with an assigned id and so selects it
+ * once more) with the current single {@code INSERT ... ON CONFLICT DO NOTHING}. The application
+ * runs against the embedded PostgreSQL of the tests, with the song-db schema. Every statement the
+ * application prepares is counted, and the {@link Statements} counters report them next to the
+ * throughput, for the measured iterations only. Run with {@code mvn -Pjmh test-compile exec:exec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 15, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SongInsertBenchmark {
+
+    private static final AtomicLong STATEMENTS = new AtomicLong();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private ConfigurableApplicationContext context;
+    private SongService songService;
+    private SongRepository songRepository;
+    private SongMapper songMapper;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(SongServiceApplication.class)
+            .web(WebApplicationType.NONE)
+            .initializers(applicationContext -> applicationContext.getBeanFactory()
+                .addBeanPostProcessor(new BeanPostProcessor() {
+                    @Override
+                    public Object postProcessAfterInitialization(Object bean, String beanName) {
+                        return bean instanceof DataSource dataSource ? countStatements(dataSource) : bean;
+                    }
+                }))
+            .run("--spring.datasource.url=" + PostgresTestDatabase.jdbcUrl(),
+                "--spring.datasource.username=" + PostgresTestDatabase.USER,
+                "--spring.datasource.password=" + PostgresTestDatabase.USER,
+                "--spring.jpa.show-sql=false",
+                "--eureka.client.enabled=false",
+                "--management.tracing.enabled=false",
+                "--logging.level.root=WARN");
+        songService = context.getBean(SongService.class);
+        songRepository = context.getBean(SongRepository.class);
+        songMapper = context.getBean(SongMapper.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Statements prepared by the inserts, reported by JMH as {@code statements} and
+     * {@code inserts}. Event counters are summed over the measured iterations, so statements per
+     * insert is the ratio of the two totals.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Statements {
+
+        public long statements;
+        public long inserts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+            inserts = 0;
+        }
+
+        void count(long statementsBefore) {
+            statements += STATEMENTS.get() - statementsBefore;
+            inserts++;
+        }
+    }
+
+    @Benchmark
+    public SaveSongResponse saveWithPreCheck(Statements statements) {
+        long statementsBefore = STATEMENTS.get();
+        SongDto song = nextSong();
+        songRepository.findById(song.getId()).ifPresent(entity -> {
+            throw new EntityExistsException("Song with id " + entity.getId() + " already exists");
+        });
+        SaveSongResponse response =
+            songMapper.mapEntityToSavedSongDto(songRepository.save(songMapper.mapSongDtoToEntity(song)));
+        statements.count(statementsBefore);
+        return response;
+    }
+
+    @Benchmark
+    public SaveSongResponse saveWithUpsert(Statements statements) {
+        long statementsBefore = STATEMENTS.get();
+        SaveSongResponse response = songService.save(nextSong());
+        statements.count(statementsBefore);
+        return response;
+    }
+
+    private SongDto nextSong() {
+        int id = nextId.incrementAndGet();
+        return new SongDto(id, "Song " + id, "Artist " + id % 100, "Album " + id % 1000, "03:45", "2001");
+    }
+
+    private static DataSource countStatements(DataSource dataSource) {
+        return (DataSource) Proxy.newProxyInstance(SongInsertBenchmark.class.getClassLoader(),
+            new Class<?>[] {DataSource.class}, (proxy, method, args) -> {
+                Object result = invoke(dataSource, method, args);
+                return result instanceof Connection connection ? countStatements(connection) : result;
+            });
+    }
+
+    private static Connection countStatements(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(SongInsertBenchmark.class.getClassLoader(),
+            new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                String name = method.getName();
+                if (name.equals("prepareStatement") || name.equals("createStatement")
+                    || name.equals("prepareCall")) {
+                    STATEMENTS.incrementAndGet();
+                }
+                return invoke(connection, method, args);
+            });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.learn.micro.songservice.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.learn.micro.songservice.model.SongDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Read-through cache of songs by id for {@code GET /songs/{id}}. Songs are kept as their JSON, so
+ * no caller can change a cached copy; ids that do not exist are cached as well, for the shorter
+ * {@code negative-ttl}. Writes evict the ids they touched after they are committed. A load still
+ * running for an evicted id completes before the eviction and is then dropped, so a row read
+ * before the write cannot stay cached after it.
+ * <p>
+ * With {@code cross-instance.enabled} each eviction is also sent on the {@value #CHANNEL}
+ * PostgreSQL channel, where the {@link SongCacheInvalidationListener} of every other replica
+ * applies it. Hit rate is exported through the {@code cache.*} meters of the
+ * {@value #CACHE_NAME} cache, lookup time through the {@code songs.cache.lookup} timer.
+ */
+@Slf4j
+@Component
+public class SongCache {
+
+    static final String CHANNEL = "song_cache";
+    static final String CACHE_NAME = "songs";
+    // pg_notify rejects payloads of 8000 bytes and more
+    private static final int MAX_PAYLOAD_LENGTH = 7900;
+    private static final byte[] NOT_FOUND = new byte[0];
+
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final boolean crossInstance;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Cache<Integer, byte[]> cache;
+    private final Timer hitTimer;
+    private final Timer negativeHitTimer;
+    private final Timer missTimer;
+
+    public SongCache(ObjectMapper objectMapper, MeterRegistry meterRegistry, JdbcTemplate jdbcTemplate,
+        @Value("${app.song-cache.enabled:true}") boolean enabled,
+        @Value("${app.song-cache.maximum-size:10000}") long maximumSize,
+        @Value("${app.song-cache.ttl:10m}") Duration ttl,
+        @Value("${app.song-cache.negative-ttl:5s}") Duration negativeTtl,
+        @Value("${app.song-cache.cross-instance.enabled:false}") boolean crossInstance) {
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.crossInstance = crossInstance;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfter(Expiry.creating((Integer id, byte[] json) -> json.length == 0 ? negativeTtl : ttl))
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.hitTimer = lookupTimer(meterRegistry, "hit");
+        this.negativeHitTimer = lookupTimer(meterRegistry, "negative-hit");
+        this.missTimer = lookupTimer(meterRegistry, "miss");
+    }
+
+    /**
+     * The song with the given id, read through {@code loader} when it is not cached.
+     */
+    public Optional<SongDto> get(int id, Supplier<Optional<SongDto>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        long start = System.nanoTime();
+        boolean[] loaded = new boolean[1];
+        byte[] json = cache.get(id, key -> {
+            loaded[0] = true;
+            return loader.get().map(this::serialize).orElse(NOT_FOUND);
+        });
+        Optional<SongDto> song = json.length == 0 ? Optional.empty() : Optional.of(deserialize(json));
+        Timer timer = loaded[0] ? missTimer : song.isPresent() ? hitTimer : negativeHitTimer;
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return song;
+    }
+
+    /**
+     * Evicts the ids a committed write touched, here and, when enabled, on the other replicas.
+     */
+    public void evict(Collection<Integer> ids) {
+        if (!enabled || ids.isEmpty()) {
+            return;
+        }
+        cache.invalidateAll(ids);
+        if (crossInstance) {
+            publish(ids);
+        }
+    }
+
+    /**
+     * Applies an eviction sent by another replica; the ones this instance sent are skipped.
+     */
+    void onNotification(String payload) {
+        int separator = payload.indexOf(':');
+        if (separator < 0 || payload.substring(0, separator).equals(instanceId)) {
+            return;
+        }
+        cache.invalidateAll(Arrays.stream(payload.substring(separator + 1).split(","))
+            .map(Integer::valueOf)
+            .toList());
+    }
+
+    void clear() {
+        cache.invalidateAll();
+    }
+
+    private void publish(Collection<Integer> ids) {
+        StringJoiner payload = new StringJoiner(",", instanceId + ":", "");
+        try {
+            for (Integer id : ids) {
+                // room for a comma and ten digits
+                if (payload.length() + 11 > MAX_PAYLOAD_LENGTH) {
+                    notifyReplicas(payload.toString());
+                    payload = new StringJoiner(",", instanceId + ":", "");
+                }
+                payload.add(id.toString());
+            }
+            notifyReplicas(payload.toString());
+        } catch (DataAccessException e) {
+            log.warn("Failed to send cache eviction of songs {} to other replicas, they serve them until expiry: {}",
+                ids, e.getMessage());
+        }
+    }
+
+    private void notifyReplicas(String payload) {
+        jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", CHANNEL, payload);
+    }
+
+    private byte[] serialize(SongDto song) {
+        try {
+            return objectMapper.writeValueAsBytes(song);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize song " + song.getId(), e);
+        }
+    }
+
+    private SongDto deserialize(byte[] json) {
+        try {
+            return objectMapper.readValue(json, SongDto.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Timer lookupTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("songs.cache.lookup")
+            .description("Time to get a song by id through the cache")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,96 @@
+package com.learn.micro.songservice.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the song cache evictions of the other replicas. A background thread keeps a connection
+ * listening on the {@value SongCache#CHANNEL} channel. Evictions sent while it is not listening
+ * are lost, so the whole cache is cleared every time it (re)connects.
+ * <p>
+ * The connection is opened with the driver, outside the Hikari pool: a pooled connection would
+ * hold a pool slot for good and, once returned, hand its LISTEN registration to whichever
+ * request borrows it next. Closing it ends the session and the registration with it.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.song-cache.cross-instance.enabled", havingValue = "true")
+public class SongCacheInvalidationListener {
+
+    private static final int POLL_TIMEOUT_MS = 5000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long RECONNECT_DELAY_MS = 5000;
+    private final DataSourceProperties dataSourceProperties;
+    private final SongCache songCache;
+    private volatile boolean running;
+    private Thread thread;
+
+    public SongCacheInvalidationListener(DataSourceProperties dataSourceProperties, SongCache songCache) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.songCache = songCache;
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        thread = new Thread(this::listen, "song-cache-listener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        thread.join(POLL_TIMEOUT_MS + RECONNECT_DELAY_MS);
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = connect()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + SongCache.CHANNEL);
+                }
+                songCache.clear();
+                log.info("Listening for song cache evictions on channel {}", SongCache.CHANNEL);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running && connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            songCache.onNotification(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                log.warn("Song cache eviction listener failed, reconnecting: {}", e.getMessage());
+            }
+            if (running) {
+                pause();
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(),
+            dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package com.learn.micro.songservice.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.learn.micro.songservice.model.DeleteSongResponse;
 import com.learn.micro.songservice.model.SaveSongResponse;
+import com.learn.micro.songservice.model.SaveSongsResponse;
 import com.learn.micro.songservice.model.SongDto;
+import com.learn.micro.songservice.model.SongFilter;
+import com.learn.micro.songservice.model.SongPage;
 import com.learn.micro.songservice.service.SongService;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -16,6 +24,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -27,7 +36,10 @@ import lombok.extern.slf4j.Slf4j;
 @RequestMapping("/songs")
 public class SongController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final SongService songService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public ResponseEntity<SaveSongResponse> save(@Validated @RequestBody SongDto songDto) {
@@ -36,16 +48,62 @@ public class SongController {
         return ResponseEntity.ok(result);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<SaveSongsResponse> saveAll(@RequestBody List<SongDto> songDtos) {
+        log.info("Inside SongService Controller: Saving batch of {} songs", songDtos.size());
+        SaveSongsResponse result = songService.saveAll(songDtos);
+        return ResponseEntity.ok(result);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<SongDto> findById(@PathVariable String id) {
         SongDto result = songService.getById(id);
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * One page of the songs matching the filters, in id order; {@value #NEXT_CURSOR_HEADER}
+     * carries the {@code after} value for the next page and is absent on the last one.
+     */
     @GetMapping
-    public ResponseEntity<List<SongDto>> findAll() {
-        List<SongDto> result = songService.getAll();
-        return ResponseEntity.ok(result);
+    public ResponseEntity<List<SongDto>> findAll(@RequestParam(value = "after", required = false) String after,
+        @RequestParam(value = "limit", required = false) String limit,
+        @RequestParam(value = "artist", required = false) String artist,
+        @RequestParam(value = "album", required = false) String album,
+        @RequestParam(value = "name", required = false) String namePrefix,
+        @RequestParam(value = "yearFrom", required = false) String yearFrom,
+        @RequestParam(value = "yearTo", required = false) String yearTo,
+        @RequestParam(value = "durationFrom", required = false) String durationFrom,
+        @RequestParam(value = "durationTo", required = false) String durationTo) {
+        SongFilter filter = new SongFilter(artist, album, namePrefix, yearFrom, yearTo, durationFrom,
+            durationTo);
+        SongPage page = songService.getPage(filter, after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.nextCursor()));
+        }
+        return response.body(page.songs());
+    }
+
+    /**
+     * The whole catalog as one JSON array, written while the table is paged through, so the
+     * memory used does not depend on the number of songs.
+     */
+    @GetMapping(params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.createGenerator(outputStream);
+            try (Stream<SongDto> songs = songService.streamAll()) {
+                generator.writeStartArray();
+                Iterator<SongDto> iterator = songs.iterator();
+                while (iterator.hasNext()) {
+                    generator.writeObject(iterator.next());
+                }
+                generator.writeEndArray();
+            }
+            generator.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
     @DeleteMapping
@@ -0,0 +1,10 @@
+package com.learn.micro.songservice.model;
+
+import java.util.List;
+
+/**
+ * Results of a batch save, in the order the songs were sent.
+ */
+public record SaveSongsResponse(List<SongSaveResult> results) {
+
+}
@@ -0,0 +1,15 @@
+package com.learn.micro.songservice.model;
+
+/**
+ * Optional filters of {@code GET /songs}; null fields do not filter. Ranges are inclusive.
+ *
+ * @param artist       case-insensitive part of the artist
+ * @param album        case-insensitive part of the album
+ * @param namePrefix   case-insensitive start of the name
+ * @param yearFrom     four-digit year
+ * @param durationFrom mm:ss
+ */
+public record SongFilter(String artist, String album, String namePrefix, String yearFrom,
+                         String yearTo, String durationFrom, String durationTo) {
+
+}
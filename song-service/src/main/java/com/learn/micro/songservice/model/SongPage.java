@@ -0,0 +1,12 @@
+package com.learn.micro.songservice.model;
+
+import java.util.List;
+
+/**
+ * One page of songs in id order.
+ *
+ * @param nextCursor id to pass as {@code after} for the next page, null on the last page
+ */
+public record SongPage(List<SongDto> songs, Integer nextCursor) {
+
+}
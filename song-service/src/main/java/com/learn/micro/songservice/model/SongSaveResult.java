@@ -0,0 +1,8 @@
+package com.learn.micro.songservice.model;
+
+/**
+ * Outcome for one song of a batch save; {@code message} explains a song that was not created.
+ */
+public record SongSaveResult(Integer id, SongSaveStatus status, String message) {
+
+}
@@ -0,0 +1,7 @@
+package com.learn.micro.songservice.model;
+
+public enum SongSaveStatus {
+    CREATED,
+    ALREADY_EXISTS,
+    INVALID
+}
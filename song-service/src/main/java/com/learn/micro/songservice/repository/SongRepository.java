@@ -2,8 +2,10 @@ package com.learn.micro.songservice.repository;
 
 import com.learn.micro.songservice.entity.SongEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface SongRepository extends JpaRepository<SongEntity, Integer> {
+public interface SongRepository extends JpaRepository<SongEntity, Integer>,
+    JpaSpecificationExecutor<SongEntity>, SongRepositoryCustom {
 }
@@ -0,0 +1,26 @@
+package com.learn.micro.songservice.repository;
+
+import com.learn.micro.songservice.entity.SongEntity;
+import java.util.Collection;
+import java.util.List;
+
+public interface SongRepositoryCustom {
+
+    /**
+     * Inserts the songs with multi-row statements, skipping ids that already exist, and returns
+     * the ids that were actually inserted.
+     */
+    List<Integer> insertAllIgnoringExisting(List<SongEntity> songs);
+
+    /**
+     * Reads up to {@code limit} songs with an id above {@code afterId}, in id order. The rows are
+     * read with plain JDBC, so they are never held in a persistence context.
+     */
+    List<SongEntity> findPageAfter(int afterId, int limit);
+
+    /**
+     * Deletes the songs with the given ids in one statement and returns the ids that existed.
+     * The ids are bound as a single array, so any number of them takes one round trip.
+     */
+    List<Integer> deleteAllByIdReturningIds(Collection<Integer> ids);
+}
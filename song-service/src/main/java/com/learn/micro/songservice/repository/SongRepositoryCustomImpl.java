@@ -0,0 +1,73 @@
+package com.learn.micro.songservice.repository;
+
+import com.learn.micro.songservice.entity.SongEntity;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.StringJoiner;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+public class SongRepositoryCustomImpl implements SongRepositoryCustom {
+
+    // 6 parameters per row keeps a statement well under the 65535 bind parameters PostgreSQL allows
+    private static final int ROWS_PER_STATEMENT = 1000;
+
+    private static final RowMapper<SongEntity> SONG_ROW_MAPPER = (resultSet, rowNum) -> {
+        SongEntity song = new SongEntity();
+        song.setId(resultSet.getInt("id"));
+        song.setName(resultSet.getString("name"));
+        song.setArtist(resultSet.getString("artist"));
+        song.setAlbum(resultSet.getString("album"));
+        song.setDuration(resultSet.getString("duration"));
+        song.setYear(resultSet.getString("year"));
+        return song;
+    };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public SongRepositoryCustomImpl(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<Integer> insertAllIgnoringExisting(List<SongEntity> songs) {
+        List<Integer> inserted = new ArrayList<>();
+        for (int from = 0; from < songs.size(); from += ROWS_PER_STATEMENT) {
+            List<SongEntity> chunk = songs.subList(from, Math.min(songs.size(), from + ROWS_PER_STATEMENT));
+            StringJoiner values = new StringJoiner(", ");
+            MapSqlParameterSource parameters = new MapSqlParameterSource();
+            for (int row = 0; row < chunk.size(); row++) {
+                SongEntity song = chunk.get(row);
+                values.add("(:id" + row + ", :album" + row + ", :artist" + row + ", :duration" + row
+                    + ", :name" + row + ", :year" + row + ")");
+                parameters.addValue("id" + row, song.getId())
+                    .addValue("album" + row, song.getAlbum())
+                    .addValue("artist" + row, song.getArtist())
+                    .addValue("duration" + row, song.getDuration())
+                    .addValue("name" + row, song.getName())
+                    .addValue("year" + row, song.getYear());
+            }
+            String sql = "INSERT INTO song (id, album, artist, duration, name, year) VALUES " + values
+                + " ON CONFLICT (id) DO NOTHING RETURNING id";
+            inserted.addAll(jdbcTemplate.queryForList(sql, parameters, Integer.class));
+        }
+        return inserted;
+    }
+
+    @Override
+    public List<SongEntity> findPageAfter(int afterId, int limit) {
+        // Keyset pagination: the primary key index seeks to the cursor, however deep the page is
+        String sql = "SELECT id, name, artist, album, duration, year FROM song WHERE id > :afterId"
+            + " ORDER BY id LIMIT :limit";
+        return jdbcTemplate.query(sql,
+            new MapSqlParameterSource("afterId", afterId).addValue("limit", limit), SONG_ROW_MAPPER);
+    }
+
+    @Override
+    public List<Integer> deleteAllByIdReturningIds(Collection<Integer> ids) {
+        return jdbcTemplate.queryForList("DELETE FROM song WHERE id = ANY(:ids) RETURNING id",
+            new MapSqlParameterSource("ids", ids.toArray(Integer[]::new)), Integer.class);
+    }
+}
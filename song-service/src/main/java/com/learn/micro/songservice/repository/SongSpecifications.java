@@ -0,0 +1,62 @@
+package com.learn.micro.songservice.repository;
+
+import com.learn.micro.songservice.entity.SongEntity;
+import com.learn.micro.songservice.model.SongFilter;
+import java.util.Locale;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Predicates of the song filters, written to match the indexes in the song-db init script:
+ * {@code lower(artist|album) LIKE '%x%'} and {@code lower(name) LIKE 'x%'} use the trigram
+ * indexes, the year and duration ranges their B-tree indexes (both are fixed-width strings, so
+ * they compare in order).
+ */
+public final class SongSpecifications {
+
+    private static final char ESCAPE = '\\';
+
+    private SongSpecifications() {
+    }
+
+    public static Specification<SongEntity> matching(SongFilter filter) {
+        return Specification.allOf(
+            contains("artist", filter.artist()),
+            contains("album", filter.album()),
+            startsWith("name", filter.namePrefix()),
+            between("year", filter.yearFrom(), filter.yearTo()),
+            between("duration", filter.durationFrom(), filter.durationTo()));
+    }
+
+    public static Specification<SongEntity> idAfter(int afterId) {
+        return (root, query, builder) -> builder.greaterThan(root.get("id"), afterId);
+    }
+
+    private static Specification<SongEntity> contains(String attribute, String value) {
+        return value == null ? null : (root, query, builder) ->
+            builder.like(builder.lower(root.get(attribute)), "%" + escape(value) + "%", ESCAPE);
+    }
+
+    private static Specification<SongEntity> startsWith(String attribute, String value) {
+        return value == null ? null : (root, query, builder) ->
+            builder.like(builder.lower(root.get(attribute)), escape(value) + "%", ESCAPE);
+    }
+
+    private static Specification<SongEntity> between(String attribute, String from, String to) {
+        return (root, query, builder) -> {
+            if (from != null && to != null) {
+                return builder.between(root.get(attribute), from, to);
+            }
+            if (from != null) {
+                return builder.greaterThanOrEqualTo(root.get(attribute), from);
+            }
+            return to != null ? builder.lessThanOrEqualTo(root.get(attribute), to) : null;
+        };
+    }
+
+    private static String escape(String value) {
+        return value.toLowerCase(Locale.ROOT)
+            .replace("\\", "\\\\")
+            .replace("%", "\\%")
+            .replace("_", "\\_");
+    }
+}
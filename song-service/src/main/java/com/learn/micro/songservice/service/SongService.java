@@ -2,16 +2,27 @@ package com.learn.micro.songservice.service;
 
 import com.learn.micro.songservice.model.DeleteSongResponse;
 import com.learn.micro.songservice.model.SaveSongResponse;
+import com.learn.micro.songservice.model.SaveSongsResponse;
 import com.learn.micro.songservice.model.SongDto;
+import com.learn.micro.songservice.model.SongFilter;
+import com.learn.micro.songservice.model.SongPage;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface SongService {
 
     SaveSongResponse save(SongDto songDto);
 
+    SaveSongsResponse saveAll(List<SongDto> songDtos);
+
     SongDto getById(String id);
 
     DeleteSongResponse delete(String id);
 
-    List<SongDto> getAll();
+    SongPage getPage(SongFilter filter, String after, String limit);
+
+    /**
+     * All songs in id order, read a page at a time as the stream is consumed.
+     */
+    Stream<SongDto> streamAll();
 }
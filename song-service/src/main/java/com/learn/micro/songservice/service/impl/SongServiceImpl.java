@@ -1,26 +1,39 @@
 package com.learn.micro.songservice.service.impl;
 
-import static java.util.stream.Collectors.toList;
-
+import com.learn.micro.songservice.cache.SongCache;
 import com.learn.micro.songservice.entity.SongEntity;
-import com.learn.micro.songservice.exception.GeneralFailureException;
 import com.learn.micro.songservice.mapper.SongMapper;
 import com.learn.micro.songservice.model.DeleteSongResponse;
 import com.learn.micro.songservice.model.SaveSongResponse;
+import com.learn.micro.songservice.model.SaveSongsResponse;
 import com.learn.micro.songservice.model.SongDto;
+import com.learn.micro.songservice.model.SongFilter;
+import com.learn.micro.songservice.model.SongPage;
+import com.learn.micro.songservice.model.SongSaveResult;
+import com.learn.micro.songservice.model.SongSaveStatus;
 import com.learn.micro.songservice.repository.SongRepository;
+import com.learn.micro.songservice.repository.SongSpecifications;
 import com.learn.micro.songservice.service.MessageHelper;
 import com.learn.micro.songservice.service.SongService;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
 import org.springframework.stereotype.Service;
 
 import jakarta.persistence.EntityExistsException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -29,24 +42,70 @@ import lombok.extern.slf4j.Slf4j;
 @RequiredArgsConstructor
 public class SongServiceImpl implements SongService {
 
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int STREAM_PAGE_SIZE = 500;
+    private static final String YEAR_PATTERN = "^\\d{4}$";
+    private static final String DURATION_PATTERN = "^[0-5]\\d:[0-5]\\d$";
+
     private final SongRepository songRepository;
     private final SongMapper songMapper;
     private final MessageHelper messageHelper;
+    private final Validator validator;
+    private final SongCache songCache;
 
+    /**
+     * Inserts the song with {@code ON CONFLICT (id) DO NOTHING}: one statement, and no row
+     * returned means the id is taken.
+     */
     public SaveSongResponse save(SongDto songDto) {
-        if (songDto != null && songDto.getId() != null) {
-            Integer songId = songDto.getId();
-            songRepository.findById(songId)
-                    .ifPresent(entity -> {
-                        throw new EntityExistsException(MessageFormat.format(
-                                messageHelper.getMessage("error.metadata.already.exists"),
-                                entity.getId()));
-                    });
-        }
         SongEntity songToSave = songMapper.mapSongDtoToEntity(songDto);
-        return Optional.of(songRepository.save(songToSave))
-                .map(songMapper::mapEntityToSavedSongDto)
-                .orElseThrow(() -> new GeneralFailureException("server.error.general"));
+        if (songRepository.insertAllIgnoringExisting(List.of(songToSave)).isEmpty()) {
+            throw new EntityExistsException(MessageFormat.format(
+                    messageHelper.getMessage("error.metadata.already.exists"), songToSave.getId()));
+        }
+        SaveSongResponse response = songMapper.mapEntityToSavedSongDto(songToSave);
+        songCache.evict(List.of(response.id()));
+        return response;
+    }
+
+    /**
+     * Validates each song on its own and inserts the valid ones with multi-row statements, so an
+     * invalid or existing song does not fail the rest of the batch.
+     */
+    public SaveSongsResponse saveAll(List<SongDto> songDtos) {
+        int size = songDtos == null ? 0 : songDtos.size();
+        if (size == 0 || size > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                    messageHelper.getMessage("validation.batch.size"), MAX_BATCH_SIZE, size));
+        }
+        SongSaveResult[] results = new SongSaveResult[size];
+        Map<Integer, Integer> indexById = new LinkedHashMap<>();
+        List<SongEntity> songsToInsert = new ArrayList<>();
+        for (int index = 0; index < size; index++) {
+            SongDto songDto = songDtos.get(index);
+            Integer songId = songDto != null ? songDto.getId() : null;
+            String violation = validate(songDto);
+            if (violation != null) {
+                results[index] = new SongSaveResult(songId, SongSaveStatus.INVALID, violation);
+            } else if (indexById.putIfAbsent(songId, index) != null) {
+                results[index] = new SongSaveResult(songId, SongSaveStatus.ALREADY_EXISTS, MessageFormat.format(
+                        messageHelper.getMessage("error.batch.duplicate.id"), songId));
+            } else {
+                songsToInsert.add(songMapper.mapSongDtoToEntity(songDto));
+            }
+        }
+        Set<Integer> insertedIds = songsToInsert.isEmpty()
+                ? Set.of()
+                : new HashSet<>(songRepository.insertAllIgnoringExisting(songsToInsert));
+        songCache.evict(insertedIds);
+        indexById.forEach((songId, index) -> results[index] = insertedIds.contains(songId)
+                ? new SongSaveResult(songId, SongSaveStatus.CREATED, null)
+                : new SongSaveResult(songId, SongSaveStatus.ALREADY_EXISTS, MessageFormat.format(
+                        messageHelper.getMessage("error.metadata.already.exists"), songId)));
+        log.info("Saved batch of {} songs, {} created", size, insertedIds.size());
+        return new SaveSongsResponse(List.of(results));
     }
 
     public SongDto getById(String id) {
@@ -55,8 +114,7 @@ public class SongServiceImpl implements SongService {
                     MessageFormat.format(messageHelper.getMessage("validation.id.invalid"), id));
         }
         Integer songId = Integer.parseInt(id);
-        return songRepository.findById(songId)
-                .map(songMapper::mapEntityToSongDto)
+        return songCache.get(songId, () -> songRepository.findById(songId).map(songMapper::mapEntityToSongDto))
                 .orElseThrow(() -> new ResourceNotFoundException(
                         MessageFormat.format(messageHelper.getMessage("error.metadata.not.found"),
                                 id)));
@@ -64,21 +122,92 @@ public class SongServiceImpl implements SongService {
 
     public DeleteSongResponse delete(String ids) {
         List<Integer> idsToDelete = parseAndValidateIds(ids);
-        List<Integer> deletedIds = new ArrayList<>();
-        for (Integer id : idsToDelete) {
-            if (songRepository.existsById(id)) {
-                songRepository.deleteById(id);
-                deletedIds.add(id);
-            }
-        }
+        Set<Integer> existingIds = idsToDelete.isEmpty()
+                ? Set.of()
+                : new HashSet<>(songRepository.deleteAllByIdReturningIds(idsToDelete));
+        // RETURNING gives no order, the response keeps the requested one
+        List<Integer> deletedIds = idsToDelete.stream()
+                .distinct()
+                .filter(existingIds::contains)
+                .toList();
+        songCache.evict(deletedIds);
         return new DeleteSongResponse(deletedIds);
     }
 
-    public List<SongDto> getAll() {
-        return songRepository.findAll()
-                .stream()
+    /**
+     * Reads the page of songs matching the filter after the song with id {@code after} (from the
+     * start when absent). One more song than asked for is read to tell whether a next page exists.
+     */
+    public SongPage getPage(SongFilter filter, String after, String limit) {
+        if (after != null && !after.matches("^\\d{1,9}$")) {
+            throw new IllegalArgumentException(
+                    MessageFormat.format(messageHelper.getMessage("validation.cursor.invalid"), after));
+        }
+        validateFilter(filter);
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : parsePageSize(limit);
+        Specification<SongEntity> specification = SongSpecifications.matching(filter)
+                .and(SongSpecifications.idAfter(after == null ? 0 : Integer.parseInt(after)));
+        List<SongEntity> songs = songRepository.findBy(specification,
+                query -> query.sortBy(Sort.by("id")).limit(pageSize + 1).all());
+        boolean hasMore = songs.size() > pageSize;
+        List<SongDto> page = songs.stream()
+                .limit(pageSize)
                 .map(songMapper::mapEntityToSongDto)
-                .collect(toList());
+                .toList();
+        return new SongPage(page, hasMore ? page.get(page.size() - 1).getId() : null);
+    }
+
+    public Stream<SongDto> streamAll() {
+        return Stream.iterate(songRepository.findPageAfter(0, STREAM_PAGE_SIZE),
+                        songs -> !songs.isEmpty(),
+                        songs -> songs.size() < STREAM_PAGE_SIZE
+                                ? List.of()
+                                : songRepository.findPageAfter(songs.get(songs.size() - 1).getId(), STREAM_PAGE_SIZE))
+                .flatMap(List::stream)
+                .map(songMapper::mapEntityToSongDto);
+    }
+
+    /**
+     * Substring filters need at least three characters, the length of a trigram, for the
+     * index to narrow the search.
+     */
+    private void validateFilter(SongFilter filter) {
+        validateFilterValue("artist", filter.artist(), "^.{3,100}$");
+        validateFilterValue("album", filter.album(), "^.{3,100}$");
+        validateFilterValue("name", filter.namePrefix(), "^.{1,100}$");
+        validateFilterValue("yearFrom", filter.yearFrom(), YEAR_PATTERN);
+        validateFilterValue("yearTo", filter.yearTo(), YEAR_PATTERN);
+        validateFilterValue("durationFrom", filter.durationFrom(), DURATION_PATTERN);
+        validateFilterValue("durationTo", filter.durationTo(), DURATION_PATTERN);
+    }
+
+    private void validateFilterValue(String parameter, String value, String pattern) {
+        if (value != null && !value.matches(pattern)) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                    messageHelper.getMessage("validation.filter.invalid"), parameter, value));
+        }
+    }
+
+    private int parsePageSize(String limit) {
+        if (!limit.matches("^[1-9]\\d{0,3}$") || Integer.parseInt(limit) > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                    messageHelper.getMessage("validation.page.limit"), MAX_PAGE_SIZE, limit));
+        }
+        return Integer.parseInt(limit);
+    }
+
+    private String validate(SongDto songDto) {
+        if (songDto == null || songDto.getId() == null) {
+            return messageHelper.getMessage("validation.batch.id.required");
+        }
+        Set<ConstraintViolation<SongDto>> violations = validator.validate(songDto);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
     }
 
     private boolean isValidId(String id) {
@@ -0,0 +1,40 @@
+package com.learn.micro.songservice.repository;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.sql.DataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * One PostgreSQL server per test JVM, run from the embedded binaries so no Docker is needed,
+ * with the schema and indexes of the song-db init script.
+ */
+public final class PostgresTestDatabase {
+
+    public static final String USER = "postgres";
+    private static final Path INIT_SCRIPT = Path.of("../init-scripts/song-db/init.sql");
+    private static EmbeddedPostgres postgres;
+
+    private PostgresTestDatabase() {
+    }
+
+    public static synchronized DataSource dataSource() {
+        if (postgres == null) {
+            try {
+                postgres = EmbeddedPostgres.start();
+                new JdbcTemplate(postgres.getPostgresDatabase()).execute(Files.readString(INIT_SCRIPT));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return postgres.getPostgresDatabase();
+    }
+
+    public static String jdbcUrl() {
+        dataSource();
+        return postgres.getJdbcUrl(USER, USER);
+    }
+}
@@ -0,0 +1,222 @@
+package com.learn.micro.songservice.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.learn.micro.songservice.cache.SongCache;
+import com.learn.micro.songservice.mapper.SongMapperImpl;
+import com.learn.micro.songservice.model.SongFilter;
+import com.learn.micro.songservice.service.MessageHelper;
+import com.learn.micro.songservice.service.impl.SongServiceImpl;
+import jakarta.validation.Validator;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * Runs EXPLAIN for the queries Hibernate generates for {@code GET /songs}, with their ORDER BY
+ * and LIMIT, against the schema of the song-db init script. Each page is read through
+ * {@link SongServiceImpl#getPage}, its SQL is captured by a StatementInspector and prepared and
+ * explained with the same parameters.
+ * <p>
+ * Every filter matches a few rows spread over the table, so walking the primary key in page
+ * order would read most of it: the filter index has to win against that plan and a sequential
+ * scan. A filter matching a large share of the rows is better served by the primary key, which
+ * finds a page after reading a few rows more than it returns.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class SongIndexUsageTest {
+
+    private static final String PAGE_SIZE = "20";
+
+    @Autowired
+    private SongRepository songRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private CapturedStatements capturedStatements;
+
+    private SongServiceImpl songService;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", PostgresTestDatabase::jdbcUrl);
+        registry.add("spring.datasource.username", () -> PostgresTestDatabase.USER);
+        registry.add("spring.datasource.password", () -> PostgresTestDatabase.USER);
+    }
+
+    @BeforeAll
+    static void insertSongs() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(PostgresTestDatabase.dataSource());
+        jdbcTemplate.execute("TRUNCATE song");
+        jdbcTemplate.update("INSERT INTO song (id, album, artist, duration, name, year)"
+            + " SELECT n, 'Album ' || n, 'Artist ' || n,"
+            + " CASE WHEN n % 1000 = 500 THEN '01:15' ELSE '0' || (3 + n % 2) || ':' || lpad((n % 60)::text, 2, '0') END,"
+            + " 'Song ' || n, CASE WHEN n % 1000 = 0 THEN '1960' ELSE (1990 + n % 30)::text END"
+            + " FROM generate_series(1, 100000) AS n");
+        jdbcTemplate.execute("ANALYZE song");
+    }
+
+    @BeforeEach
+    void setUp() {
+        songService = new SongServiceImpl(songRepository, new SongMapperImpl(), mock(MessageHelper.class),
+            mock(Validator.class), mock(SongCache.class));
+        capturedStatements.clear();
+    }
+
+    /**
+     * Test that the artist substring filter is served by the artist trigram index.
+     */
+    @Test
+    void artistFilter_shouldUseTrigramIndex() {
+        String query = pageQuery(new SongFilter("tist 4242", null, null, null, null, null, null));
+        assertUsesIndex(query, List.of("%tist 4242%"), "idx_song_artist_trgm");
+    }
+
+    /**
+     * Test that the album substring filter is served by the album trigram index.
+     */
+    @Test
+    void albumFilter_shouldUseTrigramIndex() {
+        String query = pageQuery(new SongFilter(null, "bum 9999", null, null, null, null, null));
+        assertUsesIndex(query, List.of("%bum 9999%"), "idx_song_album_trgm");
+    }
+
+    /**
+     * Test that the name prefix filter is served by the name trigram index.
+     */
+    @Test
+    void namePrefixFilter_shouldUseTrigramIndex() {
+        String query = pageQuery(new SongFilter(null, null, "song 1234", null, null, null, null));
+        assertUsesIndex(query, List.of("song 1234%"), "idx_song_name_trgm");
+    }
+
+    /**
+     * Test that the year range filter is served by the year B-tree index.
+     */
+    @Test
+    void yearRangeFilter_shouldUseBtreeIndex() {
+        String query = pageQuery(new SongFilter(null, null, null, "1955", "1965", null, null));
+        assertUsesIndex(query, List.of("1955", "1965"), "idx_song_year");
+    }
+
+    /**
+     * Test that the duration range filter is served by the duration B-tree index.
+     */
+    @Test
+    void durationRangeFilter_shouldUseBtreeIndex() {
+        String query = pageQuery(new SongFilter(null, null, null, null, null, "01:00", "01:59"));
+        assertUsesIndex(query, List.of("01:00", "01:59"), "idx_song_duration");
+    }
+
+    /**
+     * Reads the first page through the service and returns the one query it ran.
+     */
+    private String pageQuery(SongFilter filter) {
+        songService.getPage(filter, null, PAGE_SIZE);
+        List<String> queries = capturedStatements.selects();
+        assertEquals(1, queries.size(), () -> "Expected one query, got " + queries);
+        String query = queries.get(0);
+        assertTrue(query.contains("order by"), () -> "Expected ORDER BY in " + query);
+        return query;
+    }
+
+    /**
+     * Prepares the query and checks the plan of executing it with its filter parameters followed
+     * by the cursor (0) and the page size plus one. Like the first executions of a PgJDBC prepared
+     * statement, it is planned with these values.
+     */
+    private void assertUsesIndex(String query, List<String> filterParameters, String index) {
+        List<String> parameters = new ArrayList<>();
+        filterParameters.forEach(parameter -> parameters.add("'" + parameter + "'"));
+        parameters.add("0");
+        parameters.add(String.valueOf(Integer.parseInt(PAGE_SIZE) + 1));
+        String planText = jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PREPARE page AS " + numberParameters(query));
+                StringBuilder plan = new StringBuilder();
+                try (var resultSet = statement.executeQuery(
+                    "EXPLAIN EXECUTE page(" + String.join(", ", parameters) + ")")) {
+                    while (resultSet.next()) {
+                        plan.append(resultSet.getString(1)).append('\n');
+                    }
+                }
+                statement.execute("DEALLOCATE page");
+                return plan.toString();
+            }
+        });
+        assertTrue(planText.contains(index), () -> "Expected " + index + " in plan of\n" + query + "\n" + planText);
+        assertFalse(planText.contains("Seq Scan"), () -> "Unexpected sequential scan:\n" + planText);
+    }
+
+    /**
+     * Turns the JDBC placeholders into the numbered ones PREPARE takes.
+     */
+    private static String numberParameters(String query) {
+        StringBuilder numbered = new StringBuilder();
+        int parameter = 0;
+        for (char c : query.toCharArray()) {
+            if (c == '?') {
+                numbered.append('$').append(++parameter);
+            } else {
+                numbered.append(c);
+            }
+        }
+        return numbered.toString();
+    }
+
+    /**
+     * SQL of the statements Hibernate prepared, in order.
+     */
+    static class CapturedStatements implements StatementInspector {
+
+        private final List<String> statements = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+
+        List<String> selects() {
+            return statements.stream().filter(sql -> sql.startsWith("select")).toList();
+        }
+
+        void clear() {
+            statements.clear();
+        }
+    }
+
+    @TestConfiguration
+    static class StatementCapture {
+
+        @Bean
+        CapturedStatements capturedStatements() {
+            return new CapturedStatements();
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer statementInspector(CapturedStatements capturedStatements) {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, capturedStatements);
+        }
+    }
+}
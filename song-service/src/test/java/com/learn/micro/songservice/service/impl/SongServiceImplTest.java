@@ -3,21 +3,33 @@ package com.learn.micro.songservice.service.impl;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.learn.micro.songservice.cache.SongCache;
 import com.learn.micro.songservice.entity.SongEntity;
 import com.learn.micro.songservice.mapper.SongMapper;
 import com.learn.micro.songservice.model.DeleteSongResponse;
 import com.learn.micro.songservice.model.SaveSongResponse;
+import com.learn.micro.songservice.model.SaveSongsResponse;
 import com.learn.micro.songservice.model.SongDto;
+import com.learn.micro.songservice.model.SongFilter;
+import com.learn.micro.songservice.model.SongPage;
+import com.learn.micro.songservice.model.SongSaveResult;
+import com.learn.micro.songservice.model.SongSaveStatus;
 import com.learn.micro.songservice.repository.SongRepository;
 import com.learn.micro.songservice.service.MessageHelper;
 import com.learn.micro.songservice.service.impl.databuilder.SongDtoBuilder;
 import jakarta.persistence.EntityExistsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validator;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
@@ -25,8 +37,11 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 
 @ExtendWith(MockitoExtension.class)
 class SongServiceImplTest {
@@ -37,6 +52,7 @@ class SongServiceImplTest {
     private static final String TEST_SONG_DURATION="03:45";
     private static final String TEST_SONG_YEAR="2023";
     private static final String SONG_IDS_TO_DELETE = "1,2";
+    private static final SongFilter NO_FILTER = new SongFilter(null, null, null, null, null, null, null);
 
     @Mock
     private SongRepository songRepository;
@@ -44,6 +60,11 @@ class SongServiceImplTest {
     private SongMapper songMapper;
     @Mock
     private MessageHelper messageHelper;
+    @Mock
+    private Validator validator;
+    @Spy
+    private SongCache songCache = new SongCache(Jackson2ObjectMapperBuilder.json().build(), new SimpleMeterRegistry(), null, true,
+        100, Duration.ofMinutes(10), Duration.ofSeconds(5), false);
 
     @InjectMocks
     private SongServiceImpl songService;
@@ -70,23 +91,24 @@ class SongServiceImplTest {
     @Test
     void save_shouldThrowEntityExistsException_whenSongAlreadyExists() {
         // given
-        when(songRepository.findById(1)).thenReturn(Optional.of(songEntity));
+        when(songMapper.mapSongDtoToEntity(songDto)).thenReturn(songEntity);
+        when(songRepository.insertAllIgnoringExisting(List.of(songEntity))).thenReturn(List.of());
         when(messageHelper.getMessage("error.metadata.already.exists"))
             .thenReturn("Song with id {0} already exists");
         // when and then
         assertThrows(EntityExistsException.class, () -> songService.save(songDto));
+        verify(songRepository, never()).findById(anyInt());
     }
 
     /**
      * Test that saving a song when it does not exist
-     * should persist the entity and return a {@link SaveSongResponse}.
+     * should insert the entity with one statement and return a {@link SaveSongResponse}.
      */
     @Test
     void save_shouldSaveSong_whenSongDoesNotExist() {
         // given
-        when(songRepository.findById(1)).thenReturn(Optional.empty());
         when(songMapper.mapSongDtoToEntity(songDto)).thenReturn(songEntity);
-        when(songRepository.save(songEntity)).thenReturn(songEntity);
+        when(songRepository.insertAllIgnoringExisting(List.of(songEntity))).thenReturn(List.of(1));
         SaveSongResponse expectedResponse = new SaveSongResponse(1);
         when(songMapper.mapEntityToSavedSongDto(songEntity)).thenReturn(expectedResponse);
         // when
@@ -94,7 +116,40 @@ class SongServiceImplTest {
         // then
         assertNotNull(response);
         assertEquals(1, response.id());
-        verify(songRepository).save(songEntity);
+        verify(songRepository, never()).findById(anyInt());
+        verify(songRepository, never()).save(any());
+    }
+
+    /**
+     * Test that a batch save inserts the new songs in one go
+     * and reports existing, repeated and invalid songs per item.
+     */
+    @Test
+    void saveAll_shouldReportStatusPerSong() {
+        // given
+        SongDto newSong = SongDtoBuilder.songDto().withId(1).build();
+        SongDto existingSong = SongDtoBuilder.songDto().withId(2).build();
+        SongDto repeatedSong = SongDtoBuilder.songDto().withId(1).build();
+        SongDto songWithoutId = SongDtoBuilder.songDto().withId(null).build();
+        when(songMapper.mapSongDtoToEntity(any(SongDto.class))).thenAnswer(invocation -> {
+            SongEntity entity = new SongEntity();
+            entity.setId(invocation.<SongDto>getArgument(0).getId());
+            return entity;
+        });
+        when(songRepository.insertAllIgnoringExisting(anyList())).thenReturn(List.of(1));
+        when(messageHelper.getMessage("validation.batch.id.required")).thenReturn("Id is required.");
+        when(messageHelper.getMessage("error.batch.duplicate.id")).thenReturn("Duplicate id {0}");
+        when(messageHelper.getMessage("error.metadata.already.exists")).thenReturn("Exists {0}");
+        // when
+        SaveSongsResponse response = songService.saveAll(
+            List.of(newSong, existingSong, repeatedSong, songWithoutId));
+        // then
+        assertEquals(List.of(SongSaveStatus.CREATED, SongSaveStatus.ALREADY_EXISTS,
+                SongSaveStatus.ALREADY_EXISTS, SongSaveStatus.INVALID),
+            response.results().stream().map(SongSaveResult::status).toList());
+        verify(songRepository).insertAllIgnoringExisting(
+            argThat(songs -> songs.stream().map(SongEntity::getId).toList().equals(List.of(1, 2))));
+        verify(songRepository, never()).save(any());
     }
 
     /**
@@ -142,50 +197,117 @@ class SongServiceImplTest {
     }
 
     /**
-     * Test that deleting songs with valid IDs
-     * should remove them from the repository and return deleted IDs.
+     * Test that a song read once is served from the cache afterwards
+     * without another repository lookup.
+     */
+    @Test
+    void getById_shouldReadRepositoryOnce_whenSongRequestedTwice() {
+        // given
+        when(songRepository.findById(1)).thenReturn(Optional.of(songEntity));
+        when(songMapper.mapEntityToSongDto(songEntity)).thenReturn(songDto);
+        // when
+        songService.getById("1");
+        SongDto result = songService.getById("1");
+        // then
+        assertEquals(songDto, result);
+        verify(songRepository, times(1)).findById(1);
+    }
+
+    /**
+     * Test that an id that does not exist is cached as not found
+     * and that deleting it evicts that entry.
+     */
+    @Test
+    void getById_shouldCacheNotFound_untilSongDeleted() {
+        // given
+        when(songRepository.findById(1)).thenReturn(Optional.empty());
+        when(songRepository.deleteAllByIdReturningIds(List.of(1))).thenReturn(List.of(1));
+        when(messageHelper.getMessage("error.metadata.not.found"))
+            .thenReturn("Song not found with id {0}");
+        // when
+        assertThrows(ResourceNotFoundException.class, () -> songService.getById("1"));
+        assertThrows(ResourceNotFoundException.class, () -> songService.getById("1"));
+        songService.delete("1");
+        assertThrows(ResourceNotFoundException.class, () -> songService.getById("1"));
+        // then
+        verify(songRepository, times(2)).findById(1);
+        verify(songCache).evict(List.of(1));
+    }
+
+    /**
+     * Test that deleting songs with valid IDs removes them with one statement
+     * and returns the deleted IDs in the requested order.
      */
     @Test
     void delete_shouldDeleteExistingSongs() {
         // given
-        when(songRepository.existsById(anyInt())).thenReturn(true);
+        when(songRepository.deleteAllByIdReturningIds(List.of(1, 2))).thenReturn(List.of(2, 1));
         // when
         DeleteSongResponse response = songService.delete(SONG_IDS_TO_DELETE);
         // then
         assertEquals(List.of(1, 2), response.ids());
-        verify(songRepository, times(2)).deleteById(anyInt());
+        verify(songRepository).deleteAllByIdReturningIds(List.of(1, 2));
+        verify(songRepository, never()).deleteById(anyInt());
     }
 
     /**
      * Test that deleting songs should skip non-existing IDs
-     * and only delete those that exist.
+     * and only report those that existed.
      */
     @Test
     void delete_shouldSkipNonExistingSongs() {
         // given
-        when(songRepository.existsById(1)).thenReturn(true);
-        when(songRepository.existsById(2)).thenReturn(false);
+        when(songRepository.deleteAllByIdReturningIds(List.of(1, 2))).thenReturn(List.of(1));
         // when
         DeleteSongResponse response = songService.delete(SONG_IDS_TO_DELETE);
         // then
         assertEquals(List.of(1), response.ids());
-        verify(songRepository).deleteById(1);
-        verify(songRepository, never()).deleteById(2);
+        verify(songRepository, never()).existsById(anyInt());
     }
 
     /**
-     * Test that retrieving all songs
-     * should return a list of mapped {@link SongDto}.
+     * Test that a page of songs is read after the cursor with one extra row,
+     * and that the id of its last song is returned as the next cursor.
      */
     @Test
-    void getAll_shouldReturnMappedDtos() {
+    void getPage_shouldReturnNextCursor_whenMoreSongsExist() {
         // given
-        when(songRepository.findAll()).thenReturn(List.of(songEntity));
+        SongEntity nextSong = new SongEntity();
+        nextSong.setId(2);
+        when(songRepository.findBy(any(Specification.class), any())).thenReturn(List.of(songEntity, nextSong));
         when(songMapper.mapEntityToSongDto(songEntity)).thenReturn(songDto);
         // when
-        List<SongDto> songs = songService.getAll();
+        SongPage page = songService.getPage(NO_FILTER, null, "1");
         // then
-        assertEquals(1, songs.size());
-        assertEquals(TEST_SONG_NAME, songs.get(0).getName());
+        assertEquals(1, page.songs().size());
+        assertEquals(TEST_SONG_NAME, page.songs().get(0).getName());
+        assertEquals(songDto.getId(), page.nextCursor());
+    }
+
+    /**
+     * Test that a page size above the maximum is rejected
+     * before the repository is queried.
+     */
+    @Test
+    void getPage_shouldThrowIllegalArgumentException_whenLimitTooLarge() {
+        // given
+        when(messageHelper.getMessage("validation.page.limit")).thenReturn("Invalid page size");
+        // when / then
+        assertThrows(IllegalArgumentException.class, () -> songService.getPage(NO_FILTER, null, "5000"));
+        verify(songRepository, never()).findBy(any(Specification.class), any());
+    }
+
+    /**
+     * Test that a year filter that is not a four-digit year is rejected
+     * before the repository is queried.
+     */
+    @Test
+    void getPage_shouldThrowIllegalArgumentException_whenYearFilterInvalid() {
+        // given
+        SongFilter filter = new SongFilter(null, null, null, "99", null, null, null);
+        when(messageHelper.getMessage("validation.filter.invalid")).thenReturn("Invalid filter {0}: {1}");
+        // when / then
+        assertThrows(IllegalArgumentException.class, () -> songService.getPage(filter, null, null));
+        verify(songRepository, never()).findBy(any(Specification.class), any());
     }
-}
\ No newline at end of file
+}